@@ -0,0 +1,338 @@
+package searchengine.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Настройки обхода сайтов (секция indexing-settings.crawler в application.yml).
+ */
+@Component
+@ConfigurationProperties(prefix = "indexing-settings.crawler")
+public class CrawlerSettings {
+
+    // Максимальная глубина ссылок от главной страницы сайта
+    private int maxDepth = 5;
+
+    // Максимальное количество страниц, индексируемых для одного сайта
+    private int maxPagesPerSite = 1000;
+
+    // Количество рабочих потоков ForkJoinPool (0 - по числу ядер процессора)
+    private int parallelism = 0;
+
+    // Соблюдать правила robots.txt (запрещённые пути не загружаются)
+    private boolean respectRobotsTxt = true;
+
+    // Добавлять в очередь обхода URL из sitemap.xml (включая индексы и gzip)
+    private boolean useSitemaps = true;
+
+    // Сколько записей sitemap просматривается при отборе URL с наибольшим приоритетом
+    private int maxSitemapUrls = 50000;
+
+    // Каталог для дисковых очередей обхода (позволяет продолжить прерванный обход)
+    private String frontierDir = "data/frontier";
+
+    // Где хранится HTML страниц: database (таблица page_content) или file (сегментные файлы)
+    private String contentStorage = "database";
+
+    // Каталог сегментных файлов с HTML страниц при content-storage: file
+    private String contentStoreDir = "data/content";
+
+    // Размер одного сегментного файла, МБ
+    private int contentSegmentSizeMb = 256;
+
+    // Источник страниц: live (сеть), record (сеть с записью в WARC) или replay (воспроизведение из WARC)
+    private String fetcher = "live";
+
+    // Каталог WARC-файлов для режимов record и replay
+    private String warcDir = "data/warc";
+
+    // Максимальное количество одновременных HTTP-запросов (загрузки идут в виртуальных потоках)
+    private int maxConcurrentFetches = 1024;
+
+    // Сколько сайтов индексируется одновременно (0 - все сразу); лимит загрузок делится между ними
+    private int maxParallelSites = 0;
+
+    // Средняя частота запросов к одному хосту (токенов в секунду)
+    private double hostRequestsPerSecond = 2.0;
+
+    // Ёмкость корзины токенов: сколько запросов к хосту можно отправить подряд
+    private int hostBurst = 2;
+
+    // Минимальная пауза между двумя запросами к одному хосту, мс
+    private long hostMinDelayMs = 300;
+
+    // Адаптивный лимит одновременных запросов к хосту: начальное, минимальное и максимальное значения
+    private int hostInitialConcurrency = 2;
+
+    private int hostMinConcurrency = 1;
+
+    private int hostMaxConcurrency = 8;
+
+    // Во сколько раз средняя задержка хоста может превысить базовую, прежде чем лимит будет снижен
+    private double hostLatencyTolerance = 2.0;
+
+    // Повтор временных ошибок загрузки и сохранения: число попыток и границы экспоненциальной задержки, мс
+    private int retryMaxAttempts = 3;
+
+    private long retryBaseDelayMs = 1000;
+
+    private long retryMaxDelayMs = 30000;
+
+    // Сколько слов хранит кэш слово -> лемма перед словарями морфологии
+    private int lemmaCacheSize = 100000;
+
+    // Не индексировать предлоги, союзы, частицы и междометия
+    private boolean functionWordFilter = true;
+
+    // Пакетная запись таблицы idx: наибольшее число записей страницы в одном пакете JDBC
+    private int postingBatchSize = 5000;
+
+    // Допустимая доля ложных срабатываний фильтра посещённых URL
+    private double visitedFalsePositiveRate = 0.001;
+
+    // Поиск почти одинаковых страниц по SimHash: дубликаты сохраняются без индексации
+    private boolean nearDuplicateDetection = true;
+
+    // Максимальное расстояние Хэмминга между SimHash почти одинаковых страниц
+    private int nearDuplicateMaxDistance = 3;
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    public int getMaxPagesPerSite() {
+        return maxPagesPerSite;
+    }
+
+    public void setMaxPagesPerSite(int maxPagesPerSite) {
+        this.maxPagesPerSite = maxPagesPerSite;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public String getFrontierDir() {
+        return frontierDir;
+    }
+
+    public void setFrontierDir(String frontierDir) {
+        this.frontierDir = frontierDir;
+    }
+
+    public int getMaxConcurrentFetches() {
+        return maxConcurrentFetches;
+    }
+
+    public void setMaxConcurrentFetches(int maxConcurrentFetches) {
+        this.maxConcurrentFetches = maxConcurrentFetches;
+    }
+
+    public int getMaxParallelSites() {
+        return maxParallelSites;
+    }
+
+    public void setMaxParallelSites(int maxParallelSites) {
+        this.maxParallelSites = maxParallelSites;
+    }
+
+    public double getHostRequestsPerSecond() {
+        return hostRequestsPerSecond;
+    }
+
+    public void setHostRequestsPerSecond(double hostRequestsPerSecond) {
+        this.hostRequestsPerSecond = hostRequestsPerSecond;
+    }
+
+    public int getHostBurst() {
+        return hostBurst;
+    }
+
+    public void setHostBurst(int hostBurst) {
+        this.hostBurst = hostBurst;
+    }
+
+    public long getHostMinDelayMs() {
+        return hostMinDelayMs;
+    }
+
+    public void setHostMinDelayMs(long hostMinDelayMs) {
+        this.hostMinDelayMs = hostMinDelayMs;
+    }
+
+    public double getVisitedFalsePositiveRate() {
+        return visitedFalsePositiveRate;
+    }
+
+    public void setVisitedFalsePositiveRate(double visitedFalsePositiveRate) {
+        this.visitedFalsePositiveRate = visitedFalsePositiveRate;
+    }
+
+    public boolean isNearDuplicateDetection() {
+        return nearDuplicateDetection;
+    }
+
+    public void setNearDuplicateDetection(boolean nearDuplicateDetection) {
+        this.nearDuplicateDetection = nearDuplicateDetection;
+    }
+
+    public int getNearDuplicateMaxDistance() {
+        return nearDuplicateMaxDistance;
+    }
+
+    public void setNearDuplicateMaxDistance(int nearDuplicateMaxDistance) {
+        this.nearDuplicateMaxDistance = nearDuplicateMaxDistance;
+    }
+
+    public boolean isRespectRobotsTxt() {
+        return respectRobotsTxt;
+    }
+
+    public void setRespectRobotsTxt(boolean respectRobotsTxt) {
+        this.respectRobotsTxt = respectRobotsTxt;
+    }
+
+    public boolean isUseSitemaps() {
+        return useSitemaps;
+    }
+
+    public void setUseSitemaps(boolean useSitemaps) {
+        this.useSitemaps = useSitemaps;
+    }
+
+    public int getMaxSitemapUrls() {
+        return maxSitemapUrls;
+    }
+
+    public void setMaxSitemapUrls(int maxSitemapUrls) {
+        this.maxSitemapUrls = maxSitemapUrls;
+    }
+
+    public String getContentStorage() {
+        return contentStorage;
+    }
+
+    public void setContentStorage(String contentStorage) {
+        this.contentStorage = contentStorage;
+    }
+
+    public String getContentStoreDir() {
+        return contentStoreDir;
+    }
+
+    public void setContentStoreDir(String contentStoreDir) {
+        this.contentStoreDir = contentStoreDir;
+    }
+
+    public int getContentSegmentSizeMb() {
+        return contentSegmentSizeMb;
+    }
+
+    public void setContentSegmentSizeMb(int contentSegmentSizeMb) {
+        this.contentSegmentSizeMb = contentSegmentSizeMb;
+    }
+
+    public int getHostInitialConcurrency() {
+        return hostInitialConcurrency;
+    }
+
+    public void setHostInitialConcurrency(int hostInitialConcurrency) {
+        this.hostInitialConcurrency = hostInitialConcurrency;
+    }
+
+    public int getHostMinConcurrency() {
+        return hostMinConcurrency;
+    }
+
+    public void setHostMinConcurrency(int hostMinConcurrency) {
+        this.hostMinConcurrency = hostMinConcurrency;
+    }
+
+    public int getHostMaxConcurrency() {
+        return hostMaxConcurrency;
+    }
+
+    public void setHostMaxConcurrency(int hostMaxConcurrency) {
+        this.hostMaxConcurrency = hostMaxConcurrency;
+    }
+
+    public double getHostLatencyTolerance() {
+        return hostLatencyTolerance;
+    }
+
+    public void setHostLatencyTolerance(double hostLatencyTolerance) {
+        this.hostLatencyTolerance = hostLatencyTolerance;
+    }
+
+    public int getRetryMaxAttempts() {
+        return retryMaxAttempts;
+    }
+
+    public void setRetryMaxAttempts(int retryMaxAttempts) {
+        this.retryMaxAttempts = retryMaxAttempts;
+    }
+
+    public long getRetryBaseDelayMs() {
+        return retryBaseDelayMs;
+    }
+
+    public void setRetryBaseDelayMs(long retryBaseDelayMs) {
+        this.retryBaseDelayMs = retryBaseDelayMs;
+    }
+
+    public long getRetryMaxDelayMs() {
+        return retryMaxDelayMs;
+    }
+
+    public void setRetryMaxDelayMs(long retryMaxDelayMs) {
+        this.retryMaxDelayMs = retryMaxDelayMs;
+    }
+
+    public String getFetcher() {
+        return fetcher;
+    }
+
+    public void setFetcher(String fetcher) {
+        this.fetcher = fetcher;
+    }
+
+    public String getWarcDir() {
+        return warcDir;
+    }
+
+    public void setWarcDir(String warcDir) {
+        this.warcDir = warcDir;
+    }
+
+    public int getLemmaCacheSize() {
+        return lemmaCacheSize;
+    }
+
+    public void setLemmaCacheSize(int lemmaCacheSize) {
+        this.lemmaCacheSize = lemmaCacheSize;
+    }
+
+    public boolean isFunctionWordFilter() {
+        return functionWordFilter;
+    }
+
+    public void setFunctionWordFilter(boolean functionWordFilter) {
+        this.functionWordFilter = functionWordFilter;
+    }
+
+    public int getPostingBatchSize() {
+        return postingBatchSize;
+    }
+
+    public void setPostingBatchSize(int postingBatchSize) {
+        this.postingBatchSize = postingBatchSize;
+    }
+}
@@ -0,0 +1,46 @@
+package searchengine.config;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import searchengine.services.Fetcher;
+import searchengine.services.JsoupFetcher;
+import searchengine.services.WarcRecordingFetcher;
+import searchengine.services.WarcReplayFetcher;
+import searchengine.services.WarcWriter;
+
+/**
+ * Выбор источника страниц по настройке fetcher: live - сеть, record - сеть с записью
+ * ответов в WARC, replay - воспроизведение из WARC без сети (нагрузочные прогоны).
+ */
+@Configuration
+public class FetcherConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(FetcherConfig.class);
+
+    @Bean
+    public Fetcher fetcher(CrawlerSettings crawlerSettings) throws IOException {
+        String mode = crawlerSettings.getFetcher().toLowerCase(Locale.ROOT);
+        Path warcDir = Paths.get(crawlerSettings.getWarcDir());
+        switch (mode) {
+            case "live":
+                return new JsoupFetcher();
+            case "record":
+                logger.info("Ответы сайтов записываются в WARC: {}", warcDir.toAbsolutePath());
+                return new WarcRecordingFetcher(new JsoupFetcher(), new WarcWriter(warcDir));
+            case "replay":
+                logger.info("Страницы загружаются из WARC без обращения к сети: {}", warcDir.toAbsolutePath());
+                return new WarcReplayFetcher(warcDir);
+            default:
+                throw new IllegalStateException("Неизвестный режим fetcher: " + crawlerSettings.getFetcher()
+                        + " (ожидается live, record или replay)");
+        }
+    }
+}
@@ -3,16 +3,14 @@ package searchengine.controllers;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -20,11 +18,15 @@ import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import reactor.core.publisher.Flux;
 import searchengine.config.SitesList;
+import searchengine.dto.statistics.HostFetchStatistics;
 import searchengine.dto.statistics.SearchResultDTO;
 import searchengine.dto.statistics.StatisticsResponse;
 import searchengine.entity.Site;
 import searchengine.repository.SiteRepository;
+import searchengine.services.HostConcurrencyLimiter;
+import searchengine.services.IndexingProgressService;
 import searchengine.services.IndexingService;
 import searchengine.services.LemmaService;
 import searchengine.services.SearchService;
@@ -42,12 +44,15 @@ public class ApiController {
     private final SearchService searchService;
     private final LemmaService lemmaService;
     private final SitesList sitesList;
-    private volatile boolean isIndexingInProgress = false;
+    private final HostConcurrencyLimiter hostConcurrencyLimiter;
+    private final IndexingProgressService indexingProgressService;
     private static final Logger logger = LoggerFactory.getLogger(ApiController.class);
 
     public ApiController(StatisticsService statisticsService, IndexingService indexingService,
                          SiteService siteService, SiteRepository siteRepository,
-                         SitesList sitesList, LemmaService lemmaService, SearchService searchService) {
+                         SitesList sitesList, LemmaService lemmaService, SearchService searchService,
+                         HostConcurrencyLimiter hostConcurrencyLimiter,
+                         IndexingProgressService indexingProgressService) {
         this.statisticsService = statisticsService;
         this.indexingService = indexingService;
         this.siteService = siteService;
@@ -55,6 +60,8 @@ public class ApiController {
         this.sitesList = sitesList;
         this.lemmaService = lemmaService;
         this.searchService = searchService;
+        this.hostConcurrencyLimiter = hostConcurrencyLimiter;
+        this.indexingProgressService = indexingProgressService;
     }
 
     @GetMapping("/search")
@@ -117,6 +124,23 @@ public class ApiController {
         }
     }
 
+    /**
+     * Текущие адаптивные лимиты одновременных запросов и задержки по хостам.
+     */
+    @GetMapping(value = "/indexing/hosts", produces = "application/json")
+    public ResponseEntity<List<HostFetchStatistics>> hostStatistics() {
+        return ResponseEntity.ok(hostConcurrencyLimiter.getStatistics());
+    }
+
+    /**
+     * Поток Server-Sent Events с ходом индексации: события "status" при смене статуса
+     * сайта и ежесекундные события "progress" со счётчиками страниц, скоростью и очередью.
+     */
+    @GetMapping(value = "/indexing/progress", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> indexingProgress() {
+        return indexingProgressService.stream();
+    }
+
     @PostMapping("/indexPage")
     public ResponseEntity<Map<String, Object>> indexPage(@RequestParam String url) {
         logger.info("Попытка индексации страницы: {}", url);
@@ -147,59 +171,36 @@ public class ApiController {
         }
     }
     
-    @Async("taskExecutor")
     @GetMapping("/startIndexing")
-    public CompletableFuture<ResponseEntity<Map<String, Object>>> startIndexing() {
-        if (isIndexingInProgress) {
+    public ResponseEntity<Map<String, Object>> startIndexing() {
+        logger.info("Запуск индексации через API");
+        try {
+            // Признак выполнения хранит IndexingService: он занимается до возврата из метода
+            indexingService.startIndexing();
+        } catch (IllegalStateException e) {
             logger.warn("Индексация уже выполняется, новый запуск не допускается");
-            return CompletableFuture.completedFuture(ResponseEntity.badRequest()
-                    .body(Map.of("result", false, "error", "Индексация уже выполняется")));
+            return ResponseEntity.badRequest()
+                    .body(Map.of("result", false, "error", "Индексация уже выполняется"));
+        } catch (Exception e) {
+            logger.error("Ошибка при запуске индексации: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("result", false, "error", "Ошибка запуска индексации: " + e.getMessage()));
         }
-    
-        logger.info("Запуск индексации через API");
-        isIndexingInProgress = true;
-    
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                // Установка таймаута
-                CompletableFuture<Void> future = CompletableFuture.runAsync(() -> {
-                    try {
-                        indexingService.startIndexing();
-                    } catch (Exception e) {
-                        logger.error("Ошибка при индексации: {}", e.getMessage(), e);
-                        throw new RuntimeException(e);
-                    }
-                });
-                
-                // Таймаут в 2 минуты
-                future.get(120, TimeUnit.SECONDS);  // Если задача не завершится за 120 секунд, произойдет TimeoutException
-    
-                return ResponseEntity.ok(Map.of("result", true, "message", "Индексация запущена"));
-            } catch (TimeoutException e) {
-                logger.error("Индексация не завершена за 2 минуты: {}", e.getMessage());
-                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                        .body(Map.of("result", false, "error", "Таймаут выполнения индексации: " + e.getMessage()));
-            } catch (Exception e) {
-                logger.error("Ошибка при запуске индексации: {}", e.getMessage(), e);
-                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                        .body(Map.of("result", false, "error", "Ошибка запуска индексации: " + e.getMessage()));
-            } finally {
-                isIndexingInProgress = false;
-            }
-        });
+        return ResponseEntity.ok(Map.of("result", true, "message", "Индексация запущена"));
     }
    
     @RequestMapping(value = "/stopIndexing", method = {RequestMethod.GET, RequestMethod.POST})
     public ResponseEntity<Map<String, Object>> stopIndexing() {
-        stopIndexingService();
+        if (!stopIndexingService()) {
+            logger.warn("Остановка индексации запрошена, но индексация не выполняется");
+            return ResponseEntity.badRequest()
+                    .body(Map.of("result", false, "error", "Индексация не запущена"));
+        }
         logger.info("Индексация остановлена");
         return ResponseEntity.ok(Map.of("result", true, "message", "Индексация остановлена"));
     }
 
-    private void stopIndexingService() {
-        // TODO: Реализовать корректную остановку индексации (прерывание асинхронных задач)
-        isIndexingInProgress = false;
-        logger.warn("Остановка индексации не реализована полностью!");
+    private boolean stopIndexingService() {
+        return indexingService.stopIndexing();
     }
 }
-
@@ -0,0 +1,88 @@
+package searchengine.dto.statistics;
+
+/**
+ * Состояние адаптивного лимита запросов к одному хосту.
+ */
+public class HostFetchStatistics {
+    private String host;
+    private int limit;
+    private int inFlight;
+    private int waiting;
+    private long averageLatencyMs;
+    private long baselineLatencyMs;
+    private double errorRate;
+    private long requests;
+    private long errors;
+
+    public String getHost() {
+        return host;
+    }
+
+    public void setHost(String host) {
+        this.host = host;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    public void setInFlight(int inFlight) {
+        this.inFlight = inFlight;
+    }
+
+    public int getWaiting() {
+        return waiting;
+    }
+
+    public void setWaiting(int waiting) {
+        this.waiting = waiting;
+    }
+
+    public long getAverageLatencyMs() {
+        return averageLatencyMs;
+    }
+
+    public void setAverageLatencyMs(long averageLatencyMs) {
+        this.averageLatencyMs = averageLatencyMs;
+    }
+
+    public long getBaselineLatencyMs() {
+        return baselineLatencyMs;
+    }
+
+    public void setBaselineLatencyMs(long baselineLatencyMs) {
+        this.baselineLatencyMs = baselineLatencyMs;
+    }
+
+    public double getErrorRate() {
+        return errorRate;
+    }
+
+    public void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    public long getRequests() {
+        return requests;
+    }
+
+    public void setRequests(long requests) {
+        this.requests = requests;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    public void setErrors(long errors) {
+        this.errors = errors;
+    }
+}
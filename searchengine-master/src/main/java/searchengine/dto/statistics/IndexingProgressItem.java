@@ -0,0 +1,79 @@
+package searchengine.dto.statistics;
+
+/**
+ * Ход индексации одного сайта для потока /api/indexing/progress.
+ */
+public class IndexingProgressItem {
+    private String url;
+    private String name;
+    private String status;
+    private String error;
+    private int pagesIndexed;
+    private int errors;
+    private long frontierSize;
+    private double pagesPerSecond;
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public int getPagesIndexed() {
+        return pagesIndexed;
+    }
+
+    public void setPagesIndexed(int pagesIndexed) {
+        this.pagesIndexed = pagesIndexed;
+    }
+
+    public int getErrors() {
+        return errors;
+    }
+
+    public void setErrors(int errors) {
+        this.errors = errors;
+    }
+
+    public long getFrontierSize() {
+        return frontierSize;
+    }
+
+    public void setFrontierSize(long frontierSize) {
+        this.frontierSize = frontierSize;
+    }
+
+    public double getPagesPerSecond() {
+        return pagesPerSecond;
+    }
+
+    public void setPagesPerSecond(double pagesPerSecond) {
+        this.pagesPerSecond = pagesPerSecond;
+    }
+}
@@ -0,0 +1,59 @@
+package searchengine.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * Словарь deflate, построенный по образцам страниц сайта. Словари не изменяются:
+ * страницы ссылаются на тот, с которым были сжаты.
+ */
+@Entity
+@Table(name = "content_dictionary")
+public class ContentDictionary {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    @Column(name = "site_id", nullable = false)
+    private Integer siteId;
+
+    @Column(name = "data", nullable = false, columnDefinition = "BLOB")
+    private byte[] data;
+
+    public ContentDictionary() {
+    }
+
+    public ContentDictionary(Integer siteId, byte[] data) {
+        this.siteId = siteId;
+        this.data = data;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public Integer getSiteId() {
+        return siteId;
+    }
+
+    public void setSiteId(Integer siteId) {
+        this.siteId = siteId;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public void setData(byte[] data) {
+        this.data = data;
+    }
+}
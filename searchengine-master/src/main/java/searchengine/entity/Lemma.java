@@ -7,21 +7,25 @@ import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
 import lombok.EqualsAndHashCode;
 
 @EqualsAndHashCode(exclude = "id")
 @Entity
-@Table(name = "lemma")
+// Уникальный ключ нужен пакетной вставке INSERT ... ON DUPLICATE KEY UPDATE (LemmaBatchRepository)
+@Table(name = "lemma", uniqueConstraints = @UniqueConstraint(name = "uk_lemma_site_text",
+        columnNames = {"siteid", "lemma_text"}))
 public class Lemma {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private int id;
 
     @ManyToOne
-    @JoinColumn(name = "siteid", nullable = true)
+    @JoinColumn(name = "siteid", nullable = false)
     private Site site;
 
-    @Column(name = "lemma_text", nullable = false)
+    // Двоичное сравнение: леммы, различающиеся только диакритикой ("е" и "ё"), - разные строки
+    @Column(name = "lemma_text", nullable = false, columnDefinition = "VARCHAR(255) COLLATE utf8mb4_bin")
     private String lemmaText;
 
     @Column(name = "frequency")
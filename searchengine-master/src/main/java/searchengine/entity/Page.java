@@ -30,12 +30,41 @@ public class Page {
     @Column(name = "code", nullable = false)
     private int code;
 
+    // HTML страниц, сохранённых до перехода на сжатое хранение (см. PageContent); у новых страниц null
     @Column(name = "content", columnDefinition = "MEDIUMTEXT")
     private String content;
 
+    // Указатель на HTML в PageContentStore (при content-storage: file)
+    @Column(name = "content_segment")
+    private Integer contentSegment;
+
+    @Column(name = "content_offset")
+    private Long contentOffset;
+
+    @Column(name = "content_length")
+    private Integer contentLength;
+
     @Column(name = "title")  // Добавлено поле title
     private String title;
 
+    // Валидаторы HTTP-кэша и хэш содержимого для условной переиндексации
+    @Column(name = "etag")
+    private String etag;
+
+    @Column(name = "last_modified", length = 64)
+    private String lastModified;
+
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    // SimHash очищенного текста для поиска почти одинаковых страниц
+    @Column(name = "simhash")
+    private Long simhash;
+
+    // Если страница - почти дубликат, ID основной страницы; такие страницы не индексируются
+    @Column(name = "canonical_page_id")
+    private Integer canonicalPageId;
+
     @ManyToMany
     @JoinTable(
         name = "idx", 
@@ -86,6 +115,30 @@ public class Page {
         this.content = content;
     }
 
+    public Integer getContentSegment() {
+        return contentSegment;
+    }
+
+    public void setContentSegment(Integer contentSegment) {
+        this.contentSegment = contentSegment;
+    }
+
+    public Long getContentOffset() {
+        return contentOffset;
+    }
+
+    public void setContentOffset(Long contentOffset) {
+        this.contentOffset = contentOffset;
+    }
+
+    public Integer getContentLength() {
+        return contentLength;
+    }
+
+    public void setContentLength(Integer contentLength) {
+        this.contentLength = contentLength;
+    }
+
     public String getTitle() {
         return title;  // Метод для получения title
     }
@@ -94,6 +147,46 @@ public class Page {
         this.title = title;
     }
 
+    public String getEtag() {
+        return etag;
+    }
+
+    public void setEtag(String etag) {
+        this.etag = etag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(String lastModified) {
+        this.lastModified = lastModified;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public Long getSimhash() {
+        return simhash;
+    }
+
+    public void setSimhash(Long simhash) {
+        this.simhash = simhash;
+    }
+
+    public Integer getCanonicalPageId() {
+        return canonicalPageId;
+    }
+
+    public void setCanonicalPageId(Integer canonicalPageId) {
+        this.canonicalPageId = canonicalPageId;
+    }
+
     public Set<Lemma> getLemmas() {
         return lemmas;
     }
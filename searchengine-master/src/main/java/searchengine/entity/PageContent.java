@@ -0,0 +1,72 @@
+package searchengine.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * Сжатый HTML страницы. Хранится отдельно от page, чтобы запросы по страницам
+ * не читали содержимое: оно распаковывается только для показываемых результатов.
+ */
+@Entity
+@Table(name = "page_content")
+public class PageContent {
+
+    @Id
+    @Column(name = "page_id")
+    private Integer pageId;
+
+    // Словарь сайта, с которым сжато содержимое; null - сжато без словаря
+    @Column(name = "dictionary_id")
+    private Integer dictionaryId;
+
+    // Длина исходного HTML в байтах UTF-8
+    @Column(name = "original_length", nullable = false)
+    private int originalLength;
+
+    @Column(name = "data", nullable = false, columnDefinition = "MEDIUMBLOB")
+    private byte[] data;
+
+    public PageContent() {
+    }
+
+    public PageContent(Integer pageId, Integer dictionaryId, int originalLength, byte[] data) {
+        this.pageId = pageId;
+        this.dictionaryId = dictionaryId;
+        this.originalLength = originalLength;
+        this.data = data;
+    }
+
+    public Integer getPageId() {
+        return pageId;
+    }
+
+    public void setPageId(Integer pageId) {
+        this.pageId = pageId;
+    }
+
+    public Integer getDictionaryId() {
+        return dictionaryId;
+    }
+
+    public void setDictionaryId(Integer dictionaryId) {
+        this.dictionaryId = dictionaryId;
+    }
+
+    public int getOriginalLength() {
+        return originalLength;
+    }
+
+    public void setOriginalLength(int originalLength) {
+        this.originalLength = originalLength;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public void setData(byte[] data) {
+        this.data = data;
+    }
+}
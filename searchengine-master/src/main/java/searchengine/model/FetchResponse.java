@@ -0,0 +1,152 @@
+package searchengine.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+/**
+ * HTTP-ответ, полученный через Fetcher: код, заголовки и тело.
+ * Тело либо уже прочитано в память, либо читается потоком (robots.txt, sitemap)
+ * и тогда буферизуется только при вызове bodyAsBytes().
+ */
+public class FetchResponse {
+
+    private final String url;
+    private final String finalUrl;
+    private final int statusCode;
+    private final String statusMessage;
+    private final Map<String, String> headers;
+    // Не монитор: потоковое тело читается из сети в виртуальном потоке загрузки,
+    // а блокирующее чтение внутри synchronized закрепило бы его за потоком-носителем
+    private final ReentrantLock bodyLock = new ReentrantLock();
+    private byte[] body;
+    private InputStream bodyStream;
+
+    public FetchResponse(String url, String finalUrl, int statusCode, String statusMessage,
+                         Map<String, String> headers, byte[] body) {
+        this.url = url;
+        this.finalUrl = finalUrl != null ? finalUrl : url;
+        this.statusCode = statusCode;
+        this.statusMessage = statusMessage;
+        this.headers = caseInsensitive(headers);
+        this.body = body != null ? body : new byte[0];
+    }
+
+    public FetchResponse(String url, String finalUrl, int statusCode, String statusMessage,
+                         Map<String, String> headers, InputStream bodyStream) {
+        this.url = url;
+        this.finalUrl = finalUrl != null ? finalUrl : url;
+        this.statusCode = statusCode;
+        this.statusMessage = statusMessage;
+        this.headers = caseInsensitive(headers);
+        this.bodyStream = bodyStream;
+    }
+
+    /**
+     * Запрошенный URL.
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * URL после перенаправлений; относительно него разрешаются ссылки документа.
+     */
+    public String getFinalUrl() {
+        return finalUrl;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public String getStatusMessage() {
+        return statusMessage;
+    }
+
+    public Map<String, String> getHeaders() {
+        return Collections.unmodifiableMap(headers);
+    }
+
+    /**
+     * Значение заголовка без учёта регистра имени или null.
+     */
+    public String header(String name) {
+        return headers.get(name);
+    }
+
+    public String contentType() {
+        return headers.get("Content-Type");
+    }
+
+    /**
+     * Кодировка из Content-Type или null, если она не указана.
+     */
+    public String charset() {
+        String contentType = contentType();
+        if (contentType == null) {
+            return null;
+        }
+        for (String part : contentType.split(";")) {
+            String parameter = part.trim();
+            if (parameter.toLowerCase(Locale.ROOT).startsWith("charset=")) {
+                String charset = parameter.substring(8).trim().replace("\"", "");
+                return charset.isEmpty() ? null : charset;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Тело ответа целиком; потоковое тело при первом вызове читается в память.
+     */
+    public byte[] bodyAsBytes() throws IOException {
+        bodyLock.lock();
+        try {
+            if (body == null) {
+                try (InputStream in = bodyStream) {
+                    body = in.readAllBytes();
+                }
+                bodyStream = null;
+            }
+            return body;
+        } finally {
+            bodyLock.unlock();
+        }
+    }
+
+    /**
+     * Тело ответа как поток. Потоковое тело можно прочитать только один раз.
+     */
+    public InputStream bodyStream() {
+        bodyLock.lock();
+        try {
+            return body != null ? new ByteArrayInputStream(body) : bodyStream;
+        } finally {
+            bodyLock.unlock();
+        }
+    }
+
+    /**
+     * Разбирает тело как HTML; кодировка берётся из Content-Type или из meta документа.
+     */
+    public Document parse() throws IOException {
+        return Jsoup.parse(new ByteArrayInputStream(bodyAsBytes()), charset(), finalUrl);
+    }
+
+    private static Map<String, String> caseInsensitive(Map<String, String> headers) {
+        Map<String, String> copy = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        if (headers != null) {
+            copy.putAll(headers);
+        }
+        return copy;
+    }
+}
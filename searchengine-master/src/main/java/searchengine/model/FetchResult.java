@@ -0,0 +1,67 @@
+package searchengine.model;
+
+import org.jsoup.nodes.Document;
+
+/**
+ * Результат загрузки страницы: код ответа, документ и валидаторы кэша HTTP.
+ * При ответе 304 (Not Modified) документ отсутствует.
+ */
+public class FetchResult {
+
+    private final String url;
+    private final String finalUrl;
+    private final int statusCode;
+    private final Document document;
+    private final String etag;
+    private final String lastModified;
+    private final String contentHash;
+
+    public FetchResult(String url, String finalUrl, int statusCode, Document document,
+                       String etag, String lastModified, String contentHash) {
+        this.url = url;
+        this.finalUrl = finalUrl != null ? finalUrl : url;
+        this.statusCode = statusCode;
+        this.document = document;
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.contentHash = contentHash;
+    }
+
+    public boolean isNotModified() {
+        return statusCode == 304;
+    }
+
+    /**
+     * Запрошенный URL; под ним страница хранится в базе.
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * URL после перенаправлений; совпадает с запрошенным, если их не было.
+     */
+    public String getFinalUrl() {
+        return finalUrl;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public Document getDocument() {
+        return document;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+}
@@ -0,0 +1,15 @@
+package searchengine.repository;
+
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import searchengine.entity.ContentDictionary;
+
+@Repository
+public interface ContentDictionaryRepository extends JpaRepository<ContentDictionary, Integer> {
+
+    // Последний построенный словарь сайта
+    Optional<ContentDictionary> findFirstBySiteIdOrderByIdDesc(Integer siteId);
+}
@@ -1,11 +1,25 @@
 package searchengine.repository;
+import java.util.Collection;
+import java.util.List;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import searchengine.entity.Index;
 
 public interface IndexRepository extends JpaRepository<Index, Integer> {
     Index findByPageIdAndLemma(Integer pageId, String lemma);
-}
-
 
+    // Все записи индекса страницы (для пересчёта при переиндексации)
+    List<Index> findByPageId(Integer pageId);
 
+    // Страницы, содержащие все леммы запроса, и сумма их рангов: пары [page_id, сумма].
+    // Леммы уникальны в пределах сайта, поэтому идентификаторы задают и сайт:
+    // записи читаются по uk_idx_lemma_page без соединения с page
+    @Query("SELECT i.pageId, SUM(i.rank) FROM Index i " +
+           "WHERE i.lemmaId IN :lemmaIds " +
+           "GROUP BY i.pageId HAVING COUNT(DISTINCT i.lemmaId) = :lemmaCount")
+    List<Object[]> sumRanksByLemmaIds(@Param("lemmaIds") Collection<Integer> lemmaIds,
+                                      @Param("lemmaCount") long lemmaCount);
+}
@@ -0,0 +1,81 @@
+package searchengine.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Пакетная запись лемм сайта через JDBC.
+ *
+ * Lemma использует GenerationType.IDENTITY, поэтому Hibernate вставляет такие
+ * сущности по одной. Здесь все леммы страницы записываются одним многострочным
+ * INSERT ... ON DUPLICATE KEY UPDATE по уникальному ключу (siteid, lemma_text);
+ * идентификаторы новых строк назначает MySQL, их читает findIds.
+ * На страницу приходится один запрос на каждые CHUNK_SIZE лемм.
+ */
+@Repository
+public class LemmaBatchRepository {
+
+    // Строк в одном запросе: ограничивает размер пакета (max_allowed_packet)
+    private static final int CHUNK_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public LemmaBatchRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Создаёт отсутствующие леммы сайта с частотой 1, у существующих увеличивает частоту на 1.
+     */
+    public void incrementOrInsert(int siteId, Collection<String> lemmas) {
+        // Одинаковый порядок строк во всех потоках: параллельные вставки страниц
+        // одного сайта блокируют записи индекса в одной очерёдности и не взаимоблокируются
+        List<String> sorted = new ArrayList<>(new TreeSet<>(lemmas));
+        for (int from = 0; from < sorted.size(); from += CHUNK_SIZE) {
+            List<String> chunk = sorted.subList(from, Math.min(sorted.size(), from + CHUNK_SIZE));
+            StringBuilder sql = new StringBuilder("INSERT INTO lemma (siteid, lemma_text, frequency) VALUES ");
+            Object[] args = new Object[chunk.size() * 2];
+            for (int i = 0; i < chunk.size(); i++) {
+                sql.append(i == 0 ? "(?, ?, 1)" : ", (?, ?, 1)");
+                args[2 * i] = siteId;
+                args[2 * i + 1] = chunk.get(i);
+            }
+            sql.append(" ON DUPLICATE KEY UPDATE frequency = frequency + 1");
+            jdbcTemplate.update(sql.toString(), args);
+        }
+    }
+
+    /**
+     * Идентификаторы лемм сайта по тексту (поиск по уникальному ключу uk_lemma_site_text).
+     *
+     * @return текст леммы -> идентификатор; отсутствующих в таблице лемм в результате нет
+     */
+    public Map<String, Integer> findIds(int siteId, Collection<String> lemmas) {
+        List<String> list = new ArrayList<>(lemmas);
+        Map<String, Integer> ids = new HashMap<>(list.size() * 2);
+        for (int from = 0; from < list.size(); from += CHUNK_SIZE) {
+            List<String> chunk = list.subList(from, Math.min(list.size(), from + CHUNK_SIZE));
+            StringBuilder sql = new StringBuilder("SELECT id, lemma_text FROM lemma WHERE siteid = ? AND lemma_text IN (");
+            Object[] args = new Object[chunk.size() + 1];
+            args[0] = siteId;
+            for (int i = 0; i < chunk.size(); i++) {
+                sql.append(i == 0 ? "?" : ", ?");
+                args[i + 1] = chunk.get(i);
+            }
+            sql.append(')');
+            jdbcTemplate.query(sql.toString(), rs -> {
+                ids.put(rs.getString(2), rs.getInt(1));
+            }, args);
+        }
+        return ids;
+    }
+}
@@ -1,15 +1,26 @@
 package searchengine.repository;
+import java.util.Collection;
 import java.util.List;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import searchengine.entity.Lemma;
 @Repository
 public interface LemmaRepository extends JpaRepository<Lemma, Integer> {
-    // Поиск леммы по тексту
-   
+    // Лемма сайта по тексту (уникальный ключ uk_lemma_site_text)
+    Lemma findBySiteIdAndLemmaText(int siteId, String lemmaText);
 
-    Lemma findByLemmaText(String lemmaText);  
-    List<Lemma> findByLemmaTextInAndSiteId(List<String> lemmas, int siteId);  
+    // Идентификаторы лемм запроса на выбранных сайтах: поиск по uk_lemma_site_text
+    @Query("SELECT l.id FROM Lemma l WHERE l.site.id IN :siteIds AND l.lemmaText IN :lemmas")
+    List<Integer> findIdsBySiteIdsAndLemmaTexts(@Param("siteIds") Collection<Integer> siteIds,
+                                                @Param("lemmas") Collection<String> lemmas);
+
+    // Изменение частоты сразу для набора лемм одним запросом
+    @Modifying
+    @Query("UPDATE Lemma l SET l.frequency = l.frequency + :delta WHERE l.id IN :ids")
+    int adjustFrequency(@Param("ids") Collection<Integer> ids, @Param("delta") int delta);
 }
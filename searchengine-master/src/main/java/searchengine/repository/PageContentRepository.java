@@ -0,0 +1,10 @@
+package searchengine.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import searchengine.entity.PageContent;
+
+@Repository
+public interface PageContentRepository extends JpaRepository<PageContent, Integer> {
+}
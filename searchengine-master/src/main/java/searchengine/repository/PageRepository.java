@@ -4,6 +4,7 @@ import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -48,6 +49,18 @@ public interface PageRepository extends JpaRepository<Page, Integer> {
     
     // Метод для поиска страницы по пути и ID сайта
     Optional<Page> findByPathAndSiteId(String path, Integer siteId);
+
+    // SimHash основных (не являющихся дубликатами) страниц сайта: пары [id, simhash]
+    @Query("SELECT p.id, p.simhash FROM Page p " +
+           "WHERE p.site.id = :siteId AND p.simhash IS NOT NULL AND p.canonicalPageId IS NULL")
+    List<Object[]> findSimhashesBySiteId(@Param("siteId") int siteId);
+
+    // Сброс ETag, Last-Modified и хэша у дубликатов страницы: при следующем обходе
+    // они не считаются неизменёнными и проверяются на сходство заново
+    @Modifying
+    @Query("UPDATE Page p SET p.etag = NULL, p.lastModified = NULL, p.contentHash = NULL " +
+           "WHERE p.canonicalPageId = :pageId")
+    int resetDuplicatesOf(@Param("pageId") int pageId);
 }
 
 
@@ -0,0 +1,66 @@
+package searchengine.services;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Признак отмены индексации, передаваемый через IndexingService, SiteCrawler и PageService.
+ * Долгие операции проверяют его между шагами, а зарегистрированные обработчики
+ * (например, обход сайта) при отмене сразу прерывают выполняющиеся загрузки.
+ */
+public class CancellationToken {
+
+    public static final String STOPPED_BY_USER = "Индексация остановлена пользователем";
+
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+    private volatile boolean cancelled;
+
+    /**
+     * Отменяет операцию и вызывает зарегистрированные обработчики.
+     *
+     * @return false, если операция уже была отменена
+     */
+    public boolean cancel() {
+        synchronized (this) {
+            if (cancelled) {
+                return false;
+            }
+            cancelled = true;
+        }
+        for (Runnable listener : listeners) {
+            listener.run();
+        }
+        return true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Бросает CancellationException, если операция отменена.
+     */
+    public void throwIfCancelled() {
+        if (cancelled) {
+            throw new CancellationException(STOPPED_BY_USER);
+        }
+    }
+
+    /**
+     * Регистрирует обработчик отмены. Если операция уже отменена, он вызывается сразу.
+     */
+    public void register(Runnable listener) {
+        synchronized (this) {
+            if (!cancelled) {
+                listeners.add(listener);
+                return;
+            }
+        }
+        listener.run();
+    }
+
+    public void unregister(Runnable listener) {
+        listeners.remove(listener);
+    }
+}
@@ -1,38 +1,194 @@
 package searchengine.services;
 
 import java.io.IOException;
+import java.net.SocketException;
 import java.net.SocketTimeoutException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.regex.Pattern;
 
-import org.jsoup.Jsoup;
+import org.jsoup.HttpStatusException;
+import org.jsoup.UnsupportedMimeTypeException;
 import org.jsoup.nodes.Document;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import searchengine.model.FetchResponse;
+import searchengine.model.FetchResult;
+import searchengine.services.HostConcurrencyLimiter.Outcome;
+
+/**
+ * HTTP-запросы обходчика. Ответы получаются через Fetcher (сеть или WARC, см. FetcherConfig);
+ * при загрузке из сети соблюдаются ограничения параллельности и частоты запросов к хосту.
+ */
 @Service
 public class ConnectionService {
 
     private static final Logger logger = LoggerFactory.getLogger(ConnectionService.class);
 
+    // Типы содержимого, которые разбираются как документ (как в Jsoup без ignoreContentType)
+    private static final Pattern XML_CONTENT_TYPE = Pattern.compile("(application|text)/\\w*\\+?xml.*");
+
+    @Autowired
+    private HostRateLimiter hostRateLimiter;
+
+    @Autowired
+    private HostConcurrencyLimiter hostConcurrencyLimiter;
+
+    @Autowired
+    private Fetcher fetcher;
+
     public Document connectToPage(String url) throws IOException {
-        logger.info("Подключение к странице: {}", url);
+        return fetch(url, null, null).getDocument();
+    }
+
+    /**
+     * Загружает страницу с условными заголовками If-None-Match / If-Modified-Since.
+     * Если сервер ответил 304, документ в результате отсутствует.
+     *
+     * @param etag         ETag сохранённой версии страницы или null
+     * @param lastModified Last-Modified сохранённой версии страницы или null
+     */
+    public FetchResult fetch(String url, String etag, String lastModified) throws IOException {
+        Map<String, String> headers = new HashMap<>();
+        if (etag != null && !etag.isEmpty()) {
+            headers.put("If-None-Match", etag);
+        }
+        if (lastModified != null && !lastModified.isEmpty()) {
+            headers.put("If-Modified-Since", lastModified);
+        }
+        if (!fetcher.isRemote()) {
+            return toFetchResult(url, checkResponse(fetcher.fetch(url, headers, false)));
+        }
+
+        // Ждём свободного слота хоста, затем соблюдаем ограничение частоты запросов
+        hostConcurrencyLimiter.acquire(url);
+        Outcome outcome = Outcome.IGNORED;
+        long start = 0;
         try {
-            Document doc = Jsoup.connect(url)
-                    .timeout(30000) // увеличиваем таймаут до 30 секунд
-                    .userAgent("Mozilla/5.0 (Windows NT 10.0; Win64; x64) " +
-                               "AppleWebKit/537.36 (KHTML, like Gecko) " +
-                               "Chrome/91.0.4472.124 Safari/537.36")
-                    .get();
-            logger.info("Успешное подключение к странице: {}", url);
-            return doc;
+            hostRateLimiter.acquire(url);
+            logger.info("Подключение к странице: {}", url);
+            start = System.nanoTime();
+            FetchResponse response = fetcher.fetch(url, headers, false);
+            outcome = outcomeOf(response.getStatusCode());
+            FetchResult result = toFetchResult(url, checkResponse(response));
+            if (result.isNotModified()) {
+                logger.info("Страница не изменилась (304): {}", url);
+            } else {
+                logger.info("Успешное подключение к странице: {}", url);
+            }
+            return result;
         } catch (SocketTimeoutException e) {
+            outcome = outcomeOf(e);
             logger.error("Таймаут при подключении к странице {}: {}", url, e.getMessage());
             throw e;
         } catch (IOException e) {
+            outcome = outcomeOf(e);
             logger.error("Ошибка подключения к странице {}: {}", url, e.getMessage());
             throw e;
+        } finally {
+            hostConcurrencyLimiter.release(url, start == 0 ? 0 : System.nanoTime() - start, outcome);
         }
     }
-}
 
+    /**
+     * Повторная загрузка страницы без условных заголовков: запасной путь PageService,
+     * если условный запрос не удался. Запрос занимает слот хоста и учитывается
+     * адаптивным лимитом так же, как fetch.
+     */
+    public FetchResult fetchFallback(String url) throws IOException {
+        return fetch(url, null, null);
+    }
 
+    /**
+     * Загружает служебный файл сайта (robots.txt, sitemap.xml) без разбора HTML.
+     * Тело ответа не буферизуется целиком: его следует читать через bodyStream().
+     * Ошибочные HTTP-статусы не приводят к исключению, их проверяет вызывающий код.
+     */
+    public FetchResponse fetchRaw(String url) throws IOException {
+        if (!fetcher.isRemote()) {
+            return fetcher.fetch(url, Map.of(), true);
+        }
+        hostConcurrencyLimiter.acquire(url);
+        Outcome outcome = Outcome.IGNORED;
+        long start = 0;
+        try {
+            hostRateLimiter.acquire(url);
+            logger.info("Загрузка файла: {}", url);
+            start = System.nanoTime();
+            FetchResponse response = fetcher.fetch(url, Map.of(), true);
+            outcome = outcomeOf(response.getStatusCode());
+            return response;
+        } catch (IOException e) {
+            outcome = outcomeOf(e);
+            throw e;
+        } finally {
+            // Учитывается время до получения заголовков: тело читает вызывающий код
+            hostConcurrencyLimiter.release(url, start == 0 ? 0 : System.nanoTime() - start, outcome);
+        }
+    }
+
+    /**
+     * Проверки, которые Jsoup выполняет при загрузке документа: код ответа 2xx или 3xx
+     * и текстовый или XML тип содержимого.
+     */
+    private static FetchResponse checkResponse(FetchResponse response) throws IOException {
+        int status = response.getStatusCode();
+        if (status < 200 || status >= 400) {
+            throw new HttpStatusException("HTTP error fetching URL", status, response.getUrl());
+        }
+        String contentType = response.contentType();
+        if (status != 304 && contentType != null && !contentType.startsWith("text/")
+                && !XML_CONTENT_TYPE.matcher(contentType).matches()) {
+            throw new UnsupportedMimeTypeException("Unhandled content type. Must be text/*, application/xml, "
+                    + "or application/*+xml", contentType, response.getUrl());
+        }
+        return response;
+    }
+
+    /**
+     * Ответы 429 и 5xx означают, что хост не справляется с нагрузкой.
+     */
+    private static Outcome outcomeOf(int statusCode) {
+        return statusCode == 429 || statusCode >= 500 ? Outcome.OVERLOAD : Outcome.SUCCESS;
+    }
+
+    private static Outcome outcomeOf(IOException e) {
+        if (Thread.currentThread().isInterrupted()) {
+            return Outcome.IGNORED;
+        }
+        if (e instanceof HttpStatusException) {
+            return outcomeOf(((HttpStatusException) e).getStatusCode());
+        }
+        // Таймауты, отказ и сброс соединения; прочие ошибки (тип содержимого, SSL) не про нагрузку
+        return e instanceof SocketTimeoutException || e instanceof SocketException
+                ? Outcome.OVERLOAD
+                : Outcome.IGNORED;
+    }
+
+    /**
+     * Преобразует ответ в FetchResult, вычисляя хэш тела ответа.
+     */
+    public static FetchResult toFetchResult(String url, FetchResponse response) throws IOException {
+        if (response.getStatusCode() == 304) {
+            return new FetchResult(url, response.getFinalUrl(), 304, null,
+                    response.header("ETag"), response.header("Last-Modified"), null);
+        }
+        String contentHash = sha256(response.bodyAsBytes());
+        return new FetchResult(url, response.getFinalUrl(), response.getStatusCode(), response.parse(),
+                response.header("ETag"), response.header("Last-Modified"), contentHash);
+    }
+
+    private static String sha256(byte[] body) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(body));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+}
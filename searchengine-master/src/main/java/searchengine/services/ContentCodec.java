@@ -0,0 +1,161 @@
+package searchengine.services;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Сжатие HTML страниц алгоритмом deflate с предустановленным словарём сайта.
+ *
+ * Страницы одного сайта в основном состоят из одинаковой разметки (шапка, меню, подвал),
+ * поэтому словарь из повторяющихся фрагментов нескольких страниц заметно улучшает сжатие
+ * каждой отдельной страницы. Deflate ищет совпадения только в последних 32 КБ, поэтому
+ * словарь не больше 32 КБ, а самые ценные фрагменты помещаются в его конец.
+ */
+public final class ContentCodec {
+
+    public static final int MAX_DICTIONARY_SIZE = 32 * 1024;
+
+    // Более короткие фрагменты deflate и так хорошо сжимает внутри страницы
+    private static final int MIN_FRAGMENT_LENGTH = 8;
+    private static final int MAX_FRAGMENT_LENGTH = 2048;
+
+    private ContentCodec() {
+    }
+
+    /**
+     * Сжимает текст; dictionary может быть null.
+     */
+    public static byte[] compress(String text, byte[] dictionary) {
+        byte[] input = text.getBytes(StandardCharsets.UTF_8);
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try {
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary);
+            }
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, input.length / 4));
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                int length = deflater.deflate(buffer);
+                out.write(buffer, 0, length);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Распаковывает данные, сжатые compress с тем же словарём.
+     *
+     * @param originalLength длина исходного текста в байтах UTF-8
+     */
+    public static String decompress(byte[] data, int originalLength, byte[] dictionary) {
+        return decompress(ByteBuffer.wrap(data), originalLength, dictionary);
+    }
+
+    /**
+     * Распаковывает данные из буфера (например, отображённого в память файла) без копирования в heap.
+     */
+    public static String decompress(ByteBuffer data, int originalLength, byte[] dictionary) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            byte[] output = new byte[originalLength];
+            int position = 0;
+            while (!inflater.finished()) {
+                int length = inflater.inflate(output, position, output.length - position);
+                if (length == 0) {
+                    if (!inflater.needsDictionary()) {
+                        break;
+                    }
+                    if (dictionary == null) {
+                        throw new IllegalStateException("Для распаковки нужен словарь");
+                    }
+                    inflater.setDictionary(dictionary);
+                }
+                position += length;
+            }
+            if (!inflater.finished() || position != originalLength) {
+                throw new IllegalStateException("Повреждённое содержимое страницы");
+            }
+            return new String(output, StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Повреждённое содержимое страницы: " + e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Строит словарь по образцам страниц сайта.
+     *
+     * HTML делится на фрагменты по концам строк и тегов; в словарь попадают фрагменты,
+     * встречающиеся хотя бы в двух образцах, в порядке убывания выгоды
+     * (число образцов × длина). Возвращает null, если общих фрагментов нет.
+     */
+    public static byte[] trainDictionary(List<String> samples) {
+        Map<String, Integer> documentFrequency = new HashMap<>();
+        for (String sample : samples) {
+            Set<String> fragments = new HashSet<>();
+            int start = 0;
+            for (int i = 0; i < sample.length(); i++) {
+                char c = sample.charAt(i);
+                if (c == '\n' || c == '>' || i - start + 1 >= MAX_FRAGMENT_LENGTH) {
+                    String fragment = sample.substring(start, i + 1).trim();
+                    if (fragment.length() >= MIN_FRAGMENT_LENGTH) {
+                        fragments.add(fragment);
+                    }
+                    start = i + 1;
+                }
+            }
+            for (String fragment : fragments) {
+                documentFrequency.merge(fragment, 1, Integer::sum);
+            }
+        }
+
+        List<Map.Entry<String, Integer>> common = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : documentFrequency.entrySet()) {
+            if (entry.getValue() >= 2) {
+                common.add(entry);
+            }
+        }
+        if (common.isEmpty()) {
+            return null;
+        }
+        common.sort((a, b) -> Long.compare(
+                (long) b.getValue() * b.getKey().length(),
+                (long) a.getValue() * a.getKey().length()));
+
+        // Отбираем самые выгодные фрагменты, затем записываем их так, чтобы лучшие оказались в конце
+        List<byte[]> chosen = new ArrayList<>();
+        int size = 0;
+        for (Map.Entry<String, Integer> entry : common) {
+            byte[] bytes = (entry.getKey() + "\n").getBytes(StandardCharsets.UTF_8);
+            if (size + bytes.length > MAX_DICTIONARY_SIZE) {
+                continue;
+            }
+            chosen.add(bytes);
+            size += bytes.length;
+        }
+        byte[] dictionary = new byte[size];
+        int position = 0;
+        for (int i = chosen.size() - 1; i >= 0; i--) {
+            byte[] bytes = chosen.get(i);
+            System.arraycopy(bytes, 0, dictionary, position, bytes.length);
+            position += bytes.length;
+        }
+        return dictionary;
+    }
+}
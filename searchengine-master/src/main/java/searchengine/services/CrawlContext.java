@@ -0,0 +1,265 @@
+package searchengine.services;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import searchengine.entity.Site;
+
+/**
+ * Общее состояние обхода одного сайта, разделяемое всеми задачами SiteCrawlTask.
+ * Хранит множество посещённых URL (UrlSeenFilter), счётчики страниц и дисковую очередь URL (CrawlFrontier).
+ * Ложные срабатывания фильтра перепроверяются по журналу очереди: в нём есть каждый URL,
+ * поставленный в очередь этим обходом, в том числе до перезапуска.
+ * Одновременно выполняется не более maxInFlight задач; остальные URL ждут в очереди на диске.
+ * Обход завершён, когда очередь пуста и не осталось выполняющихся задач.
+ * При отмене новые задачи не запускаются, выполняющиеся загрузки прерываются,
+ * и обход завершается с CancellationException, как только освободятся все слоты.
+ */
+public class CrawlContext {
+
+    private final Site site;
+    private final String host;
+    private final int maxDepth;
+    private final int maxPages;
+    private final int maxInFlight;
+    private final CrawlFrontier frontier;
+    private final UrlSeenFilter visited;
+    private final CancellationToken token;
+    private final RobotsRules robots;
+
+    private final AtomicInteger scheduledPages = new AtomicInteger();
+    private final AtomicInteger indexedPages = new AtomicInteger();
+    private final AtomicInteger failedPages = new AtomicInteger();
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+    private final Set<CompletableFuture<?>> fetches = ConcurrentHashMap.newKeySet();
+    private volatile boolean cancelled;
+
+    // Количество задач, взятых из очереди и ещё не завершённых (под блокировкой this)
+    private int inFlight;
+
+    public CrawlContext(Site site, String host, int maxDepth, int maxPages, int maxInFlight,
+                        CrawlFrontier frontier, double visitedFalsePositiveRate, CancellationToken token,
+                        RobotsRules robots) {
+        this.site = site;
+        this.host = host;
+        this.maxDepth = maxDepth;
+        this.maxPages = maxPages;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.frontier = frontier;
+        this.visited = new UrlSeenFilter(visitedFalsePositiveRate, this::isScheduled);
+        this.token = token;
+        this.robots = robots;
+    }
+
+    /**
+     * Восстанавливает множество посещённых URL из журнала очереди при продолжении обхода.
+     */
+    public void restoreVisited() throws IOException {
+        frontier.forEachEntry(entry -> {
+            visited.restore(entry.getUrl(), frontier.isQueued(entry));
+            scheduledPages.incrementAndGet();
+        });
+    }
+
+    /**
+     * Проверяет, разрешает ли robots.txt сайта загрузку URL.
+     */
+    public boolean isAllowed(String url) {
+        return robots.isAllowed(url);
+    }
+
+    /**
+     * Помечает URL как посещённый и резервирует под него место в лимите страниц.
+     *
+     * @return true, если URL ещё не встречался и лимит страниц не исчерпан
+     */
+    public boolean tryVisit(String url) {
+        if (scheduledPages.get() >= maxPages) {
+            return false;
+        }
+        if (!visited.add(url)) {
+            return false;
+        }
+        if (scheduledPages.incrementAndGet() > maxPages) {
+            scheduledPages.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Отмечает, что страница сохранена в базе: точный учёт её URL в памяти больше не нужен.
+     */
+    public void pageIndexed(String url) {
+        visited.markIndexed(url);
+    }
+
+    /**
+     * Отмечает URL, на который перенаправил сервер, как посещённый: его содержимое
+     * уже сохранено под запрошенным URL, и ссылки на него не должны загружаться повторно.
+     * В очередь такой URL не ставится, поэтому остаётся в точном учёте фильтра
+     * и место в лимите страниц не занимает.
+     */
+    public void redirectVisited(String finalUrl) {
+        visited.add(finalUrl);
+    }
+
+    /**
+     * Точная проверка для UrlSeenFilter: ставился ли URL в очередь этого обхода.
+     */
+    private synchronized boolean isScheduled(String url) {
+        try {
+            return frontier.contains(url);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Ошибка чтения очереди обхода: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Добавляет URL в дисковую очередь.
+     */
+    public synchronized void enqueue(String url, int depth) throws IOException {
+        frontier.push(url, depth);
+    }
+
+    /**
+     * Берёт из очереди следующий URL, если не превышен лимит одновременно выполняемых задач.
+     *
+     * @return запись очереди или null, если очередь пуста или все слоты заняты
+     */
+    public synchronized CrawlFrontier.Entry nextTask() throws IOException {
+        if (cancelled || inFlight >= maxInFlight) {
+            return null;
+        }
+        CrawlFrontier.Entry entry = frontier.poll();
+        if (entry != null) {
+            inFlight++;
+        }
+        return entry;
+    }
+
+    /**
+     * Отмечает завершение задачи и освобождает её слот. После отмены запись не отмечается
+     * обработанной, чтобы следующий запуск обхода загрузил её повторно.
+     */
+    public synchronized void taskFinished(CrawlFrontier.Entry entry) {
+        inFlight--;
+        if (!cancelled) {
+            frontier.done(entry);
+        }
+        if (inFlight == 0) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Ждёт завершения всех задач, взятых из очереди. Вызывается перед закрытием очереди,
+     * если обход завершился с ошибкой, пока загрузки и сохранения ещё выполнялись.
+     */
+    public synchronized void awaitIdle() {
+        while (inFlight > 0) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                // Задачи, завершившиеся после закрытия, не изменяют очередь (CrawlFrontier.close)
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Завершает обход, если очередь пуста и не осталось выполняющихся задач.
+     */
+    public synchronized void completeIfIdle() {
+        if (inFlight == 0 && cancelled) {
+            completion.completeExceptionally(new CancellationException(CancellationToken.STOPPED_BY_USER));
+        } else if (inFlight == 0 && frontier.isEmpty()) {
+            completion.complete(null);
+        }
+    }
+
+    /**
+     * Запоминает выполняющуюся загрузку, чтобы её можно было прервать при отмене.
+     */
+    public void fetchStarted(CompletableFuture<?> fetch) {
+        fetches.add(fetch);
+        fetch.whenComplete((result, error) -> fetches.remove(fetch));
+        if (cancelled) {
+            fetch.cancel(true);
+        }
+    }
+
+    /**
+     * Отменяет обход: прекращает выдачу URL из очереди и прерывает выполняющиеся загрузки.
+     * Очередь на диске сохраняется, поэтому следующий запуск продолжит обход.
+     */
+    public void cancel() {
+        cancelled = true;
+        for (CompletableFuture<?> fetch : fetches) {
+            fetch.cancel(true);
+        }
+        completeIfIdle();
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public synchronized long getFrontierSize() {
+        return frontier.size();
+    }
+
+    public CrawlFrontier getFrontier() {
+        return frontier;
+    }
+
+    public CancellationToken getToken() {
+        return token;
+    }
+
+    public UrlSeenFilter getVisited() {
+        return visited;
+    }
+
+    public Site getSite() {
+        return site;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public int getScheduledPages() {
+        return scheduledPages.get();
+    }
+
+    public int incrementIndexedPages() {
+        return indexedPages.incrementAndGet();
+    }
+
+    public int getIndexedPages() {
+        return indexedPages.get();
+    }
+
+    public int incrementFailedPages() {
+        return failedPages.incrementAndGet();
+    }
+
+    public int getFailedPages() {
+        return failedPages.get();
+    }
+
+    public CompletableFuture<Void> getCompletion() {
+        return completion;
+    }
+}
@@ -0,0 +1,418 @@
+package searchengine.services;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+/**
+ * Дисковая очередь URL для обхода сайта (frontier).
+ *
+ * Файл queue.dat - журнал только на дозапись, отображаемый в память блоками по CHUNK_SIZE байт.
+ * Каждая запись: [int длина URL][int глубина][байты URL в UTF-8]. Запись никогда не пересекает
+ * границу блока: если она не помещается, в остаток блока записывается длина 0 и он пропускается.
+ * Метка пишется явно: после продолжения с контрольной точки в остатке блока могут лежать
+ * записи, дописанные уже после неё. Длина вне допустимых пределов считается повреждением
+ * файла, и чтение завершается IOException.
+ * Файл frontier.meta хранит позицию головы и хвоста очереди, поэтому после перезапуска
+ * обход продолжается с места остановки. Журнал содержит все URL, когда-либо поставленные
+ * в очередь, и одновременно служит снимком множества посещённых URL.
+ *
+ * Позиции записываются в frontier.meta только в контрольной точке - не чаще раза
+ * в CHECKPOINT_INTERVAL_MS и при закрытии, - и только после force() дописанных записей.
+ * Поэтому и после сбоя процесса, и после сбоя машины meta не указывает на незаписанные
+ * данные: продолжение начинается с последней контрольной точки, а страницы, обработанные
+ * после неё, загружаются повторно. После close() очередь не изменяется: push, poll
+ * и done задач, завершающихся позже, ничего не делают.
+ *
+ * В памяти одновременно отображены только блоки чтения и записи, поэтому расход heap
+ * не зависит от размера очереди. Класс не потокобезопасен: синхронизацию обеспечивает CrawlContext.
+ */
+public class CrawlFrontier implements Closeable {
+
+    static final int CHUNK_SIZE = 16 * 1024 * 1024;
+    private static final int HEADER_SIZE = 8;
+    private static final int MAX_URL_BYTES = 8 * 1024;
+    private static final long CHECKPOINT_INTERVAL_MS = 1000;
+
+    private static final String QUEUE_FILE = "queue.dat";
+    private static final String META_FILE = "frontier.meta";
+
+    private final Path dir;
+    private final FileChannel queueChannel;
+    private final FileChannel metaChannel;
+    private final MappedByteBuffer meta;
+    private final boolean resumed;
+
+    private MappedByteBuffer writeChunk;
+    private long writeChunkIndex = -1;
+    private MappedByteBuffer readChunk;
+    private long readChunkIndex = -1;
+
+    private long readPos;
+    private long tail;
+    private long pending;
+
+    // Хвост на момент последней контрольной точки: записи до него уже на диске
+    private long durableTail;
+    private long lastCheckpoint;
+    private boolean closed;
+
+    // Смещения записей, выданных на обработку, но ещё не завершённых
+    private final TreeSet<Long> inFlight = new TreeSet<>();
+
+    private CrawlFrontier(Path dir) throws IOException {
+        this.dir = dir;
+        Files.createDirectories(dir);
+        Path metaPath = dir.resolve(META_FILE);
+        this.resumed = Files.exists(metaPath) && Files.size(metaPath) >= 16;
+
+        this.queueChannel = FileChannel.open(dir.resolve(QUEUE_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.metaChannel = FileChannel.open(metaPath,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.meta = metaChannel.map(FileChannel.MapMode.READ_WRITE, 0, 16);
+
+        if (resumed) {
+            this.readPos = meta.getLong(0);
+            this.tail = meta.getLong(8);
+            try {
+                this.pending = countRecords(readPos, tail);
+            } catch (IOException e) {
+                queueChannel.close();
+                metaChannel.close();
+                throw e;
+            }
+            this.durableTail = tail;
+        }
+        this.lastCheckpoint = System.currentTimeMillis();
+    }
+
+    /**
+     * Открывает очередь в каталоге dir. Если в каталоге осталась очередь предыдущего
+     * незавершённого обхода, она продолжается с сохранённой позиции.
+     */
+    public static CrawlFrontier open(Path dir) throws IOException {
+        return new CrawlFrontier(dir);
+    }
+
+    /**
+     * Удаляет файлы очереди (после успешного завершения обхода).
+     */
+    public static void delete(Path dir) throws IOException {
+        Files.deleteIfExists(dir.resolve(QUEUE_FILE));
+        Files.deleteIfExists(dir.resolve(META_FILE));
+        Files.deleteIfExists(dir);
+    }
+
+    /**
+     * true, если очередь восстановлена после прерванного обхода.
+     */
+    public boolean isResumed() {
+        return resumed;
+    }
+
+    /**
+     * Добавляет URL в конец очереди.
+     *
+     * @return false, если URL слишком длинный для записи или очередь закрыта
+     */
+    public boolean push(String url, int depth) throws IOException {
+        if (closed) {
+            return false;
+        }
+        byte[] bytes = url.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length == 0 || bytes.length > MAX_URL_BYTES) {
+            return false;
+        }
+        int recordSize = HEADER_SIZE + bytes.length;
+        if (offsetInChunk(tail) + recordSize > CHUNK_SIZE) {
+            if (offsetInChunk(tail) + HEADER_SIZE <= CHUNK_SIZE) {
+                writeChunkFor(tail).putInt(offsetInChunk(tail), 0);
+            }
+            tail = chunkStart(tail) + CHUNK_SIZE;
+        }
+        MappedByteBuffer chunk = writeChunkFor(tail);
+        int offset = offsetInChunk(tail);
+        chunk.putInt(offset, bytes.length);
+        chunk.putInt(offset + 4, depth);
+        chunk.put(offset + HEADER_SIZE, bytes);
+
+        tail += recordSize;
+        pending++;
+        return true;
+    }
+
+    /**
+     * Извлекает следующий URL из головы очереди или возвращает null, если очередь пуста.
+     * Запись считается выполняемой до вызова done.
+     */
+    public Entry poll() throws IOException {
+        while (!closed && readPos < tail) {
+            int offset = offsetInChunk(readPos);
+            if (offset + HEADER_SIZE > CHUNK_SIZE) {
+                readPos = chunkStart(readPos) + CHUNK_SIZE;
+                continue;
+            }
+            MappedByteBuffer chunk = readChunkFor(readPos);
+            int length = recordLength(chunk, readPos);
+            if (length == 0) {
+                readPos = chunkStart(readPos) + CHUNK_SIZE;
+                continue;
+            }
+            int depth = chunk.getInt(offset + 4);
+            byte[] bytes = new byte[length];
+            chunk.get(offset + HEADER_SIZE, bytes);
+
+            Entry entry = new Entry(readPos, new String(bytes, StandardCharsets.UTF_8), depth);
+            readPos += HEADER_SIZE + length;
+            pending--;
+            inFlight.add(entry.getOffset());
+            return entry;
+        }
+        return null;
+    }
+
+    /**
+     * Отмечает запись как обработанную. Сохранённая голова очереди не продвигается дальше
+     * самой ранней незавершённой записи, поэтому после сбоя она будет обработана повторно.
+     */
+    public void done(Entry entry) {
+        if (closed) {
+            return;
+        }
+        inFlight.remove(entry.getOffset());
+        if (System.currentTimeMillis() - lastCheckpoint >= CHECKPOINT_INTERVAL_MS) {
+            checkpoint();
+        }
+    }
+
+    /**
+     * true, если запись ещё не выдана на обработку или не завершена.
+     */
+    public boolean isQueued(Entry entry) {
+        return entry.getOffset() >= readPos || inFlight.contains(entry.getOffset());
+    }
+
+    public boolean isEmpty() {
+        return pending == 0;
+    }
+
+    /**
+     * Количество URL, ожидающих загрузки.
+     */
+    public long size() {
+        return pending;
+    }
+
+    /**
+     * Последовательно читает все записи, когда-либо добавленные в очередь.
+     * Используется для восстановления множества посещённых URL при продолжении обхода.
+     */
+    public void forEachEntry(Consumer<Entry> consumer) throws IOException {
+        long pos = 0;
+        long chunkIndex = -1;
+        MappedByteBuffer chunk = null;
+        while (pos < tail) {
+            int offset = offsetInChunk(pos);
+            if (offset + HEADER_SIZE > CHUNK_SIZE) {
+                pos = chunkStart(pos) + CHUNK_SIZE;
+                continue;
+            }
+            if (pos / CHUNK_SIZE != chunkIndex) {
+                chunkIndex = pos / CHUNK_SIZE;
+                chunk = mapChunk(chunkIndex);
+            }
+            int length = recordLength(chunk, pos);
+            if (length == 0) {
+                pos = chunkStart(pos) + CHUNK_SIZE;
+                continue;
+            }
+            byte[] bytes = new byte[length];
+            chunk.get(offset + HEADER_SIZE, bytes);
+            consumer.accept(new Entry(pos, new String(bytes, StandardCharsets.UTF_8), chunk.getInt(offset + 4)));
+            pos += HEADER_SIZE + length;
+        }
+    }
+
+    /**
+     * true, если URL когда-либо ставился в очередь этого обхода. Журнал читается целиком,
+     * поэтому метод предназначен для редких точных проверок; строки для записей не создаются.
+     * После close() возвращает false.
+     */
+    public boolean contains(String url) throws IOException {
+        byte[] bytes = url.getBytes(StandardCharsets.UTF_8);
+        if (closed || bytes.length == 0 || bytes.length > MAX_URL_BYTES) {
+            return false;
+        }
+        byte[] candidate = new byte[bytes.length];
+        long pos = 0;
+        long chunkIndex = -1;
+        MappedByteBuffer chunk = null;
+        while (pos < tail) {
+            int offset = offsetInChunk(pos);
+            if (offset + HEADER_SIZE > CHUNK_SIZE) {
+                pos = chunkStart(pos) + CHUNK_SIZE;
+                continue;
+            }
+            if (pos / CHUNK_SIZE != chunkIndex) {
+                chunkIndex = pos / CHUNK_SIZE;
+                chunk = mapChunk(chunkIndex);
+            }
+            int length = recordLength(chunk, pos);
+            if (length == 0) {
+                pos = chunkStart(pos) + CHUNK_SIZE;
+                continue;
+            }
+            if (length == bytes.length) {
+                chunk.get(offset + HEADER_SIZE, candidate);
+                if (Arrays.equals(candidate, bytes)) {
+                    return true;
+                }
+            }
+            pos += HEADER_SIZE + length;
+        }
+        return false;
+    }
+
+    public Path getDir() {
+        return dir;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        checkpoint();
+        closed = true;
+        queueChannel.close();
+        metaChannel.close();
+    }
+
+    private long countRecords(long from, long to) throws IOException {
+        long count = 0;
+        long pos = from;
+        while (pos < to) {
+            int offset = offsetInChunk(pos);
+            if (offset + HEADER_SIZE > CHUNK_SIZE) {
+                pos = chunkStart(pos) + CHUNK_SIZE;
+                continue;
+            }
+            int length = recordLength(readChunkFor(pos), pos);
+            if (length == 0) {
+                pos = chunkStart(pos) + CHUNK_SIZE;
+                continue;
+            }
+            count++;
+            pos += HEADER_SIZE + length;
+        }
+        return count;
+    }
+
+    /**
+     * Длина URL записи в позиции pos или 0 для метки конца блока.
+     *
+     * @throws IOException если длина не может принадлежать записи: файл повреждён
+     */
+    private int recordLength(MappedByteBuffer chunk, long pos) throws IOException {
+        int offset = offsetInChunk(pos);
+        int length = chunk.getInt(offset);
+        if (length < 0 || length > MAX_URL_BYTES || offset + HEADER_SIZE + length > CHUNK_SIZE
+                || (length > 0 && pos + HEADER_SIZE + length > tail)) {
+            throw new IOException("Очередь обхода " + dir + " повреждена: длина записи " + length
+                    + " в позиции " + pos);
+        }
+        return length;
+    }
+
+    /**
+     * Сбрасывает на диск записи, дописанные после прошлой контрольной точки, и только затем
+     * сохраняет голову и хвост очереди. Голова не продвигается дальше самой ранней
+     * незавершённой записи.
+     */
+    private void checkpoint() {
+        if (writeChunk != null && tail > durableTail) {
+            long chunkBase = writeChunkIndex * CHUNK_SIZE;
+            long from = Math.max(durableTail, chunkBase);
+            long to = Math.min(tail, chunkBase + CHUNK_SIZE);
+            if (to > from) {
+                writeChunk.force((int) (from - chunkBase), (int) (to - from));
+            }
+        }
+        meta.putLong(0, inFlight.isEmpty() ? readPos : inFlight.first());
+        meta.putLong(8, tail);
+        meta.force();
+        durableTail = tail;
+        lastCheckpoint = System.currentTimeMillis();
+    }
+
+    private MappedByteBuffer writeChunkFor(long pos) throws IOException {
+        long index = pos / CHUNK_SIZE;
+        if (index != writeChunkIndex) {
+            // Предыдущий блок сбрасывается целиком: контрольная точка сбрасывает только текущий
+            if (writeChunk != null) {
+                writeChunk.force();
+            }
+            writeChunk = mapChunk(index);
+            writeChunkIndex = index;
+        }
+        return writeChunk;
+    }
+
+    private MappedByteBuffer readChunkFor(long pos) throws IOException {
+        long index = pos / CHUNK_SIZE;
+        if (index != readChunkIndex) {
+            readChunk = mapChunk(index);
+            readChunkIndex = index;
+        }
+        return readChunk;
+    }
+
+    private MappedByteBuffer mapChunk(long index) throws IOException {
+        return queueChannel.map(FileChannel.MapMode.READ_WRITE, index * CHUNK_SIZE, CHUNK_SIZE);
+    }
+
+    private static long chunkStart(long pos) {
+        return pos - pos % CHUNK_SIZE;
+    }
+
+    private static int offsetInChunk(long pos) {
+        return (int) (pos % CHUNK_SIZE);
+    }
+
+    /**
+     * URL из очереди вместе с глубиной и смещением записи в файле.
+     */
+    public static final class Entry {
+
+        private final long offset;
+        private final String url;
+        private final int depth;
+
+        Entry(long offset, String url, int depth) {
+            this.offset = offset;
+            this.url = url;
+            this.depth = depth;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public int getDepth() {
+            return depth;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package searchengine.services;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import searchengine.config.CrawlerSettings;
+
+/**
+ * Исполнитель сетевых запросов, отделённый от пула разбора и лемматизации:
+ * ожидание ответа сервера не занимает потоки ForkJoinPool.
+ * Каждая загрузка выполняется в собственном виртуальном потоке, поэтому число
+ * потоков не ограничено, и единственная граница одновременных запросов -
+ * семафор на max-concurrent-fetches разрешений. Остальные задачи ждут разрешения,
+ * не занимая потоков-носителей.
+ */
+@Service
+public class FetchExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(FetchExecutor.class);
+
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final int maxConcurrent;
+
+    @Autowired
+    public FetchExecutor(CrawlerSettings crawlerSettings) {
+        this.maxConcurrent = Math.max(1, crawlerSettings.getMaxConcurrentFetches());
+        this.permits = new Semaphore(maxConcurrent);
+        this.executor = Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("FetchThread-", 1).factory());
+        logger.info("Исполнитель загрузок: не более {} одновременных запросов", maxConcurrent);
+    }
+
+    /**
+     * Выполняет загрузку асинхронно. Задача ждёт свободного разрешения семафора
+     * уже внутри потока загрузки, не блокируя вызывающий поток.
+     * Отмена возвращённого future прерывает поток загрузки: ожидание семафора
+     * и паузы ограничителя частоты завершаются сразу, сетевой запрос - не позже своего таймаута.
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> fetch) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> task;
+        try {
+            task = executor.submit(() -> {
+                try {
+                    permits.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    result.completeExceptionally(e);
+                    return;
+                }
+                try {
+                    result.complete(fetch.call());
+                } catch (Exception e) {
+                    result.completeExceptionally(e);
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+            return result;
+        }
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                task.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Количество выполняющихся в данный момент загрузок.
+     */
+    public int getActiveFetches() {
+        return maxConcurrent - permits.availablePermits();
+    }
+
+    /**
+     * Количество загрузок, ожидающих свободного разрешения.
+     */
+    public int getQueuedFetches() {
+        return permits.getQueueLength();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
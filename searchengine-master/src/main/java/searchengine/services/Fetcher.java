@@ -0,0 +1,35 @@
+package searchengine.services;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+
+import searchengine.model.FetchResponse;
+
+/**
+ * Источник HTTP-ответов для ConnectionService.
+ *
+ * Реализации: JsoupFetcher загружает страницы из сети, WarcRecordingFetcher
+ * дополнительно записывает ответы в WARC, WarcReplayFetcher отдаёт ответы из
+ * WARC-файлов без обращения к сети. Режим выбирается настройкой fetcher.
+ */
+public interface Fetcher extends Closeable {
+
+    /**
+     * Выполняет GET-запрос. Ответ с любым HTTP-кодом возвращается без исключения:
+     * коды и тип содержимого проверяет ConnectionService.
+     *
+     * @param headers дополнительные заголовки запроса (If-None-Match, If-Modified-Since)
+     * @param stream  не ограничивать размер тела и не читать его в память заранее
+     */
+    FetchResponse fetch(String url, Map<String, String> headers, boolean stream) throws IOException;
+
+    /**
+     * Обращается ли реализация к сети: только тогда действуют ограничения запросов к хостам.
+     */
+    boolean isRemote();
+
+    @Override
+    default void close() throws IOException {
+    }
+}
@@ -0,0 +1,250 @@
+package searchengine.services;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import searchengine.config.CrawlerSettings;
+import searchengine.dto.statistics.HostFetchStatistics;
+
+/**
+ * Адаптивное ограничение числа одновременных запросов к каждому хосту (AIMD).
+ *
+ * Пока хост отвечает быстро, лимит растёт аддитивно - примерно на единицу за каждые
+ * limit успешных ответов. Ошибка соединения, таймаут, ответ 429 или 5xx, а также рост
+ * средней задержки выше базовой в host-latency-tolerance раз уменьшают лимит
+ * мультипликативно, не чаще одного раза за время ответа хоста, чтобы серия ошибок одной
+ * волны запросов не обрушила лимит до минимума. Средняя задержка - быстрое скользящее
+ * среднее, базовая - медленное: сравниваются они, а не отдельные ответы, потому что
+ * время загрузки заметно зависит от размера страницы.
+ *
+ * Лимит работает вместе с HostRateLimiter: тот ограничивает частоту запросов, этот - их
+ * параллельность, поэтому медленный хост не занимает все загрузочные потоки.
+ */
+@Service
+public class HostConcurrencyLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(HostConcurrencyLimiter.class);
+
+    private static final double DECREASE_FACTOR = 0.5;
+    // Вес нового замера в скользящих средних задержки и доли ошибок
+    private static final double EWMA_WEIGHT = 0.2;
+    // Вес нового замера в базовой (долговременной) задержке
+    private static final double BASELINE_WEIGHT = 0.02;
+
+    private final CrawlerSettings crawlerSettings;
+    private final Map<String, HostLimit> limits = new ConcurrentHashMap<>();
+
+    @Autowired
+    public HostConcurrencyLimiter(CrawlerSettings crawlerSettings) {
+        this.crawlerSettings = crawlerSettings;
+    }
+
+    /**
+     * Исход запроса для подстройки лимита.
+     */
+    public enum Outcome {
+        // Ответ получен (в том числе 404 и другие ошибки клиента)
+        SUCCESS,
+        // Таймаут, ошибка соединения, 429 или 5xx: хост перегружен
+        OVERLOAD,
+        // Исход не говорит о нагрузке на хост (отмена, неподдерживаемый тип содержимого)
+        IGNORED
+    }
+
+    /**
+     * Ждёт свободного слота для запроса к хосту URL.
+     *
+     * @throws InterruptedIOException если поток был прерван во время ожидания
+     */
+    public void acquire(String url) throws InterruptedIOException {
+        HostLimit limit = limitFor(url);
+        if (limit != null) {
+            limit.acquire();
+        }
+    }
+
+    /**
+     * Освобождает слот, полученный acquire, и учитывает задержку и исход запроса.
+     */
+    public void release(String url, long latencyNanos, Outcome outcome) {
+        HostLimit limit = limitFor(url);
+        if (limit != null) {
+            limit.release(latencyNanos, outcome);
+        }
+    }
+
+    /**
+     * Текущие лимиты и наблюдаемые показатели по каждому хосту.
+     */
+    public List<HostFetchStatistics> getStatistics() {
+        List<HostFetchStatistics> statistics = new ArrayList<>();
+        limits.values().forEach(limit -> statistics.add(limit.snapshot()));
+        statistics.sort((a, b) -> a.getHost().compareTo(b.getHost()));
+        return statistics;
+    }
+
+    private HostLimit limitFor(String url) {
+        String host = SiteCrawlTask.hostOf(url);
+        if (host == null) {
+            return null;
+        }
+        return limits.computeIfAbsent(host, h -> new HostLimit(h,
+                crawlerSettings.getHostMinConcurrency(),
+                crawlerSettings.getHostMaxConcurrency(),
+                crawlerSettings.getHostInitialConcurrency(),
+                crawlerSettings.getHostLatencyTolerance(),
+                System.nanoTime()));
+    }
+
+    /**
+     * Лимит одного хоста. Используется ReentrantLock, а не synchronized: загрузки
+     * идут в виртуальных потоках FetchExecutor, и ожидание слота в wait() закрепило
+     * бы такой поток за потоком-носителем (Java 21).
+     * Время передаётся параметром now, как в HostRateLimiter.HostBucket.
+     */
+    static final class HostLimit {
+
+        private final String host;
+        private final double minLimit;
+        private final double maxLimit;
+        private final double latencyTolerance;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition slotFreed = lock.newCondition();
+
+        private double limit;
+        private int inFlight;
+        private int waiting;
+        private double averageLatencyMs;
+        private double baselineLatencyMs;
+        private double errorRate;
+        private long lastDecrease;
+        private long requests;
+        private long errors;
+
+        HostLimit(String host, int minLimit, int maxLimit, int initialLimit, double latencyTolerance, long now) {
+            this.host = host;
+            this.minLimit = Math.max(1, minLimit);
+            this.maxLimit = Math.max(this.minLimit, maxLimit);
+            this.limit = Math.max(this.minLimit, Math.min(this.maxLimit, initialLimit));
+            this.latencyTolerance = Math.max(1.0, latencyTolerance);
+            this.lastDecrease = now - TimeUnit.HOURS.toNanos(1);
+        }
+
+        void acquire() throws InterruptedIOException {
+            lock.lock();
+            try {
+                waiting++;
+                try {
+                    while (inFlight >= (int) limit) {
+                        slotFreed.await();
+                    }
+                } finally {
+                    waiting--;
+                }
+                inFlight++;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Ожидание запроса к " + host + " прервано");
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void release(long latencyNanos, Outcome outcome) {
+            release(latencyNanos, outcome, System.nanoTime());
+        }
+
+        void release(long latencyNanos, Outcome outcome, long now) {
+            lock.lock();
+            try {
+                inFlight--;
+                if (outcome != Outcome.IGNORED) {
+                    adjust(TimeUnit.NANOSECONDS.toMicros(latencyNanos) / 1000.0, outcome == Outcome.OVERLOAD, now);
+                }
+                slotFreed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void adjust(double latencyMs, boolean overload, long now) {
+            requests++;
+            if (overload) {
+                errors++;
+            }
+            errorRate += EWMA_WEIGHT * ((overload ? 1 : 0) - errorRate);
+            if (!overload) {
+                if (baselineLatencyMs == 0) {
+                    averageLatencyMs = latencyMs;
+                    baselineLatencyMs = latencyMs;
+                } else {
+                    averageLatencyMs += EWMA_WEIGHT * (latencyMs - averageLatencyMs);
+                    baselineLatencyMs += BASELINE_WEIGHT * (latencyMs - baselineLatencyMs);
+                }
+            }
+
+            boolean congested = overload || averageLatencyMs > baselineLatencyMs * latencyTolerance;
+            if (congested) {
+                // Одна волна ошибок - одно уменьшение: ждём хотя бы одно среднее время ответа
+                if (now - lastDecrease >= TimeUnit.MILLISECONDS.toNanos((long) Math.max(averageLatencyMs, 1))) {
+                    double previous = limit;
+                    limit = Math.max(minLimit, limit * DECREASE_FACTOR);
+                    lastDecrease = now;
+                    if ((int) previous != (int) limit) {
+                        logger.info("Лимит запросов к {} снижен: {} -> {} (задержка {} мс, базовая {} мс, перегрузка: {})",
+                                host, (int) previous, (int) limit, Math.round(averageLatencyMs),
+                                Math.round(baselineLatencyMs), overload);
+                    }
+                }
+            } else if (limit < maxLimit) {
+                double previous = limit;
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+                if ((int) previous != (int) limit) {
+                    logger.debug("Лимит запросов к {} увеличен до {}", host, (int) limit);
+                }
+            }
+        }
+
+        /**
+         * Текущий лимит с дробной частью, накопленной аддитивным ростом.
+         */
+        double limit() {
+            lock.lock();
+            try {
+                return limit;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        HostFetchStatistics snapshot() {
+            lock.lock();
+            try {
+                HostFetchStatistics statistics = new HostFetchStatistics();
+                statistics.setHost(host);
+                statistics.setLimit((int) limit);
+                statistics.setInFlight(inFlight);
+                statistics.setWaiting(waiting);
+                statistics.setAverageLatencyMs(Math.round(averageLatencyMs));
+                statistics.setBaselineLatencyMs(Math.round(baselineLatencyMs));
+                statistics.setErrorRate(errorRate);
+                statistics.setRequests(requests);
+                statistics.setErrors(errors);
+                return statistics;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package searchengine.services;
+
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import searchengine.config.CrawlerSettings;
+
+/**
+ * Планировщик вежливых запросов: ограничивает частоту обращений к каждому хосту
+ * отдельной корзиной токенов с минимальной паузой между запросами.
+ * Запросы к разным хостам не блокируют друг друга.
+ */
+@Service
+public class HostRateLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(HostRateLimiter.class);
+
+    private final CrawlerSettings crawlerSettings;
+    private final Map<String, HostBucket> buckets = new ConcurrentHashMap<>();
+
+    @Autowired
+    public HostRateLimiter(CrawlerSettings crawlerSettings) {
+        this.crawlerSettings = crawlerSettings;
+    }
+
+    /**
+     * Блокирует вызывающий поток, пока хост URL не разрешит очередной запрос.
+     *
+     * @throws InterruptedIOException если поток был прерван во время ожидания
+     */
+    public void acquire(String url) throws InterruptedIOException {
+        String host = SiteCrawlTask.hostOf(url);
+        if (host == null) {
+            return;
+        }
+        HostBucket bucket = buckets.computeIfAbsent(host, h -> new HostBucket(
+                crawlerSettings.getHostRequestsPerSecond(),
+                crawlerSettings.getHostBurst(),
+                crawlerSettings.getHostMinDelayMs()));
+
+        bucket.waiting.incrementAndGet();
+        try {
+            long waitNanos = bucket.reserve(System.nanoTime());
+            if (waitNanos > 0) {
+                logger.debug("Ожидание {} мс перед запросом к {} (в очереди: {})",
+                        TimeUnit.NANOSECONDS.toMillis(waitNanos), host, bucket.waiting.get());
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Ожидание запроса к " + host + " прервано");
+        } finally {
+            bucket.waiting.decrementAndGet();
+        }
+    }
+
+    /**
+     * Возвращает количество запросов, ожидающих разрешения, по каждому хосту.
+     */
+    public Map<String, Integer> getQueueDepths() {
+        Map<String, Integer> depths = new TreeMap<>();
+        buckets.forEach((host, bucket) -> depths.put(host, bucket.waiting.get()));
+        return depths;
+    }
+
+    /**
+     * Корзина токенов одного хоста. Каждый вызов reserve резервирует ближайший
+     * свободный слот времени, поэтому ожидающие потоки выстраиваются в очередь
+     * без активного опроса.
+     */
+    static final class HostBucket {
+
+        private final double capacity;
+        private final double tokensPerNano;
+        private final long minIntervalNanos;
+        private final AtomicInteger waiting = new AtomicInteger();
+
+        private double tokens;
+        private long lastRefill;
+        private long lastGrant;
+
+        HostBucket(double requestsPerSecond, int burst, long minDelayMs) {
+            this.capacity = Math.max(1, burst);
+            this.tokensPerNano = Math.max(requestsPerSecond, 0.001) / TimeUnit.SECONDS.toNanos(1);
+            this.minIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, minDelayMs));
+            this.tokens = capacity;
+            this.lastRefill = System.nanoTime();
+            this.lastGrant = lastRefill - minIntervalNanos;
+        }
+
+        /**
+         * Резервирует токен и возвращает время ожидания до момента, когда его можно использовать.
+         */
+        synchronized long reserve(long now) {
+            if (now > lastRefill) {
+                tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+                lastRefill = now;
+            }
+            long earliest = Math.max(now, lastGrant + minIntervalNanos);
+            double available = Math.min(capacity, tokens + (earliest - lastRefill) * tokensPerNano);
+            long grantAt = available >= 1
+                    ? earliest
+                    : earliest + (long) Math.ceil((1 - available) / tokensPerNano);
+
+            tokens = Math.min(capacity, tokens + (grantAt - lastRefill) * tokensPerNano) - 1;
+            lastRefill = grantAt;
+            lastGrant = grantAt;
+            return grantAt - now;
+        }
+    }
+}
@@ -1,7 +1,14 @@
 package searchengine.services;
 
+import java.util.Set;
+
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.select.NodeFilter;
+import org.jsoup.select.NodeTraversor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
@@ -11,13 +18,111 @@ public class HtmlCleaner {
 
     private static final Logger logger = LoggerFactory.getLogger(HtmlCleaner.class);
 
+    // Элементы, текст которых не относится к содержимому страницы
+    private static final Set<String> SKIPPED_TAGS = Set.of("script", "style", "iframe", "noscript");
+
+    // Буфер текста потока; больший буфер после очистки не сохраняется, чтобы не удерживать память
+    private static final int MAX_CACHED_BUILDER = 64 * 1024;
+    private static final ThreadLocal<StringBuilder> BUILDER =
+            ThreadLocal.withInitial(() -> new StringBuilder(8 * 1024));
+
     public String cleanHtml(String html) {
+        return cleanDocument(Jsoup.parse(html));
+    }
+
+    /**
+     * Извлекает текст из уже разобранного документа за один обход дерева,
+     * пропуская script, style, iframe и noscript. Документ не изменяется,
+     * поэтому после очистки из него можно извлекать ссылки.
+     */
+    public String cleanDocument(Document doc) {
         logger.info("Начало очистки HTML контента");
-        Document doc = Jsoup.parse(html);
-        doc.select("script, style, iframe, noscript").remove();
-        String cleanedText = doc.text();
+        StringBuilder text = BUILDER.get();
+        text.setLength(0);
+        NodeTraversor.filter(new TextCollector(text), doc);
+        String cleanedText = text.toString().trim();
+        if (text.capacity() > MAX_CACHED_BUILDER) {
+            BUILDER.set(new StringBuilder(8 * 1024));
+        } else {
+            text.setLength(0);
+        }
         logger.info("Очистка HTML завершена, получен текст длиной: {} символов", cleanedText.length());
         return cleanedText;
     }
-}
 
+    /**
+     * Собирает текст узлов, схлопывая пробелы так же, как Element.text().
+     */
+    private static final class TextCollector implements NodeFilter {
+
+        private final StringBuilder text;
+
+        TextCollector(StringBuilder text) {
+            this.text = text;
+        }
+
+        @Override
+        public FilterResult head(Node node, int depth) {
+            if (node instanceof TextNode) {
+                boolean trailingSpace = text.length() == 0 || text.charAt(text.length() - 1) == ' ';
+                appendNormalisedWhitespace(((TextNode) node).getWholeText(), trailingSpace);
+            } else if (node instanceof Element) {
+                Element element = (Element) node;
+                if (SKIPPED_TAGS.contains(element.normalName())) {
+                    return FilterResult.SKIP_ENTIRELY;
+                }
+                if (element.isBlock() || element.normalName().equals("br")) {
+                    appendSpace();
+                }
+            }
+            return FilterResult.CONTINUE;
+        }
+
+        @Override
+        public FilterResult tail(Node node, int depth) {
+            if (node instanceof Element && ((Element) node).isBlock()) {
+                appendSpace();
+            }
+            return FilterResult.CONTINUE;
+        }
+
+        /**
+         * Добавляет строку, заменяя каждую последовательность пробельных символов одним
+         * пробелом и пропуская невидимые символы (мягкий перенос, пробел нулевой ширины).
+         *
+         * @param stripLeading пропустить пробелы в начале строки
+         */
+        private void appendNormalisedWhitespace(String string, boolean stripLeading) {
+            boolean lastWasWhite = false;
+            boolean reachedNonWhite = false;
+            for (int i = 0; i < string.length(); ) {
+                int c = string.codePointAt(i);
+                i += Character.charCount(c);
+                if (isWhitespace(c)) {
+                    if ((stripLeading && !reachedNonWhite) || lastWasWhite) {
+                        continue;
+                    }
+                    text.append(' ');
+                    lastWasWhite = true;
+                } else if (c != 0x200B && c != 0x00AD) {
+                    text.appendCodePoint(c);
+                    lastWasWhite = false;
+                    reachedNonWhite = true;
+                }
+            }
+        }
+
+        /**
+         * Пробельные символы HTML и неразрывный пробел.
+         */
+        private static boolean isWhitespace(int c) {
+            return c == ' ' || c == '\t' || c == '\n' || c == '\f' || c == '\r' || c == 0x00A0;
+        }
+
+        private void appendSpace() {
+            if (text.length() > 0 && text.charAt(text.length() - 1) != ' ') {
+                text.append(' ');
+            }
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package searchengine.services;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Service;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import searchengine.dto.statistics.IndexingProgressItem;
+import searchengine.entity.Site;
+import searchengine.model.Status;
+
+/**
+ * Поток хода индексации для клиентов Server-Sent Events.
+ *
+ * Смена статуса сайта отправляется сразу событием "status". Раз в секунду всем
+ * подписчикам рассылается событие "progress" со счётчиками каждого сайта: они не
+ * передаются из обходчика при каждой странице, а считываются из CrawlContext
+ * работающего обхода, поэтому поток не замедляет индексацию. Таймер общий для всех
+ * подписчиков и работает, только пока есть хотя бы один из них.
+ */
+@Service
+public class IndexingProgressService {
+
+    private static final Logger logger = LoggerFactory.getLogger(IndexingProgressService.class);
+
+    private static final Duration PROGRESS_INTERVAL = Duration.ofSeconds(1);
+
+    private final Map<Integer, SiteProgress> sites = new ConcurrentHashMap<>();
+    private final Sinks.Many<ServerSentEvent<Object>> statusEvents = Sinks.many().multicast().directBestEffort();
+    private final Flux<ServerSentEvent<Object>> progressEvents = Flux.interval(PROGRESS_INTERVAL)
+            .map(tick -> progressEvent(true))
+            .share();
+
+    /**
+     * Поток событий: сначала текущее состояние, затем смены статусов и ежесекундный прогресс.
+     */
+    public Flux<ServerSentEvent<Object>> stream() {
+        return Flux.concat(
+                Mono.fromSupplier(() -> progressEvent(false)),
+                Flux.merge(statusEvents.asFlux(), progressEvents));
+    }
+
+    /**
+     * Подключает счётчики запущенного обхода сайта.
+     */
+    public void crawlStarted(Site site, CrawlContext context) {
+        SiteProgress progress = progressOf(site);
+        synchronized (progress) {
+            progress.context = context;
+            progress.lastIndexed = context.getIndexedPages();
+            progress.lastSampleNanos = System.nanoTime();
+            progress.pagesPerSecond = 0;
+        }
+    }
+
+    /**
+     * Отключает обход, сохраняя итоговые значения счётчиков.
+     */
+    public void crawlFinished(Site site, CrawlContext context) {
+        SiteProgress progress = progressOf(site);
+        synchronized (progress) {
+            if (progress.context == context) {
+                progress.indexed = context.getIndexedPages();
+                progress.errors = context.getFailedPages();
+                progress.frontierSize = context.getFrontierSize();
+                progress.pagesPerSecond = 0;
+                progress.context = null;
+            }
+        }
+    }
+
+    /**
+     * Сообщает подписчикам о смене статуса сайта.
+     */
+    public void statusChanged(Site site, Status status, String error) {
+        SiteProgress progress = progressOf(site);
+        IndexingProgressItem item;
+        synchronized (progress) {
+            progress.status = status;
+            progress.error = error;
+            item = progress.toItem(false);
+        }
+        Sinks.EmitResult result;
+        // Sink не допускает одновременной отправки из нескольких потоков индексации
+        synchronized (statusEvents) {
+            result = statusEvents.tryEmitNext(ServerSentEvent.<Object>builder(item).event("status").build());
+        }
+        if (result.isFailure() && result != Sinks.EmitResult.FAIL_ZERO_SUBSCRIBER) {
+            logger.debug("Событие статуса сайта {} не отправлено: {}", site.getUrl(), result);
+        }
+    }
+
+    private SiteProgress progressOf(Site site) {
+        return sites.computeIfAbsent(site.getId(), id -> new SiteProgress(site.getUrl(), site.getName()));
+    }
+
+    /**
+     * @param sample пересчитать скорость индексации (только для общего таймера)
+     */
+    private ServerSentEvent<Object> progressEvent(boolean sample) {
+        List<IndexingProgressItem> items = new ArrayList<>();
+        for (SiteProgress progress : sites.values()) {
+            synchronized (progress) {
+                items.add(progress.toItem(sample));
+            }
+        }
+        items.sort((a, b) -> a.getUrl().compareTo(b.getUrl()));
+        return ServerSentEvent.<Object>builder(items).event("progress").build();
+    }
+
+    /**
+     * Состояние одного сайта; доступ синхронизирован по самому объекту.
+     */
+    private static final class SiteProgress {
+
+        private final String url;
+        private final String name;
+
+        private Status status;
+        private String error;
+        private CrawlContext context;
+        private int indexed;
+        private int errors;
+        private long frontierSize;
+        private int lastIndexed;
+        private long lastSampleNanos;
+        private double pagesPerSecond;
+
+        SiteProgress(String url, String name) {
+            this.url = url;
+            this.name = name;
+        }
+
+        IndexingProgressItem toItem(boolean sample) {
+            if (context != null) {
+                indexed = context.getIndexedPages();
+                errors = context.getFailedPages();
+                frontierSize = context.getFrontierSize();
+                if (sample) {
+                    long now = System.nanoTime();
+                    double seconds = (now - lastSampleNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+                    if (seconds > 0) {
+                        pagesPerSecond = (indexed - lastIndexed) / seconds;
+                    }
+                    lastIndexed = indexed;
+                    lastSampleNanos = now;
+                }
+            }
+            IndexingProgressItem item = new IndexingProgressItem();
+            item.setUrl(url);
+            item.setName(name);
+            item.setStatus(status != null ? status.name() : null);
+            item.setError(error);
+            item.setPagesIndexed(indexed);
+            item.setErrors(errors);
+            item.setFrontierSize(frontierSize);
+            item.setPagesPerSecond(Math.round(pagesPerSecond * 10) / 10.0);
+            return item;
+        }
+    }
+}
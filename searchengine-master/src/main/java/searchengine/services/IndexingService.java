@@ -1,19 +1,30 @@
 package searchengine.services;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.SocketTimeoutException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.dao.PessimisticLockingFailureException;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import searchengine.config.CrawlerSettings;
 import searchengine.entity.Site;
 import searchengine.model.Status;
 
@@ -28,16 +39,68 @@ public class IndexingService {
     @Autowired
     private PageService pageService;
 
+    @Autowired
+    private SiteCrawler siteCrawler;
+
+    @Autowired
+    private CrawlerSettings crawlerSettings;
+
+    @Autowired
+    private IndexingProgressService indexingProgressService;
+
+    @Autowired
+    private RetryScheduler retryScheduler;
+
+    @Autowired
+    private PostingWriter postingWriter;
+
+    @Autowired
+    private LemmaDictionaryService lemmaDictionaryService;
+
+    @Autowired
+    @Qualifier("taskExecutor")
+    private Executor taskExecutor;
+
+    // Признак отмены текущего запуска индексации (null, если индексация не выполняется)
+    private final AtomicReference<CancellationToken> currentToken = new AtomicReference<>();
+
     /**
      * Запускает процесс индексации для всех сайтов, полученных из базы.
-     * При возникновении ошибок выбрасываются исключения с подробной информацией.
+     * Сайты обходятся параллельно, каждый в своём потоке: ошибка одного сайта
+     * отмечается в его статусе и не прерывает остальные. Каждому сайту выделяется
+     * равная доля одновременных загрузок (max-concurrent-fetches / число параллельных сайтов),
+     * которая ограничивает и число его страниц в обработке.
+     * Запуск занимает признак отмены синхронно, поэтому одновременно выполняется
+     * только одна индексация; сама индексация идёт в taskExecutor.
+     *
+     * @return future, завершающийся по окончании индексации
+     * @throws IllegalStateException если индексация уже выполняется
      */
-    @Async("taskExecutor")
-    @Transactional
     public CompletableFuture<Void> startIndexing() {
+        CancellationToken token = new CancellationToken();
+        if (!currentToken.compareAndSet(null, token)) {
+            throw new IllegalStateException("Индексация уже выполняется");
+        }
         logger.info("Запуск процесса индексации...");
 
+        try {
+            return runIndexing(token);
+        } catch (RejectedExecutionException e) {
+            currentToken.compareAndSet(token, null);
+            throw e;
+        }
+    }
+
+    /**
+     * true, если индексация запущена и ещё не завершилась.
+     */
+    public boolean isIndexing() {
+        return currentToken.get() != null;
+    }
+
+    private CompletableFuture<Void> runIndexing(CancellationToken token) {
         return CompletableFuture.runAsync(() -> {
+            ExecutorService siteExecutor = null;
             try {
                 List<Site> sites = siteService.getAllSites();
                 if (sites == null || sites.isEmpty()) {
@@ -47,90 +110,162 @@ public class IndexingService {
                 }
                 logger.info("Обнаружено {} сайтов в базе данных.", sites.size());
 
-                // Обрабатываем каждый сайт
+                int parallelSites = crawlerSettings.getMaxParallelSites() > 0
+                        ? Math.min(crawlerSettings.getMaxParallelSites(), sites.size())
+                        : sites.size();
+                int fetchShare = Math.max(1, crawlerSettings.getMaxConcurrentFetches() / parallelSites);
+                logger.info("Параллельно индексируется сайтов: {}, загрузок на сайт: {}", parallelSites, fetchShare);
+
+                // Обрабатываем сайты параллельно, каждый в своём потоке
+                siteExecutor = Executors.newFixedThreadPool(parallelSites, new SiteThreadFactory());
+                List<CompletableFuture<Boolean>> tasks = new ArrayList<>();
                 for (Site site : sites) {
-                    try {
-                        logger.info("Начинаем обработку сайта: {} (ID: {})", site.getUrl(), site.getId());
-                        processSite(site); // Логика индексации для сайта
-                    } catch (Exception e) {
-                        logger.error("Ошибка при обработке сайта {}: {}", site.getUrl(), e.toString(), e);
-                        siteService.updateSiteStatus(site, Status.FAILED);
-                        siteService.updateSiteLastError(site, "Ошибка обработки: " + e.getMessage());
-                        siteService.saveOrUpdateSite(site);
-                        // Передаем подробное сообщение об ошибке пользователю
-                        throw new RuntimeException("Ошибка при обработке сайта " + site.getUrl() + ": " + e.getMessage(), e);
-                    }
+                    tasks.add(indexSite(site, token, fetchShare, siteExecutor));
                 }
-                logger.info("Процесс индексации завершен.");
+                CompletableFuture.allOf(tasks.toArray(new CompletableFuture[0])).join();
+
+                long failed = tasks.stream().filter(task -> !task.join()).count();
+                logger.info("Процесс индексации завершен: успешно {}, с ошибками {}", sites.size() - failed, failed);
             } catch (Exception e) {
                 logger.error("Ошибка при индексации: {}", e.getMessage(), e);
                 throw new RuntimeException("Ошибка при индексации: " + e.getMessage(), e);
+            } finally {
+                if (siteExecutor != null) {
+                    siteExecutor.shutdown();
+                }
+                currentToken.compareAndSet(token, null);
             }
-        });
+        }, taskExecutor);
+    }
+
+    /**
+     * Индексирует один сайт в siteExecutor, не пропуская наружу его ошибки.
+     * Обход не повторяется: страницы уже сохраняются с повтором в SiteCrawler, а ошибка
+     * обхода целиком отмечает сайт статусом FAILED. Повторяются только записи статуса (saveStatus).
+     *
+     * @return future с true, если сайт проиндексирован успешно
+     */
+    private CompletableFuture<Boolean> indexSite(Site site, CancellationToken token, int fetchShare,
+                                                 ExecutorService siteExecutor) {
+        if (token.isCancelled()) {
+            markStopped(site);
+            return CompletableFuture.completedFuture(false);
+        }
+        logger.info("Начинаем обработку сайта: {} (ID: {})", site.getUrl(), site.getId());
+        return CompletableFuture.runAsync(() -> {
+                    try {
+                        processSite(site, token, fetchShare); // Логика индексации для сайта
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, siteExecutor)
+                .handle((ignored, error) -> {
+                    if (error == null) {
+                        return true;
+                    }
+                    Throwable cause = RetryScheduler.unwrap(error);
+                    if (cause instanceof UncheckedIOException && cause.getCause() != null) {
+                        cause = cause.getCause();
+                    }
+                    try {
+                        if (cause instanceof CancellationException) {
+                            logger.info("Индексация сайта {} остановлена пользователем", site.getUrl());
+                            markStopped(site);
+                        } else {
+                            logger.error("Ошибка при обработке сайта {}: {}", site.getUrl(), cause.toString(), cause);
+                            saveStatus(site, Status.FAILED, "Ошибка обработки: " + cause.getMessage());
+                        }
+                    } catch (RuntimeException e) {
+                        logger.error("Не удалось сохранить статус сайта {}: {}", site.getUrl(), e.getMessage(), e);
+                    }
+                    return false;
+                });
+    }
+
+    /**
+     * Останавливает текущую индексацию: обход сайтов прекращает выдачу новых URL,
+     * выполняющиеся загрузки прерываются, а сайты получают статус FAILED
+     * с сообщением "Индексация остановлена пользователем".
+     *
+     * @return false, если индексация не выполнялась
+     */
+    public boolean stopIndexing() {
+        CancellationToken token = currentToken.get();
+        if (token == null || !token.cancel()) {
+            return false;
+        }
+        logger.info("Запрошена остановка индексации");
+        return true;
+    }
+
+    private void markStopped(Site site) {
+        saveStatus(site, Status.FAILED, CancellationToken.STOPPED_BY_USER);
+    }
+
+    /**
+     * Сохраняет статус сайта, повторяя запись при временных ошибках БД (блокировки,
+     * взаимоблокировки). Запись выполняется в taskExecutor, вызывающий поток ждёт её
+     * завершения. Отмена индексации повтор не прерывает: статус остановленного сайта
+     * тоже должен быть сохранён.
+     */
+    private void saveStatus(Site site, Status status, String error) {
+        try {
+            retryScheduler.execute("Статус " + status + " сайта " + site.getUrl(),
+                    () -> CompletableFuture.runAsync(() -> updateStatus(site, status, error), taskExecutor),
+                    RetryScheduler::isTransientPersistError, null).join();
+        } catch (CompletionException e) {
+            Throwable cause = RetryScheduler.unwrap(e);
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : e;
+        }
+    }
+
+    /**
+     * Сохраняет статус сайта и сообщает о нём подписчикам /api/indexing/progress.
+     *
+     * @param error текст ошибки или null, если статус не связан с ошибкой
+     */
+    private void updateStatus(Site site, Status status, String error) {
+        siteService.updateSiteStatus(site, status);
+        if (error != null) {
+            siteService.updateSiteLastError(site, error);
+        }
+        siteService.saveOrUpdateSite(site);
+        indexingProgressService.statusChanged(site, status, error);
     }
 
     /**
      * Индексирует конкретный сайт: обновляет статус, обрабатывает страницы.
-     * При ошибках выбрасывается исключение с подробным сообщением.
+     * Обход выполняется один раз; при блокировках повторяются только записи статуса,
+     * статус FAILED после ошибки сохраняет indexSite.
+     * Метод не транзакционный: обход длится долго, а страницы сохраняются
+     * в собственных транзакциях PageService.
      */
-    @Transactional
-    public void processSite(Site site) throws IOException {
+    public void processSite(Site site, CancellationToken token, int maxFetches) throws IOException {
         logger.info("Начата индексация сайта: {} (ID: {})", site.getUrl(), site.getId());
 
-        int attempts = 0;
-        boolean success = false;
-        while (attempts < 3 && !success) {
-            try {
-                attempts++;
+        // Устанавливаем статус INDEXING и сохраняем
+        saveStatus(site, Status.INDEXING, null);
 
-                // Устанавливаем статус INDEXING и сохраняем
-                siteService.updateSiteStatus(site, Status.INDEXING);
-                siteService.saveOrUpdateSite(site);
+        // Словарь лемм сайта загружается один раз: из базы читаются только идентификаторы новых лемм
+        lemmaDictionaryService.warm(site.getId());
 
-                // Пример: список URL страниц для индексирования (используем URL сайта)
-                List<String> pageUrls = List.of(site.getUrl());
-                for (String pageUrl : pageUrls) {
-                    logger.info("Индексируем страницу: {} для сайта: {}", pageUrl, site.getUrl());
-                    indexPage(pageUrl, site);
-                }
-
-                // После успешного индексирования обновляем статус на INDEXED
-                siteService.updateSiteStatus(site, Status.INDEXED);
-                siteService.saveOrUpdateSite(site);
-                logger.info("Сайт успешно проиндексирован: {}", site.getUrl());
+        // Рекурсивно обходим сайт начиная с главной страницы
+        int indexedPages = siteCrawler.crawl(site, token, maxFetches);
+        logger.info("Проиндексировано {} страниц сайта {}", indexedPages, site.getUrl());
 
-                success = true;  // Завершаем цикл при успешном выполнении
+        logger.info("Скорость записи индекса: {} записей/с", Math.round(postingWriter.getPostingsPerSecond()));
 
-            } catch (PessimisticLockingFailureException e) {
-                if (attempts >= 3) {
-                    logger.error("Ошибка при обработке сайта {}: {}", site.getUrl(), e.toString(), e);
-                    siteService.updateSiteStatus(site, Status.FAILED);
-                    siteService.updateSiteLastError(site, "Ошибка обработки: " + e.getMessage());
-                    siteService.saveOrUpdateSite(site);
-                    throw new IOException("Ошибка при обработке сайта " + site.getUrl() + ": " + e.getMessage(), e);
-                }
-                logger.warn("Проблемы с блокировкой при обработке сайта {}. Попытка {}/3.", site.getUrl(), attempts);
-                try {
-                    TimeUnit.SECONDS.sleep(2);  // Задержка перед повторной попыткой
-                } catch (InterruptedException ex) {
-                    Thread.currentThread().interrupt();
-                    throw new IOException("Индексация прервана.", ex);
-                }
-            } catch (Exception e) {
-                logger.error("Ошибка при обработке сайта {}: {}", site.getUrl(), e.toString(), e);
-                siteService.updateSiteStatus(site, Status.FAILED);
-                siteService.updateSiteLastError(site, "Ошибка обработки: " + e.getMessage());
-                siteService.saveOrUpdateSite(site);
-                throw new IOException("Ошибка при обработке сайта " + site.getUrl() + ": " + e.getMessage(), e);
-            }
-        }
+        // После успешного индексирования обновляем статус на INDEXED
+        saveStatus(site, Status.INDEXED, null);
+        logger.info("Сайт успешно проиндексирован: {}", site.getUrl());
     }
 
     /**
      * Индексирует конкретную страницу для указанного сайта.
      * При ошибках выбрасывается исключение с подробным сообщением.
+     * Выполняется вне транзакции: страница загружается без открытого соединения с БД.
      */
-    @Transactional
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public void indexPage(String url, Site site) throws IOException {
         logger.info("Начата индексизация страницы: {} для сайта: {}", url, site.getUrl());
         try {
@@ -165,5 +300,16 @@ public class IndexingService {
             throw new IOException("Ошибка при обработке страницы " + url + ": " + e.getMessage(), e);
         }
     }
-}
 
+    private static final class SiteThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "SiteIndexer-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
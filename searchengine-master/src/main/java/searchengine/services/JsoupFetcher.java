@@ -0,0 +1,47 @@
+package searchengine.services;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.jsoup.Connection;
+import org.jsoup.Jsoup;
+
+import searchengine.model.FetchResponse;
+
+/**
+ * Загрузка страниц из сети через Jsoup.
+ */
+public class JsoupFetcher implements Fetcher {
+
+    private static final String USER_AGENT = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) " +
+                                             "AppleWebKit/537.36 (KHTML, like Gecko) " +
+                                             "Chrome/91.0.4472.124 Safari/537.36";
+
+    private static final int TIMEOUT_MS = 30000;
+
+    @Override
+    public FetchResponse fetch(String url, Map<String, String> headers, boolean stream) throws IOException {
+        Connection connection = Jsoup.connect(url)
+                .timeout(TIMEOUT_MS)
+                .userAgent(USER_AGENT)
+                .ignoreContentType(true)
+                .ignoreHttpErrors(true);
+        headers.forEach(connection::header);
+        if (stream) {
+            connection.maxBodySize(0);
+        }
+        Connection.Response response = connection.execute();
+        String finalUrl = response.url().toString();
+        if (stream) {
+            return new FetchResponse(url, finalUrl, response.statusCode(), response.statusMessage(),
+                    response.headers(), response.bodyStream());
+        }
+        return new FetchResponse(url, finalUrl, response.statusCode(), response.statusMessage(),
+                response.headers(), response.bodyAsBytes());
+    }
+
+    @Override
+    public boolean isRemote() {
+        return true;
+    }
+}
@@ -0,0 +1,183 @@
+package searchengine.services;
+
+import java.util.Arrays;
+
+/**
+ * Словарь лемм одного сайта: текст леммы -> идентификатор строки таблицы lemma.
+ *
+ * Записи хранятся подряд в одном массиве байтов, а не отдельными объектами String
+ * и Integer: длина ключа, ключ и идентификатор. Русские и латинские буквы кодируются
+ * одним байтом, остальные слова - двумя байтами на символ после метки. Таблица
+ * с открытой адресацией хранит хэш и смещение записи, поэтому поиск читает только
+ * ячейку таблицы и саму запись, а запись занимает около 35 байт вместе с ключом:
+ * словарь из миллиона лемм укладывается в несколько десятков мегабайт.
+ *
+ * Словарь только кэширует идентификаторы, которые назначила база: в него попадают
+ * строки, прочитанные из таблицы lemma или вставленные зафиксированной транзакцией
+ * (см. LemmaDictionaryService). Все методы синхронизированы.
+ */
+public final class LemmaDictionary {
+
+    // Метка ключа, который хранится по два байта на символ
+    private static final int WIDE = 0xFF;
+
+    // Записи: длина ключа (2 байта), ключ, идентификатор (4 байта)
+    private byte[] records = new byte[1 << 12];
+    private int recordsSize;
+    private int size;
+    // Хэш ключа в старших 32 битах, смещение записи + 1 в младших; 0 - пустая ячейка
+    private long[] slots = new long[512];
+
+    private byte[] scratch = new byte[64];
+    private int scratchHash;
+
+    /**
+     * Добавляет лемму или заменяет её идентификатор.
+     */
+    public synchronized void put(CharSequence lemma, int id) {
+        int length = encode(lemma);
+        int record = find(length, scratchHash);
+        if (record < 0) {
+            insert(length, scratchHash, id);
+        } else {
+            setIdAt(record, length, id);
+        }
+    }
+
+    /**
+     * Идентификатор леммы или -1, если её нет в словаре.
+     */
+    public synchronized int idOf(CharSequence lemma) {
+        int length = encode(lemma);
+        int record = find(length, scratchHash);
+        return record < 0 ? -1 : idAt(record, length);
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Приблизительный объём массивов словаря в байтах.
+     */
+    public synchronized long memoryBytes() {
+        return records.length + 8L * slots.length;
+    }
+
+    /**
+     * Кодирует лемму в scratch, вычисляя хэш ключа в scratchHash, и возвращает длину ключа.
+     */
+    private int encode(CharSequence lemma) {
+        int length = lemma.length();
+        if (scratch.length < 1 + 2 * length) {
+            scratch = new byte[Math.max(1 + 2 * length, scratch.length * 2)];
+        }
+        // Обычно слово однобайтовое: кодирование и хэш за один проход
+        int hash = 1;
+        int i = 0;
+        for (; i < length; i++) {
+            int code = narrowCode(lemma.charAt(i));
+            if (code < 0) {
+                break;
+            }
+            scratch[i] = (byte) code;
+            hash = 31 * hash + (byte) code;
+        }
+        if (i < length) {
+            scratch[0] = (byte) WIDE;
+            hash = 31 + (byte) WIDE;
+            for (i = 0; i < length; i++) {
+                char c = lemma.charAt(i);
+                scratch[1 + 2 * i] = (byte) (c >>> 8);
+                scratch[2 + 2 * i] = (byte) c;
+                hash = 31 * (31 * hash + (byte) (c >>> 8)) + (byte) c;
+            }
+            length = 1 + 2 * length;
+        }
+        scratchHash = hash ^ (hash >>> 16);
+        return length;
+    }
+
+    /**
+     * Однобайтовый код символа: ASCII как есть, "а"-"я" - 0x80-0x9F, "ё" - 0xA0; иначе -1.
+     */
+    private static int narrowCode(char c) {
+        if (c < 0x80) {
+            return c;
+        }
+        if (c >= 'а' && c <= 'я') {
+            return 0x80 + (c - 'а');
+        }
+        return c == 'ё' ? 0xA0 : -1;
+    }
+
+    /**
+     * Смещение записи с ключом из scratch или -1.
+     */
+    private int find(int length, int hash) {
+        int mask = slots.length - 1;
+        for (int slot = hash & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            long value = slots[slot];
+            if ((int) (value >>> 32) != hash) {
+                continue;
+            }
+            int record = (int) value - 1;
+            int recordLength = ((records[record] & 0xFF) << 8) | (records[record + 1] & 0xFF);
+            if (recordLength == length
+                    && Arrays.equals(records, record + 2, record + 2 + length, scratch, 0, length)) {
+                return record;
+            }
+        }
+        return -1;
+    }
+
+    private int idAt(int record, int length) {
+        int at = record + 2 + length;
+        return ((records[at] & 0xFF) << 24) | ((records[at + 1] & 0xFF) << 16)
+                | ((records[at + 2] & 0xFF) << 8) | (records[at + 3] & 0xFF);
+    }
+
+    private void setIdAt(int record, int length, int id) {
+        int at = record + 2 + length;
+        records[at] = (byte) (id >>> 24);
+        records[at + 1] = (byte) (id >>> 16);
+        records[at + 2] = (byte) (id >>> 8);
+        records[at + 3] = (byte) id;
+    }
+
+    private void insert(int length, int hash, int id) {
+        int record = recordsSize;
+        int end = record + 2 + length + 4;
+        if (end > records.length) {
+            records = Arrays.copyOf(records, Math.max(end, records.length + (records.length >> 1)));
+        }
+        records[record] = (byte) (length >>> 8);
+        records[record + 1] = (byte) length;
+        System.arraycopy(scratch, 0, records, record + 2, length);
+        setIdAt(record, length, id);
+        recordsSize = end;
+        if (++size * 2 > slots.length) {
+            rehash(slots.length * 2);
+        }
+        place(slots, ((long) hash << 32) | (record + 1));
+    }
+
+    private void rehash(int capacity) {
+        long[] old = slots;
+        slots = new long[capacity];
+        for (long value : old) {
+            if (value != 0) {
+                place(slots, value);
+            }
+        }
+    }
+
+    private static void place(long[] table, long value) {
+        int mask = table.length - 1;
+        int slot = (int) (value >>> 32) & mask;
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = value;
+    }
+}
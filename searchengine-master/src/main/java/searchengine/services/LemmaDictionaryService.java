@@ -0,0 +1,127 @@
+package searchengine.services;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import searchengine.repository.LemmaBatchRepository;
+
+/**
+ * Словари лемм сайтов (LemmaDictionary): текст леммы -> идентификатор строки таблицы lemma.
+ *
+ * Словарь - кэш перед таблицей lemma, а не её замена. Словарь сайта загружается из таблицы
+ * в начале обхода, и идентификаторы известных лемм берутся из памяти без обращения к базе.
+ * Промах (лемма, которой в словаре нет) обращается к базе: после пакетной вставки строк
+ * страницы (LemmaBatchRepository.incrementOrInsert) один запрос findIds на страницу читает
+ * идентификаторы всех её новых лемм. Поэтому на новом сайте, пока словарь пополняется,
+ * почти каждая страница делает этот запрос; по мере обхода промахов становится всё меньше.
+ *
+ * Идентификаторы назначает MySQL (AUTO_INCREMENT); приложение их не выделяет, ни по одному,
+ * ни диапазонами: выделенные заранее идентификаторы расходились бы со строками, которые
+ * вставляет другой код или другой экземпляр приложения. Прочитанные идентификаторы
+ * попадают в словарь только после фиксации транзакции, поэтому откат не оставляет в словаре
+ * несуществующих строк. Строки лемм не удаляются, пока существует сайт (см. LemmaService),
+ * поэтому закэшированный идентификатор остаётся верным.
+ */
+@Service
+public class LemmaDictionaryService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LemmaDictionaryService.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final LemmaBatchRepository lemmaBatchRepository;
+    private final Map<Integer, LemmaDictionary> dictionaries = new ConcurrentHashMap<>();
+
+    @Autowired
+    public LemmaDictionaryService(JdbcTemplate jdbcTemplate, LemmaBatchRepository lemmaBatchRepository) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.lemmaBatchRepository = lemmaBatchRepository;
+    }
+
+    /**
+     * Загружает словарь сайта заново (в начале обхода).
+     */
+    public void warm(int siteId) {
+        dictionaries.put(siteId, load(siteId));
+    }
+
+    /**
+     * Словарь сайта; если сайт ещё не обходился, словарь загружается при первом обращении.
+     */
+    public LemmaDictionary dictionary(int siteId) {
+        return dictionaries.computeIfAbsent(siteId, this::load);
+    }
+
+    /**
+     * Возвращает идентификаторы лемм сайта: известные - из словаря, остальные - одним
+     * запросом к таблице lemma. Строки лемм должны уже существовать:
+     * вызывается после LemmaBatchRepository.incrementOrInsert в той же транзакции,
+     * которая удерживает блокировки этих строк до фиксации.
+     */
+    public Map<String, Integer> resolveIds(int siteId, Collection<String> lemmas) {
+        LemmaDictionary dictionary = dictionary(siteId);
+        Map<String, Integer> ids = new HashMap<>(lemmas.size() * 2);
+        List<String> missing = new ArrayList<>();
+        for (String lemma : lemmas) {
+            int id = dictionary.idOf(lemma);
+            if (id < 0) {
+                missing.add(lemma);
+            } else {
+                ids.put(lemma, id);
+            }
+        }
+        if (missing.isEmpty()) {
+            return ids;
+        }
+        Map<String, Integer> loaded = lemmaBatchRepository.findIds(siteId, missing);
+        if (loaded.size() < missing.size()) {
+            throw new IllegalStateException("Не найдено " + (missing.size() - loaded.size())
+                    + " лемм сайта " + siteId + " после вставки");
+        }
+        ids.putAll(loaded);
+        afterCommit(() -> loaded.forEach(dictionary::put));
+        return ids;
+    }
+
+    private LemmaDictionary load(int siteId) {
+        long started = System.nanoTime();
+        LemmaDictionary dictionary = new LemmaDictionary();
+        // Потоковое чтение: драйвер MySQL не держит в памяти всю выборку
+        JdbcTemplate streaming = new JdbcTemplate(jdbcTemplate.getDataSource());
+        streaming.setFetchSize(Integer.MIN_VALUE);
+        streaming.query("SELECT id, lemma_text FROM lemma WHERE siteid = ?",
+                rs -> {
+                    dictionary.put(rs.getString(2), rs.getInt(1));
+                }, siteId);
+        logger.info("Словарь лемм сайта {} загружен: {} лемм, {} КБ, {} мс", siteId, dictionary.size(),
+                dictionary.memoryBytes() / 1024, (System.nanoTime() - started) / 1_000_000);
+        return dictionary;
+    }
+
+    /**
+     * Выполняет действие после фиксации текущей транзакции или сразу, если транзакции нет.
+     */
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -1,21 +1,41 @@
 package searchengine.services;
-import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
-import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlerSettings;
+/**
+ * Морфологическая информация слова через общий Lemmatizer
+ * (словари загружаются один раз, а не при каждом вызове).
+ */
+@Component
 public class LemmaFinder {
-    public HashMap<String, String> getLemmaInfo(String word) throws IOException {
-        RussianLuceneMorphology luceneMorph = new RussianLuceneMorphology();
+    private final Lemmatizer lemmatizer;
+
+    /**
+     * Для запуска вне Spring (Main): словари загружаются один раз на экземпляр.
+     */
+    public LemmaFinder() {
+        this(new Lemmatizer(new CrawlerSettings()));
+    }
+
+    @Autowired
+    public LemmaFinder(Lemmatizer lemmatizer) {
+        this.lemmatizer = lemmatizer;
+    }
+
+    public HashMap<String, String> getLemmaInfo(String word) {
         HashMap<String, String> lemmaInfo = new HashMap<>();
 
-        List<String> wordBaseForms = luceneMorph.getMorphInfo(word.toLowerCase());
+        List<String> wordBaseForms = lemmatizer.morphInfo(word.toLowerCase());
         if (!wordBaseForms.isEmpty()) {
-            String lemma = wordBaseForms.get(0).split("\\|")[0]; // Получаем лемму
-            String info = wordBaseForms.get(0).split("\\|")[1]; // Получаем информацию о части речи
+            String[] parts = wordBaseForms.get(0).split("\\|");
+            String lemma = parts[0]; // Получаем лемму
+            String info = parts.length > 1 ? parts[1] : ""; // Получаем информацию о части речи
 
             lemmaInfo.put(lemma, info);
         }
 
         return lemmaInfo;
     }
-}
\ No newline at end of file
+}
@@ -1,18 +1,22 @@
 package searchengine.services;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import searchengine.entity.Index;
 import searchengine.entity.Lemma;
 import searchengine.entity.Page;
 import searchengine.entity.Site;
 import searchengine.repository.IndexRepository;
+import searchengine.repository.LemmaBatchRepository;
 import searchengine.repository.LemmaRepository;
 import searchengine.repository.SiteRepository;
 
@@ -28,6 +32,18 @@ public class LemmaService {
     @Autowired
     private IndexRepository indexRepository;
 
+    @Autowired
+    private Lemmatizer lemmatizer;
+
+    @Autowired
+    private LemmaBatchRepository lemmaBatchRepository;
+
+    @Autowired
+    private PostingWriter postingWriter;
+
+    @Autowired
+    private LemmaDictionaryService lemmaDictionaryService;
+
     @Autowired
     public LemmaService(LemmaRepository lemmaRepository, SiteRepository siteRepository) {
         this.lemmaRepository = lemmaRepository;
@@ -36,9 +52,16 @@ public class LemmaService {
 
     /**
      * Обрабатывает текст страницы: подсчитывает частоту встречаемости каждой леммы и 
-     * сохраняет/обновляет записи в базе.
-     * Дополнительно создаёт записи в таблице Index, связывающие лемму и страницу.
-     * Обрабатываются только слова, состоящие исключительно из букв.
+     * приводит записи в базе в соответствие с новым текстом.
+     * Если страница уже была проиндексирована, вычисляется разница со старыми записями Index:
+     * удаляются записи исчезнувших лемм, добавляются записи новых, у остальных обновляется ранг
+     * только при его изменении. Частота леммы (число страниц сайта с этой леммой) меняется
+     * лишь для добавленных и удалённых лемм, поэтому повторная индексация не раздувает частоты.
+     * Лемма, частота которой упала до нуля, остаётся в таблице: её идентификатор кэширован
+     * словарём сайта и будет использован снова, когда лемма опять встретится.
+     * Все изменения выполняются пакетно в одной транзакции.
+     * Обрабатываются только слова, состоящие исключительно из букв; каждое приводится
+     * к лемме общим Lemmatizer, служебные слова пропускаются.
      *
      * При возникновении ошибки выбрасывается RuntimeException с подробным сообщением.
      *
@@ -46,57 +69,113 @@ public class LemmaService {
      * @param text очищенный текст страницы
      * @param site сайт, к которому относится страница
      */
+    @Transactional
     public void processLemmas(Page page, String text, Site site) {
         try {
             logger.info("Начало обработки лемм для страницы с ID: {} и сайта: {}", page.getId(), site.getId());
-            String[] words = text.split("\\W+");
-            Map<String, Integer> lemmaCount = new HashMap<>();
-            
-            for (String word : words) {
-                if (word.isEmpty()) continue;
-                // Удаляем цифры из слова
-                String cleanedWord = word.replaceAll("\\d", "");
-                // Если после удаления цифр слово пустое или содержит символы, не являющиеся буквами, пропускаем его
-                if (!cleanedWord.matches("^[\\p{L}]+$")) continue;
-                // Отбрасываем слова короче 3 символов (это можно сделать также через параметр, если потребуется)
-                if (cleanedWord.length() < 3) continue;
-                String lemma = cleanedWord.toLowerCase();
-                lemmaCount.put(lemma, lemmaCount.getOrDefault(lemma, 0) + 1);
-            }
-            
+            Map<String, Integer> lemmaCount = countLemmas(text);
             logger.info("Найдено {} уникальных лемм", lemmaCount.size());
-            
-            for (Map.Entry<String, Integer> entry : lemmaCount.entrySet()) {
-                String lemmaText = entry.getKey();
-                int count = entry.getValue();
-                logger.debug("Обработка леммы: {} (количество: {})", lemmaText, count);
-        
-                // 1. Сохраняем или обновляем лемму
-                Lemma lemmaEntity = saveOrUpdateLemma(lemmaText, site);
-        
-                // 2. Создаём и сохраняем запись в таблице Index для связи леммы и страницы
-                Index indexEntity = new Index();
-                indexEntity.setLemmaId(lemmaEntity.getId());
-                indexEntity.setPageId(page.getId());
-                indexEntity.setLemma(lemmaText);
-                // Используем количество вхождений как значение ранга
-                indexEntity.setRank((float) count);
-                // Пример: значение поля idx (может быть изменено по логике)
-                indexEntity.setIdx(1);
-        
-                indexRepository.save(indexEntity);
-                logger.debug("Сохранена запись в таблице Index: lemmaId={}, pageId={}, rank={}", 
-                             lemmaEntity.getId(), page.getId(), indexEntity.getRank());
-            }
+            applyLemmaDelta(page, lemmaCount, site);
             logger.info("Завершена обработка лемм для страницы с ID: {}", page.getId());
         } catch (Exception e) {
             logger.error("Ошибка при обработке лемм для страницы с ID {}: {}", page.getId(), e.getMessage(), e);
             throw new RuntimeException("Ошибка при обработке лемм для страницы с ID " + page.getId() + ": " + e.getMessage(), e);
         }
     }
-    
+
+    /**
+     * Удаляет все записи Index страницы и уменьшает частоты её лемм
+     * (страница исключается из индекса, например, как почти дубликат).
+     */
+    @Transactional
+    public void removeLemmas(Page page, Site site) {
+        applyLemmaDelta(page, Map.of(), site);
+    }
+
     /**
-     * Сохраняет лемму для указанного сайта по его идентификатору.
+     * Леммы текста страницы с числом вхождений; при function-word-filter без служебных слов.
+     */
+    Map<String, Integer> countLemmas(String text) {
+        Map<String, Integer> lemmaCount = new HashMap<>();
+        // Слова короче 3 символов отбрасываются; лемма ищется один раз на каждое различное слово
+        WordTokenizer.countWords(text, 3).forEach((word, count) -> {
+            String lemma = lemmatizer.contentLemmaOf(word);
+            // Служебные слова (предлоги, союзы, частицы, междометия) не индексируются
+            if (lemma != null) {
+                lemmaCount.merge(lemma, count, Integer::sum);
+            }
+        });
+        return lemmaCount;
+    }
+
+    /**
+     * Применяет к базе разницу между сохранёнными записями Index страницы и новым набором лемм.
+     */
+    private void applyLemmaDelta(Page page, Map<String, Integer> lemmaCount, Site site) {
+        Map<String, Index> oldPostings = new HashMap<>();
+        for (Index posting : indexRepository.findByPageId(page.getId())) {
+            oldPostings.put(posting.getLemma(), posting);
+        }
+
+        // 1. Исчезнувшие леммы: удаляем записи Index и уменьшаем частоту
+        List<Index> removed = new ArrayList<>();
+        for (Index posting : oldPostings.values()) {
+            if (!lemmaCount.containsKey(posting.getLemma())) {
+                removed.add(posting);
+            }
+        }
+
+        // 2. Оставшиеся леммы: обновляем ранг, только если изменилось число вхождений
+        List<Index> changed = new ArrayList<>();
+        List<String> addedTexts = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : lemmaCount.entrySet()) {
+            Index posting = oldPostings.get(entry.getKey());
+            if (posting == null) {
+                addedTexts.add(entry.getKey());
+            } else if (posting.getRank() != entry.getValue()) {
+                // Используем количество вхождений как значение ранга
+                posting.setRank((float) entry.getValue());
+                changed.add(posting);
+            }
+        }
+
+        // 3. Новые леммы: одним запросом создаём недостающие строки и увеличиваем частоту
+        // существующих, затем берём идентификаторы из словаря сайта (неизвестные - из базы)
+        List<Index> added = new ArrayList<>();
+        if (!addedTexts.isEmpty()) {
+            lemmaBatchRepository.incrementOrInsert(site.getId(), addedTexts);
+            Map<String, Integer> lemmaIds = lemmaDictionaryService.resolveIds(site.getId(), addedTexts);
+
+            for (String lemmaText : addedTexts) {
+                Index posting = new Index();
+                posting.setLemmaId(lemmaIds.get(lemmaText));
+                posting.setPageId(page.getId());
+                posting.setLemma(lemmaText);
+                posting.setRank((float) lemmaCount.get(lemmaText));
+                // Пример: значение поля idx (может быть изменено по логике)
+                posting.setIdx(1);
+                added.add(posting);
+            }
+        }
+
+        if (!removed.isEmpty()) {
+            indexRepository.deleteAllInBatch(removed);
+            List<Integer> decremented = new ArrayList<>();
+            for (Index posting : removed) {
+                decremented.add(posting.getLemmaId());
+            }
+            lemmaRepository.adjustFrequency(decremented, -1);
+        }
+        indexRepository.saveAll(changed);
+        // Новые записи пишутся пакетом JDBC в этой же транзакции
+        postingWriter.write(added);
+        logger.info("Страница с ID {}: добавлено лемм {}, удалено {}, изменён ранг у {}",
+                page.getId(), added.size(), removed.size(), changed.size());
+    }
+
+    /**
+     * Сохраняет лемму для указанного сайта по его идентификатору: создаёт её с частотой 1
+     * или увеличивает частоту существующей одним запросом INSERT ... ON DUPLICATE KEY UPDATE.
      * При возникновении ошибки выбрасывается RuntimeException с подробным сообщением.
      *
      * @param lemmaText текст леммы
@@ -115,18 +194,12 @@ public class LemmaService {
                         return new IllegalArgumentException(errorMsg);
                     });
             
-            // Поиск существующей леммы по тексту
-            Lemma lemma = lemmaRepository.findByLemmaText(lemmaText);
-            if (lemma == null) {
-                logger.debug("Лемма {} не найдена, создаём новую", lemmaText);
-                lemma = new Lemma(foundSite, lemmaText);
-                lemma.setFrequency(1);
-            } else {
-                logger.debug("Лемма {} найдена, текущая частота: {}", lemmaText, lemma.getFrequency());
-                lemma.setFrequency(lemma.getFrequency() + 1);
+            lemmaBatchRepository.incrementOrInsert(foundSite.getId(), List.of(lemmaText));
+            Map<String, Integer> lemmaIds = lemmaDictionaryService.resolveIds(foundSite.getId(), List.of(lemmaText));
+            Lemma savedLemma = lemmaRepository.findById(lemmaIds.get(lemmaText)).orElse(null);
+            if (savedLemma == null) {
+                throw new IllegalStateException("Лемма " + lemmaText + " не найдена после сохранения");
             }
-            
-            Lemma savedLemma = lemmaRepository.save(lemma);
             logger.info("Лемма {} сохранена/обновлена, новая частота: {}", lemmaText, savedLemma.getFrequency());
             return savedLemma;
         } catch (Exception e) {
@@ -0,0 +1,268 @@
+package searchengine.services;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.lucene.morphology.LuceneMorphology;
+import org.apache.lucene.morphology.english.EnglishLuceneMorphology;
+import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import searchengine.config.CrawlerSettings;
+
+/**
+ * Приведение слов к леммам (нормальной форме) словарями RussianLuceneMorphology
+ * и EnglishLuceneMorphology.
+ *
+ * Словари загружаются один раз при создании сервиса. После загрузки LuceneMorphology
+ * только читает свои таблицы, поэтому один экземпляр используется всеми потоками
+ * индексации и поиска без синхронизации.
+ *
+ * Перед словарём стоит ограниченный кэш слово -> лемма на lemma-cache-size записей:
+ * частоты слов естественного языка сильно неравномерны, и небольшое число частых
+ * слов составляет большую часть текста. Вытеснение - приближённый CLOCK: чтение
+ * только отмечает запись использованной, а при переполнении один поток удаляет
+ * записи без отметки, снимая отметки с остальных, пока кэш не опустеет на десятую часть.
+ *
+ * Вместе с леммой кэшируется признак служебного слова (предлог, союз, частица,
+ * междометие): такие слова встречаются почти на каждой странице и не несут смысла
+ * для поиска, поэтому при function-word-filter они не попадают в индекс и в запрос.
+ * Фильтр действует только на заново обработанные страницы: страницы, пропущенные как
+ * неизменённые (ответ 304 или совпавший хэш содержимого), сохраняют прежние записи
+ * служебных слов, поэтому после включения фильтра индекс уменьшается только после полной
+ * переиндексации сайта.
+ */
+@Service
+public class Lemmatizer {
+
+    private static final Logger logger = LoggerFactory.getLogger(Lemmatizer.class);
+
+    /**
+     * Граммемы служебных частей речи русского и английского словарей.
+     */
+    private static final Set<String> FUNCTION_PARTS_OF_SPEECH =
+            Set.of("ПРЕДЛ", "СОЮЗ", "ЧАСТ", "МЕЖД", "PREP", "CONJ", "PART", "INT", "ARTICLE");
+
+    private final LuceneMorphology russian;
+    private final LuceneMorphology english;
+    private final WordCache cache;
+    private final boolean functionWordFilter;
+
+    @Autowired
+    public Lemmatizer(CrawlerSettings crawlerSettings) {
+        long started = System.nanoTime();
+        try {
+            this.russian = new RussianLuceneMorphology();
+            this.english = new EnglishLuceneMorphology();
+        } catch (IOException e) {
+            throw new IllegalStateException("Не удалось загрузить словари морфологии: " + e.getMessage(), e);
+        }
+        this.cache = new WordCache(Math.max(1, crawlerSettings.getLemmaCacheSize()));
+        this.functionWordFilter = crawlerSettings.isFunctionWordFilter();
+        logger.info("Словари морфологии загружены за {} мс, кэш лемм: {} слов",
+                (System.nanoTime() - started) / 1_000_000, crawlerSettings.getLemmaCacheSize());
+    }
+
+    /**
+     * Возвращает лемму слова в нижнем регистре. Слово, которого нет в словаре
+     * или которое смешивает алфавиты, возвращается без изменений.
+     *
+     * @param word слово из букв в нижнем регистре
+     */
+    public String lemmaOf(String word) {
+        return entryOf(word).lemma;
+    }
+
+    /**
+     * Возвращает лемму слова для индекса и поиска или null, если слово служебное.
+     * Слово считается служебным, только если все его разборы - служебные части речи:
+     * например, "путём" (предлог и форма существительного) остаётся в индексе.
+     *
+     * @param word слово из букв в нижнем регистре
+     */
+    public String contentLemmaOf(String word) {
+        Entry entry = entryOf(word);
+        return entry.functionWord ? null : entry.lemma;
+    }
+
+    /**
+     * Морфологическая информация слова в формате словаря ("лемма|признаки") без кэширования.
+     * Для слов вне словаря возвращается пустой список.
+     */
+    public List<String> morphInfo(String word) {
+        LuceneMorphology morphology = morphologyFor(word);
+        if (morphology == null) {
+            return List.of();
+        }
+        try {
+            return morphology.getMorphInfo(word);
+        } catch (RuntimeException e) {
+            return List.of();
+        }
+    }
+
+    /**
+     * Доля обращений, обслуженных кэшем, с момента запуска.
+     */
+    public double getCacheHitRate() {
+        return cache.hitRate();
+    }
+
+    private Entry entryOf(String word) {
+        Entry entry = cache.get(word);
+        if (entry == null) {
+            entry = new Entry(normalForm(word), functionWordFilter && isFunctionWord(word));
+            cache.put(word, entry);
+        }
+        return entry;
+    }
+
+    private boolean isFunctionWord(String word) {
+        List<String> readings = morphInfo(word);
+        if (readings.isEmpty()) {
+            return false;
+        }
+        for (String reading : readings) {
+            if (!hasFunctionPartOfSpeech(reading)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Разбор вида "лемма|код граммемы..." содержит служебную часть речи.
+     */
+    private static boolean hasFunctionPartOfSpeech(String reading) {
+        int separator = reading.indexOf('|');
+        String[] grammemes = reading.substring(separator + 1).split(" ");
+        // Первый элемент - код словарной статьи, части речи идут после него
+        for (int i = 1; i < grammemes.length; i++) {
+            if (FUNCTION_PARTS_OF_SPEECH.contains(grammemes[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String normalForm(String word) {
+        LuceneMorphology morphology = morphologyFor(word);
+        if (morphology == null) {
+            return word;
+        }
+        try {
+            List<String> forms = morphology.getNormalForms(word);
+            return forms.isEmpty() ? word : forms.get(0);
+        } catch (RuntimeException e) {
+            // Словарь отвергает некоторые сочетания букв
+            return word;
+        }
+    }
+
+    /**
+     * Словарь по алфавиту слова или null, если слово не целиком кириллическое или латинское.
+     */
+    private LuceneMorphology morphologyFor(String word) {
+        if (word.isEmpty()) {
+            return null;
+        }
+        boolean cyrillic = true;
+        boolean latin = true;
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            cyrillic &= (c >= 'а' && c <= 'я') || c == 'ё';
+            latin &= c >= 'a' && c <= 'z';
+        }
+        return cyrillic ? russian : latin ? english : null;
+    }
+
+    /**
+     * Ограниченный потокобезопасный кэш с вытеснением по схеме CLOCK.
+     */
+    private static final class WordCache {
+
+        private final ConcurrentHashMap<String, Entry> entries;
+        private final int capacity;
+        private final ReentrantLock evictionLock = new ReentrantLock();
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+
+        WordCache(int capacity) {
+            this.capacity = capacity;
+            this.entries = new ConcurrentHashMap<>(Math.min(capacity, 1 << 16));
+        }
+
+        Entry get(String word) {
+            Entry entry = entries.get(word);
+            if (entry == null) {
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            // Отметка обычно уже стоит: не пишем в общую память без нужды
+            if (!entry.referenced) {
+                entry.referenced = true;
+            }
+            return entry;
+        }
+
+        void put(String word, Entry entry) {
+            entries.putIfAbsent(word, entry);
+            if (entries.size() > capacity) {
+                // Остальные потоки ждут вытеснения, иначе при многих потоках кэш превышает ёмкость
+                evictionLock.lock();
+                try {
+                    if (entries.size() > capacity) {
+                        evict();
+                    }
+                } finally {
+                    evictionLock.unlock();
+                }
+            }
+        }
+
+        /**
+         * Освобождает десятую часть ёмкости, чтобы вытеснение выполнялось редко.
+         */
+        private void evict() {
+            int target = capacity - Math.max(1, capacity / 10);
+            while (entries.size() > target) {
+                Iterator<Entry> iterator = entries.values().iterator();
+                while (iterator.hasNext() && entries.size() > target) {
+                    Entry entry = iterator.next();
+                    if (entry.referenced) {
+                        entry.referenced = false;
+                    } else {
+                        iterator.remove();
+                    }
+                }
+            }
+        }
+
+        double hitRate() {
+            long hit = hits.sum();
+            long total = hit + misses.sum();
+            return total == 0 ? 0 : (double) hit / total;
+        }
+    }
+
+    private static final class Entry {
+
+        private final String lemma;
+        private final boolean functionWord;
+        private volatile boolean referenced;
+
+        Entry(String lemma, boolean functionWord) {
+            this.lemma = lemma;
+            this.functionWord = functionWord;
+        }
+    }
+}
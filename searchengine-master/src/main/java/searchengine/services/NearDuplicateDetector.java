@@ -0,0 +1,220 @@
+package searchengine.services;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import searchengine.config.CrawlerSettings;
+import searchengine.repository.PageRepository;
+
+/**
+ * Поиск почти одинаковых страниц сайта (печатные версии, параметры отслеживания, пагинация).
+ *
+ * Для очищенного текста страницы вычисляется 64-битный SimHash по шинглам из трёх слов.
+ * Страницы считаются почти одинаковыми, если их SimHash различаются не более чем в maxDistance
+ * битах. Для быстрого поиска SimHash делится на maxDistance + 1 полос: у таких страниц хотя бы
+ * одна полоса обязательно совпадает, поэтому сравниваются только страницы с общей полосой.
+ * Индекс полос хранится в памяти отдельно для каждого сайта и загружается из таблицы page
+ * при первом обращении.
+ *
+ * Индекс в памяти изменяется только после фиксации транзакции, сохранившей страницу:
+ * после отката в нём не остаётся отпечатка несохранённой страницы и не пропадает
+ * отпечаток страницы, которая осталась в базе.
+ *
+ * Дубликат сравнивается с основной страницей только при своей индексации. Когда основная
+ * страница меняет содержимое или сама становится дубликатом, её дубликаты не проверяются
+ * сразу: у них сбрасываются ETag, Last-Modified и хэш содержимого, поэтому следующий обход
+ * обрабатывает их заново и либо индексирует, либо связывает с другой основной страницей.
+ */
+@Service
+public class NearDuplicateDetector {
+
+    private static final Logger logger = LoggerFactory.getLogger(NearDuplicateDetector.class);
+
+    // Для совсем коротких текстов SimHash ненадёжен: совпадения даёт одно оформление страницы
+    private static final int MIN_WORDS = 30;
+    private static final int SHINGLE_SIZE = 3;
+
+    private final CrawlerSettings crawlerSettings;
+    private final PageRepository pageRepository;
+    private final Map<Integer, SiteIndex> indexes = new ConcurrentHashMap<>();
+
+    @Autowired
+    public NearDuplicateDetector(CrawlerSettings crawlerSettings, PageRepository pageRepository) {
+        this.crawlerSettings = crawlerSettings;
+        this.pageRepository = pageRepository;
+    }
+
+    public boolean isEnabled() {
+        return crawlerSettings.isNearDuplicateDetection();
+    }
+
+    /**
+     * Вычисляет SimHash текста или возвращает null, если текст слишком короткий.
+     */
+    public Long fingerprint(String text) {
+        List<Long> words = wordHashes(text);
+        if (words.size() < MIN_WORDS) {
+            return null;
+        }
+        int[] weights = new int[64];
+        for (int i = 0; i + SHINGLE_SIZE <= words.size(); i++) {
+            long shingle = UrlSeenFilter.mix(words.get(i)
+                    ^ Long.rotateLeft(words.get(i + 1), 21)
+                    ^ Long.rotateLeft(words.get(i + 2), 42));
+            for (int bit = 0; bit < 64; bit++) {
+                weights[bit] += ((shingle >>> bit) & 1) != 0 ? 1 : -1;
+            }
+        }
+        long simhash = 0;
+        for (int bit = 0; bit < 64; bit++) {
+            if (weights[bit] > 0) {
+                simhash |= 1L << bit;
+            }
+        }
+        return simhash;
+    }
+
+    /**
+     * Ищет среди проиндексированных страниц сайта почти одинаковую.
+     *
+     * @param excludePageId ID проверяемой страницы (сама с собой не сравнивается) или 0
+     * @return ID основной страницы или null, если похожих нет
+     */
+    public Integer findCanonical(int siteId, long simhash, int excludePageId) {
+        return indexFor(siteId).find(simhash, excludePageId);
+    }
+
+    /**
+     * Регистрирует проиндексированную страницу как основную (после фиксации транзакции).
+     */
+    public void register(int siteId, int pageId, long simhash) {
+        SiteIndex index = indexFor(siteId);
+        afterCommit(() -> index.add(pageId, simhash));
+    }
+
+    /**
+     * Убирает страницу из индекса (перед повторной индексацией с новым содержимым)
+     * и отправляет её дубликаты на повторную проверку при следующем обходе.
+     */
+    public void unregister(int siteId, int pageId, long simhash) {
+        int duplicates = pageRepository.resetDuplicatesOf(pageId);
+        if (duplicates > 0) {
+            logger.info("Основная страница {} изменилась, дубликатов к повторной проверке: {}", pageId, duplicates);
+        }
+        SiteIndex index = indexFor(siteId);
+        afterCommit(() -> index.remove(pageId, simhash));
+    }
+
+    /**
+     * Выполняет действие после фиксации текущей транзакции или сразу, если транзакции нет.
+     */
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private SiteIndex indexFor(int siteId) {
+        return indexes.computeIfAbsent(siteId, id -> {
+            SiteIndex index = new SiteIndex(crawlerSettings.getNearDuplicateMaxDistance());
+            List<Object[]> rows = pageRepository.findSimhashesBySiteId(id);
+            for (Object[] row : rows) {
+                index.add((Integer) row[0], (Long) row[1]);
+            }
+            logger.info("Загружен индекс SimHash сайта {}: {} страниц", id, rows.size());
+            return index;
+        });
+    }
+
+    private static List<Long> wordHashes(String text) {
+        List<Long> hashes = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                word.append(Character.toLowerCase(c));
+            } else if (word.length() > 0) {
+                hashes.add(UrlSeenFilter.hash64(word.toString()));
+                word.setLength(0);
+            }
+        }
+        return hashes;
+    }
+
+    /**
+     * Индекс полос SimHash одного сайта.
+     */
+    private static final class SiteIndex {
+
+        private final int maxDistance;
+        private final int bands;
+        private final int bandBits;
+        private final List<Map<Long, List<long[]>>> buckets = new ArrayList<>();
+
+        SiteIndex(int maxDistance) {
+            this.maxDistance = Math.max(0, Math.min(maxDistance, 15));
+            this.bands = this.maxDistance + 1;
+            this.bandBits = 64 / bands;
+            for (int i = 0; i < bands; i++) {
+                buckets.add(new HashMap<>());
+            }
+        }
+
+        synchronized Integer find(long simhash, int excludePageId) {
+            for (int band = 0; band < bands; band++) {
+                List<long[]> candidates = buckets.get(band).get(bandValue(simhash, band));
+                if (candidates == null) {
+                    continue;
+                }
+                for (long[] candidate : candidates) {
+                    if (candidate[0] != excludePageId && Long.bitCount(candidate[1] ^ simhash) <= maxDistance) {
+                        return (int) candidate[0];
+                    }
+                }
+            }
+            return null;
+        }
+
+        synchronized void add(int pageId, long simhash) {
+            for (int band = 0; band < bands; band++) {
+                buckets.get(band).computeIfAbsent(bandValue(simhash, band), key -> new ArrayList<>())
+                        .add(new long[] {pageId, simhash});
+            }
+        }
+
+        synchronized void remove(int pageId, long simhash) {
+            for (int band = 0; band < bands; band++) {
+                long key = bandValue(simhash, band);
+                List<long[]> candidates = buckets.get(band).get(key);
+                if (candidates != null) {
+                    candidates.removeIf(candidate -> candidate[0] == pageId);
+                    if (candidates.isEmpty()) {
+                        buckets.get(band).remove(key);
+                    }
+                }
+            }
+        }
+
+        private long bandValue(long simhash, int band) {
+            long mask = bandBits >= 64 ? -1L : (1L << bandBits) - 1;
+            return (simhash >>> (band * bandBits)) & mask;
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package searchengine.services;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import searchengine.config.CrawlerSettings;
+import searchengine.entity.ContentDictionary;
+import searchengine.entity.Page;
+import searchengine.entity.PageContent;
+import searchengine.repository.ContentDictionaryRepository;
+import searchengine.repository.PageContentRepository;
+
+/**
+ * Хранение HTML страниц в сжатом виде: в таблице page_content или, при
+ * content-storage: file, в сегментных файлах PageContentStore (страница хранит указатель).
+ *
+ * Пока у сайта нет словаря, страницы сжимаются обычным deflate, а первые SAMPLE_PAGES
+ * страниц собираются как образцы. По ним вне транзакции страницы (trainDictionary) строится
+ * словарь сайта, которым сжимаются все последующие страницы. Страницы, сохранённые до появления page_content, читаются
+ * из старой колонки page.content.
+ */
+@Service
+public class PageContentService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PageContentService.class);
+
+    // Число страниц сайта, по которым строится словарь
+    private static final int SAMPLE_PAGES = 16;
+    // Для словаря важна общая разметка, поэтому от образца достаточно начала
+    private static final int MAX_SAMPLE_LENGTH = 256 * 1024;
+    // Заголовок записи в PageContentStore: [int ID словаря или 0][int длина исходного HTML]
+    private static final int STORE_HEADER_SIZE = 8;
+
+    private final PageContentRepository pageContentRepository;
+    private final ContentDictionaryRepository dictionaryRepository;
+    private final TransactionTemplate newTransaction;
+    private final PageContentStore pageContentStore;
+    private final CrawlerSettings crawlerSettings;
+
+    // Словари по ID и ID текущего словаря каждого сайта (0 - словаря пока нет)
+    private final Map<Integer, byte[]> dictionaries = new ConcurrentHashMap<>();
+    private final Map<Integer, Integer> siteDictionaries = new ConcurrentHashMap<>();
+    private final Map<Integer, List<String>> samples = new ConcurrentHashMap<>();
+
+    @Autowired
+    public PageContentService(PageContentRepository pageContentRepository,
+                              ContentDictionaryRepository dictionaryRepository,
+                              PlatformTransactionManager transactionManager,
+                              PageContentStore pageContentStore,
+                              CrawlerSettings crawlerSettings) {
+        this.pageContentRepository = pageContentRepository;
+        this.dictionaryRepository = dictionaryRepository;
+        this.pageContentStore = pageContentStore;
+        this.crawlerSettings = crawlerSettings;
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Сжимает и сохраняет HTML уже сохранённой страницы, очищая старую колонку page.content.
+     */
+    public void save(Page page, String html) {
+        int siteId = page.getSite().getId();
+        int dictionaryId = dictionaryFor(siteId, html);
+        byte[] dictionary = dictionaryId != 0 ? dictionaries.get(dictionaryId) : null;
+        byte[] data = ContentCodec.compress(html, dictionary);
+        int originalLength = html.getBytes(StandardCharsets.UTF_8).length;
+        page.setContent(null);
+
+        if (isFileStorage()) {
+            ByteBuffer record = ByteBuffer.allocate(STORE_HEADER_SIZE + data.length);
+            record.putInt(dictionaryId).putInt(originalLength).put(data).flip();
+            PageContentStore.Pointer pointer = pageContentStore.append(page.getId(), record);
+            page.setContentSegment(pointer.getSegment());
+            page.setContentOffset(pointer.getOffset());
+            page.setContentLength(pointer.getLength());
+        } else {
+            pageContentRepository.save(new PageContent(page.getId(), dictionaryId != 0 ? dictionaryId : null,
+                    originalLength, data));
+            page.setContentSegment(null);
+            page.setContentOffset(null);
+            page.setContentLength(null);
+        }
+        logger.debug("HTML страницы {} сжат: {} -> {} байт", page.getId(), originalLength, data.length);
+    }
+
+    /**
+     * Возвращает HTML страницы или пустую строку, если содержимое не сохранено.
+     */
+    public String load(Page page) {
+        if (page.getContentSegment() != null) {
+            return loadFromStore(page);
+        }
+        Optional<PageContent> content = pageContentRepository.findById(page.getId());
+        if (content.isPresent()) {
+            return decompress(content.get());
+        }
+        return page.getContent() != null ? page.getContent() : "";
+    }
+
+    /**
+     * Возвращает HTML нескольких страниц: ID страницы -> HTML.
+     * Содержимое из таблицы page_content читается одним запросом.
+     */
+    public Map<Integer, String> loadAll(Collection<Page> pages) {
+        Map<Integer, String> result = new HashMap<>();
+        List<Integer> ids = new ArrayList<>(pages.size());
+        for (Page page : pages) {
+            if (page.getContentSegment() != null) {
+                result.put(page.getId(), loadFromStore(page));
+            } else {
+                ids.add(page.getId());
+            }
+        }
+        if (!ids.isEmpty()) {
+            for (PageContent content : pageContentRepository.findAllById(ids)) {
+                result.put(content.getPageId(), decompress(content));
+            }
+        }
+        for (Page page : pages) {
+            if (!result.containsKey(page.getId())) {
+                result.put(page.getId(), page.getContent() != null ? page.getContent() : "");
+            }
+        }
+        return result;
+    }
+
+    private boolean isFileStorage() {
+        return "file".equalsIgnoreCase(crawlerSettings.getContentStorage());
+    }
+
+    private String loadFromStore(Page page) {
+        ByteBuffer record = pageContentStore.read(page.getContentSegment(), page.getContentOffset(),
+                page.getContentLength());
+        int dictionaryId = record.getInt(0);
+        int originalLength = record.getInt(4);
+        ByteBuffer data = record.slice(STORE_HEADER_SIZE, record.remaining() - STORE_HEADER_SIZE);
+        return ContentCodec.decompress(data, originalLength, dictionaryId != 0 ? dictionary(dictionaryId) : null);
+    }
+
+    private String decompress(PageContent content) {
+        byte[] dictionary = content.getDictionaryId() != null ? dictionary(content.getDictionaryId()) : null;
+        return ContentCodec.decompress(content.getData(), content.getOriginalLength(), dictionary);
+    }
+
+    private byte[] dictionary(int dictionaryId) {
+        return dictionaries.computeIfAbsent(dictionaryId, id -> dictionaryRepository.findById(id)
+                .map(ContentDictionary::getData)
+                .orElseThrow(() -> new IllegalStateException("Словарь " + id + " не найден")));
+    }
+
+    /**
+     * Строит словарь сайта, если образцов уже достаточно, и сохраняет его в собственной транзакции.
+     * Вызывается до открытия транзакции страницы: внутри неё сохранение словаря заняло бы
+     * второе соединение пула при уже занятом первом. Внутри активной транзакции ничего не делает,
+     * словарь будет построен при следующем вызове вне транзакции.
+     */
+    public void trainDictionary(int siteId) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            logger.debug("Построение словаря сайта {} отложено: вызов внутри транзакции", siteId);
+            return;
+        }
+        if (currentDictionary(siteId) != 0) {
+            return;
+        }
+        List<String> siteSamples = samples.get(siteId);
+        if (siteSamples == null) {
+            return;
+        }
+        synchronized (siteSamples) {
+            if (siteDictionaries.get(siteId) != 0 || siteSamples.size() < SAMPLE_PAGES) {
+                return;
+            }
+            byte[] data = ContentCodec.trainDictionary(siteSamples);
+            if (data == null) {
+                // Общих фрагментов нет: собираем образцы заново
+                siteSamples.clear();
+                return;
+            }
+            ContentDictionary dictionary = newTransaction.execute(
+                    status -> dictionaryRepository.save(new ContentDictionary(siteId, data)));
+            dictionaries.put(dictionary.getId(), data);
+            siteDictionaries.put(siteId, dictionary.getId());
+            samples.remove(siteId);
+            logger.info("Построен словарь сжатия для сайта {}: {} байт", siteId, data.length);
+        }
+    }
+
+    /**
+     * Возвращает ID словаря сайта (0, если его ещё нет), добавляя страницу в образцы.
+     * Сам словарь здесь не строится: это делает trainDictionary вне транзакции страницы,
+     * а страницы, сохранённые до его появления, сжимаются без словаря.
+     */
+    private int dictionaryFor(int siteId, String html) {
+        int dictionaryId = currentDictionary(siteId);
+        if (dictionaryId != 0) {
+            return dictionaryId;
+        }
+        List<String> siteSamples = samples.computeIfAbsent(siteId, id -> new ArrayList<>());
+        synchronized (siteSamples) {
+            if (siteSamples.size() < SAMPLE_PAGES) {
+                siteSamples.add(html.length() > MAX_SAMPLE_LENGTH ? html.substring(0, MAX_SAMPLE_LENGTH) : html);
+            }
+        }
+        return 0;
+    }
+
+    private int currentDictionary(int siteId) {
+        return siteDictionaries.computeIfAbsent(siteId, id -> dictionaryRepository
+                .findFirstBySiteIdOrderByIdDesc(id)
+                .map(dictionary -> {
+                    dictionaries.put(dictionary.getId(), dictionary.getData());
+                    return dictionary.getId();
+                })
+                .orElse(0));
+    }
+}
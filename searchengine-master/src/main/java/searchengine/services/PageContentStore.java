@@ -0,0 +1,368 @@
+package searchengine.services;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import searchengine.config.CrawlerSettings;
+
+/**
+ * Хранилище HTML страниц вне MySQL: сегментные файлы только на дозапись.
+ *
+ * Каждый сегмент - файл segment-NNNNNN.seg размером content-segment-size-mb, целиком
+ * отображённый в память (на диске занимает место только записанная часть), и файл
+ * segment-NNNNNN.idx с записями [int ID страницы][long смещение][int длина] для каждой
+ * дозаписи. Страница хранит только указатель (сегмент, смещение, длина), а чтение
+ * возвращает срез отображённого буфера без копирования в heap.
+ *
+ * Сброс на диск групповой: append записывает байты в сегмент, ставит запись индекса
+ * в очередь и ждёт, пока один из ожидающих потоков сбросит весь накопленный диапазон
+ * сегмента (force), допишет очередь записей индекса и сбросит индекс. Так несколько
+ * одновременных дозаписей оплачиваются одной парой force, а не двумя на каждую страницу;
+ * одиночная дозапись по-прежнему стоит два force. Указатель возвращается только после сброса.
+ *
+ * После перезапуска позиция дозаписи восстанавливается по последней записи индекса; так как
+ * запись индекса попадает в файл только после сброса описываемых ею байтов, и после сбоя
+ * процесса, и после отключения питания она не указывает на незаписанные байты, а указатель,
+ * уже сохранённый в базе, не попадает в область, которая будет перезаписана. Старые версии
+ * страниц при переиндексации остаются в сегментах как мусор.
+ */
+@Service
+public class PageContentStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(PageContentStore.class);
+
+    private static final int INDEX_ENTRY_SIZE = 16;
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String INDEX_SUFFIX = ".idx";
+
+    private final CrawlerSettings crawlerSettings;
+    private final Map<Integer, MappedByteBuffer> segments = new ConcurrentHashMap<>();
+
+    // writeLock защищает позицию дозаписи и очередь записей индекса, syncLock - сброс на диск
+    // и смену активного сегмента; если нужны обе, syncLock берётся первой
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ReentrantLock syncLock = new ReentrantLock();
+
+    private Path dir;
+    private long segmentSize;
+    private int activeSegment;
+    private FileChannel activeIndex;
+    private long writePos;
+
+    // Записи индекса, ещё не сброшенные на диск, и начало несброшенного диапазона сегмента
+    private final List<ByteBuffer> pendingEntries = new ArrayList<>();
+    private long syncedPos;
+    // Номер последней дозаписи и последней сброшенной на диск
+    private long appended;
+    private volatile long synced;
+
+    @Autowired
+    public PageContentStore(CrawlerSettings crawlerSettings) {
+        this.crawlerSettings = crawlerSettings;
+    }
+
+    /**
+     * Указатель на сохранённое содержимое.
+     */
+    public static final class Pointer {
+
+        private final int segment;
+        private final long offset;
+        private final int length;
+
+        Pointer(int segment, long offset, int length) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        public int getSegment() {
+            return segment;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public int getLength() {
+            return length;
+        }
+    }
+
+    /**
+     * Дописывает содержимое страницы в активный сегмент, при нехватке места открывая новый.
+     * Возвращает указатель, когда запись и её строка индекса уже сброшены на диск.
+     */
+    public Pointer append(int pageId, ByteBuffer data) {
+        int length = data.remaining();
+        try {
+            Pointer pointer = null;
+            long sequence = 0;
+            writeLock.lock();
+            try {
+                openIfNeeded();
+                if (length > segmentSize) {
+                    throw new IllegalArgumentException("Содержимое страницы " + pageId + " больше сегмента: " + length);
+                }
+                if (writePos + length <= segmentSize) {
+                    pointer = put(pageId, data, length);
+                    sequence = appended;
+                }
+            } finally {
+                writeLock.unlock();
+            }
+            if (pointer == null) {
+                // Смена сегмента: сначала сбрасываются все записи текущего
+                syncLock.lock();
+                try {
+                    writeLock.lock();
+                    try {
+                        if (writePos + length > segmentSize) {
+                            takePending().flush();
+                            synced = appended;
+                            openSegment(activeSegment + 1);
+                        }
+                        pointer = put(pageId, data, length);
+                        sequence = appended;
+                    } finally {
+                        writeLock.unlock();
+                    }
+                } finally {
+                    syncLock.unlock();
+                }
+            }
+            awaitSynced(sequence);
+            return pointer;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось записать содержимое страницы " + pageId, e);
+        }
+    }
+
+    /**
+     * Возвращает содержимое только для чтения - срез отображённого сегмента без копирования.
+     */
+    public ByteBuffer read(int segment, long offset, int length) {
+        MappedByteBuffer buffer = segments.get(segment);
+        if (buffer == null) {
+            writeLock.lock();
+            try {
+                openIfNeeded();
+                buffer = mapSegment(segment, FileChannel.MapMode.READ_ONLY);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Не удалось открыть сегмент " + segment, e);
+            } finally {
+                writeLock.unlock();
+            }
+        }
+        return buffer.slice((int) offset, length).asReadOnlyBuffer();
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        syncLock.lock();
+        writeLock.lock();
+        try {
+            if (activeIndex != null) {
+                takePending().flush();
+                synced = appended;
+            }
+            MappedByteBuffer active = segments.get(activeSegment);
+            if (active != null) {
+                active.force();
+            }
+            if (activeIndex != null) {
+                activeIndex.force(true);
+                activeIndex.close();
+                activeIndex = null;
+            }
+        } finally {
+            writeLock.unlock();
+            syncLock.unlock();
+        }
+    }
+
+    /**
+     * Записывает байты в активный сегмент и ставит строку индекса в очередь. Вызывается под writeLock.
+     */
+    private Pointer put(int pageId, ByteBuffer data, int length) {
+        segments.get(activeSegment).put((int) writePos, data, data.position(), length);
+        ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_SIZE);
+        entry.putInt(pageId).putLong(writePos).putInt(length).flip();
+        pendingEntries.add(entry);
+        Pointer pointer = new Pointer(activeSegment, writePos, length);
+        writePos += length;
+        appended++;
+        return pointer;
+    }
+
+    /**
+     * Ждёт сброса на диск дозаписи с данным номером. Первый из ожидающих потоков сбрасывает
+     * всё, что накопилось к этому моменту, остальные получают результат без своего force.
+     */
+    private void awaitSynced(long sequence) throws IOException {
+        if (synced >= sequence) {
+            return;
+        }
+        syncLock.lock();
+        try {
+            if (synced >= sequence) {
+                return;
+            }
+            PendingBatch batch;
+            writeLock.lock();
+            try {
+                batch = takePending();
+            } finally {
+                writeLock.unlock();
+            }
+            // Сегмент не сменится до конца сброса: для смены нужна syncLock
+            batch.flush();
+            synced = batch.sequence;
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    /**
+     * Забирает несброшенный диапазон активного сегмента и очередь строк индекса. Вызывается под writeLock.
+     */
+    private PendingBatch takePending() {
+        PendingBatch batch = new PendingBatch(segments.get(activeSegment), activeIndex, syncedPos, writePos,
+                new ArrayList<>(pendingEntries), appended);
+        pendingEntries.clear();
+        syncedPos = writePos;
+        return batch;
+    }
+
+    /**
+     * Несброшенные дозаписи одного сегмента.
+     */
+    private static final class PendingBatch {
+
+        private final MappedByteBuffer segment;
+        private final FileChannel index;
+        private final long from;
+        private final long to;
+        private final List<ByteBuffer> entries;
+        private final long sequence;
+
+        PendingBatch(MappedByteBuffer segment, FileChannel index, long from, long to,
+                     List<ByteBuffer> entries, long sequence) {
+            this.segment = segment;
+            this.index = index;
+            this.from = from;
+            this.to = to;
+            this.entries = entries;
+            this.sequence = sequence;
+        }
+
+        /**
+         * Сбрасывает байты сегмента, и только затем дописывает и сбрасывает строки индекса.
+         */
+        void flush() throws IOException {
+            if (entries.isEmpty()) {
+                return;
+            }
+            segment.force((int) from, (int) (to - from));
+            for (ByteBuffer entry : entries) {
+                while (entry.hasRemaining()) {
+                    index.write(entry);
+                }
+            }
+            index.force(false);
+        }
+    }
+
+    private void openIfNeeded() throws IOException {
+        if (dir != null) {
+            return;
+        }
+        dir = Paths.get(crawlerSettings.getContentStoreDir());
+        segmentSize = crawlerSettings.getContentSegmentSizeMb() * 1024L * 1024L;
+        if (segmentSize <= 0 || segmentSize > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Недопустимый размер сегмента: " + crawlerSettings.getContentSegmentSizeMb() + " МБ");
+        }
+        Files.createDirectories(dir);
+        int last = 0;
+        try (Stream<Path> files = Files.list(dir)) {
+            last = files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith("segment-") && name.endsWith(SEGMENT_SUFFIX))
+                    .mapToInt(name -> Integer.parseInt(name.substring(8, name.length() - SEGMENT_SUFFIX.length())))
+                    .max()
+                    .orElse(0);
+        }
+        openSegment(Math.max(1, last));
+        logger.info("Хранилище HTML {}: активный сегмент {}, позиция {}", dir, activeSegment, writePos);
+    }
+
+    /**
+     * Делает сегмент активным; позиция дозаписи восстанавливается по его индексу.
+     */
+    private void openSegment(int number) throws IOException {
+        if (activeIndex != null) {
+            segments.get(activeSegment).force();
+            activeIndex.force(true);
+            activeIndex.close();
+        }
+        FileChannel index = FileChannel.open(dir.resolve(fileName(number, INDEX_SUFFIX)),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        // Неполная запись индекса (сбой во время дозаписи) отбрасывается
+        long entries = index.size() / INDEX_ENTRY_SIZE;
+        index.truncate(entries * INDEX_ENTRY_SIZE);
+        long position = 0;
+        if (entries > 0) {
+            ByteBuffer last = ByteBuffer.allocate(INDEX_ENTRY_SIZE);
+            index.read(last, (entries - 1) * INDEX_ENTRY_SIZE);
+            position = last.getLong(4) + last.getInt(12);
+        }
+        index.position(entries * INDEX_ENTRY_SIZE);
+
+        mapSegment(number, FileChannel.MapMode.READ_WRITE);
+        activeSegment = number;
+        activeIndex = index;
+        writePos = position;
+        syncedPos = position;
+    }
+
+    private MappedByteBuffer mapSegment(int number, FileChannel.MapMode mode) throws IOException {
+        MappedByteBuffer mapped = segments.get(number);
+        if (mapped != null) {
+            return mapped;
+        }
+        Path path = dir.resolve(fileName(number, SEGMENT_SUFFIX));
+        if (mode == FileChannel.MapMode.READ_ONLY && !Files.exists(path)) {
+            throw new IllegalStateException("Сегмент " + number + " не найден в " + dir);
+        }
+        try (FileChannel channel = mode == FileChannel.MapMode.READ_ONLY
+                ? FileChannel.open(path, StandardOpenOption.READ)
+                : FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // Отображение сохраняется после закрытия канала
+            mapped = channel.map(mode, 0, mode == FileChannel.MapMode.READ_ONLY ? channel.size() : segmentSize);
+        }
+        segments.put(number, mapped);
+        return mapped;
+    }
+
+    private static String fileName(int number, String suffix) {
+        return String.format("segment-%06d%s", number, suffix);
+    }
+}
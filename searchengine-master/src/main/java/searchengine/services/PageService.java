@@ -1,26 +1,27 @@
 package searchengine.services;
 
 import java.io.IOException;
-import java.util.HashMap;
+import java.io.InterruptedIOException;
 import java.util.List;
-import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import jakarta.persistence.EntityNotFoundException;
-import searchengine.entity.Index;
-import searchengine.entity.Lemma;
 import searchengine.entity.Page;
 import searchengine.entity.Site;
+import searchengine.model.FetchResult;
 import searchengine.model.Status;
-import searchengine.repository.IndexRepository;
-import searchengine.repository.LemmaRepository;
+import searchengine.repository.PageRepository;
 import searchengine.repository.SiteRepository;
 
 @Service
@@ -41,139 +42,229 @@ public class PageService {
     @Autowired
     private ConnectionService connectionService;
 
+    @Autowired
+    private NearDuplicateDetector nearDuplicateDetector;
+
+    @Autowired
+    private PageContentService pageContentService;
+
     @Autowired
     private SiteRepository siteRepository;
-    
-    // Если требуются репозитории для ручного индексирования:
+
+    // Собственный прокси: вызовы через this не применяют настройки @Transactional
     @Autowired
-    private LemmaRepository lemmaRepository;
+    @Lazy
+    private PageService self;
+
     @Autowired
-    private IndexRepository indexRepository;
-    // @Autowired
-    // private PageRepository pageRepository; // Если нужен отдельный репозиторий для Page
+    private PageRepository pageRepository;
 
     /**
      * Индексирует страницу по URL.
      * Подход 1: Использование ConnectionService и обработки через LemmaService.
+     *
+     * @return загруженный документ (используется обходчиком для извлечения ссылок)
      */
-    @Transactional
-    public void indexPage(String url) throws IOException {
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Document indexPage(String url) throws IOException {
+        // Извлекаем базовый URL
+        String baseUrl = extractBaseUrl(url);
+        logger.info("Извлечён базовый URL: {}", baseUrl);
+
+        // Получаем сайт по базовому URL
+        List<Site> sites = siteRepository.findAllByUrl(baseUrl);
+        if (sites.isEmpty()) {
+            logger.error("Сайт с базовым URL {} не найден", baseUrl);
+            throw new EntityNotFoundException("Site with URL " + baseUrl + " not found");
+        }
+        // Если есть сайт со статусом INDEXED, выбираем его, иначе первый найденный
+        Site site = sites.stream()
+                .filter(s -> s.getStatus() == Status.INDEXED)
+                .findFirst()
+                .orElse(sites.get(0));
+        logger.info("Выбран сайт: {} с ID: {}", site.getName(), site.getId());
+
+        return indexPage(url, site);
+    }
+
+    /**
+     * Индексирует страницу по URL для заранее известного сайта.
+     * Загрузка выполняется вне транзакции, сохранение - в отдельной транзакции indexFetched.
+     *
+     * @return загруженный документ (используется обходчиком для извлечения ссылок)
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Document indexPage(String url, Site site) throws IOException {
         logger.info("Начинаем индексацию страницы: {}", url);
+        CancellationToken token = new CancellationToken();
+        FetchResult result = self.fetchPage(url, site, token);
+        self.prepareContentDictionary(site);
+        Page page = self.indexFetched(result, site, token);
+        return self.documentOf(result, page);
+    }
 
+    /**
+     * Загружает страницу по URL без сохранения в базу.
+     * Если страница уже сохранена, запрос отправляется с её ETag / Last-Modified.
+     * Выполняется вне транзакции, чтобы ожидание ответа сервера не удерживало соединение с БД.
+     * После отмены через token бросает CancellationException.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public FetchResult fetchPage(String url, Site site, CancellationToken token) throws IOException {
+        token.throwIfCancelled();
         // Проверка сертификата
         checkCertificate(url);
         logger.debug("Проверка сертификата пройдена для URL: {}", url);
 
-        // Получаем документ через ConnectionService (если он настроен), иначе fallback к Jsoup.connect
-        Document doc;
+        Optional<Page> existing = pageRepository.findByPathAndSiteId(url, site.getId());
+        String etag = existing.map(Page::getEtag).orElse(null);
+        String lastModified = existing.map(Page::getLastModified).orElse(null);
+
+        // Получаем документ через ConnectionService, при ошибке условного запроса - повторный запрос без условных заголовков
+        FetchResult result;
         try {
-            doc = connectionService.connectToPage(url);
+            result = connectionService.fetch(url, etag, lastModified);
         } catch (Exception e) {
-            logger.warn("ConnectionService не смог получить документ, пробуем через Jsoup: {}", e.getMessage());
-            doc = Jsoup.connect(url).get();
+            token.throwIfCancelled();
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("Загрузка страницы " + url + " прервана");
+            }
+            // Таймаут, 429 и 5xx - признаки перегрузки хоста: немедленный повтор удвоил бы нагрузку,
+            // поэтому ошибка передаётся RetryScheduler, который повторит запрос с задержкой
+            if (RetryScheduler.isTransientFetchError(e) || (etag == null && lastModified == null)) {
+                throw e;
+            }
+            logger.warn("ConnectionService не смог получить документ, пробуем ещё раз без условных заголовков: {}", e.getMessage());
+            result = connectionService.fetchFallback(url);
         }
+        // Ответ, полученный после отмены, не нужен
+        token.throwIfCancelled();
         logger.debug("Документ успешно получен для URL: {}", url);
+        return result;
+    }
 
-        String htmlContent = doc.html();
+    /**
+     * Сохраняет результат загрузки как страницу сайта и индексирует её леммы.
+     * Если сервер ответил 304 или хэш содержимого совпал с сохранённым,
+     * очистка HTML и обработка лемм пропускаются. Почти одинаковая с уже проиндексированной
+     * страница сохраняется со ссылкой на основную (canonical_page_id) без обработки лемм.
+     *
+     * Хранимый HTML и текст для лемм берутся из одного разобранного документа ответа: в page_content
+     * сохраняется его полный HTML, включая script и style (из него documentOf восстанавливает
+     * ссылки при ответе 304), а леммы строятся по тексту без этих элементов. HTML
+     * сериализуется до извлечения текста, и HtmlCleaner документ не изменяет.
+     *
+     * @return сохранённая страница
+     */
+    @Transactional
+    public Page indexFetched(FetchResult result, Site site, CancellationToken token) {
+        token.throwIfCancelled();
+        String url = result.getUrl();
+        Page page = pageRepository.findByPathAndSiteId(url, site.getId()).orElse(null);
+
+        if (page != null && result.isNotModified()) {
+            logger.info("Страница {} не изменилась (304), переиндексация не требуется", url);
+            return page;
+        }
+        if (page != null && result.getContentHash() != null
+                && result.getContentHash().equals(page.getContentHash())) {
+            logger.info("Содержимое страницы {} не изменилось, переиндексация не требуется", url);
+            if (!Objects.equals(page.getEtag(), result.getEtag())
+                    || !Objects.equals(page.getLastModified(), result.getLastModified())) {
+                page.setEtag(result.getEtag());
+                page.setLastModified(result.getLastModified());
+                page = pageDataService.savePage(page);
+            }
+            return page;
+        }
+        if (result.getDocument() == null) {
+            throw new IllegalStateException("Сервер вернул 304 для страницы " + url + ", которой нет в базе");
+        }
+
+        Document doc = result.getDocument();
+        // Хранится полный документ ответа, а не очищенный текст
+        String storedHtml = doc.html();
         String title = doc.title();
         if (title == null || title.trim().isEmpty()) {
             title = "Без названия";
             logger.warn("Заголовок страницы пуст, используется значение по умолчанию: {}", title);
         }
 
-        // Извлекаем базовый URL
-        String baseUrl = extractBaseUrl(url);
-        logger.info("Извлечён базовый URL: {}", baseUrl);
+        // Текст для лемм извлекается из того же документа без script, style, iframe и noscript
+        String cleanText = htmlCleaner.cleanDocument(doc);
+        logger.debug("HTML успешно очищен для страницы: {}", url);
 
-        // Получаем сайт по базовому URL
-        List<Site> sites = siteRepository.findAllByUrl(baseUrl);
-        if (sites.isEmpty()) {
-            logger.error("Сайт с базовым URL {} не найден", baseUrl);
-            throw new EntityNotFoundException("Site with URL " + baseUrl + " not found");
+        // Создаем (или обновляем) объект Page
+        boolean existed = page != null;
+        if (page == null) {
+            page = new Page();
+            page.setPath(url);
+            page.setSite(site);
+        } else if (page.getSimhash() != null && page.getCanonicalPageId() == null) {
+            // Содержимое изменилось: старый отпечаток больше не описывает страницу
+            nearDuplicateDetector.unregister(site.getId(), page.getId(), page.getSimhash());
         }
-        // Если есть сайт со статусом INDEXED, выбираем его, иначе первый найденный
-        Site site = sites.stream()
-                .filter(s -> s.getStatus() == Status.INDEXED)
-                .findFirst()
-                .orElse(sites.get(0));
-        logger.info("Выбран сайт: {} с ID: {}", site.getName(), site.getId());
 
-        // Создаем и сохраняем объект Page через PageDataService
-        Page page = new Page();
-        page.setPath(url);
-        page.setContent(htmlContent);
-        page.setSite(site);
+        // Почти одинаковые страницы сохраняются как ссылки на основную и не индексируются
+        Long simhash = nearDuplicateDetector.isEnabled() ? nearDuplicateDetector.fingerprint(cleanText) : null;
+        Integer canonicalPageId = simhash != null
+                ? nearDuplicateDetector.findCanonical(site.getId(), simhash, page.getId())
+                : null;
+
         page.setTitle(title);
-        page.setCode(200);
+        page.setCode(result.getStatusCode());
+        page.setEtag(result.getEtag());
+        page.setLastModified(result.getLastModified());
+        page.setContentHash(result.getContentHash());
+        page.setSimhash(simhash);
+        page.setCanonicalPageId(canonicalPageId);
+        page.setContent(null);
         page = pageDataService.savePage(page);
+        // HTML хранится сжатым в page_content, для этого нужен ID страницы
+        pageContentService.save(page, storedHtml);
         logger.info("Страница сохранена с ID: {} для URL: {}", page.getId(), url);
 
-        // Очистка HTML и обработка лемм через HtmlCleaner и LemmaService
-        String cleanText = htmlCleaner.cleanHtml(htmlContent);
-        logger.debug("HTML успешно очищен для страницы с ID: {}", page.getId());
+        if (canonicalPageId != null) {
+            logger.info("Страница {} почти совпадает со страницей ID {}, индексация пропущена", url, canonicalPageId);
+            if (existed) {
+                // Ранее проиндексированная страница стала дубликатом: убираем её записи из индекса
+                lemmaService.removeLemmas(page, site);
+            }
+            return page;
+        }
+
+        // Обработка лемм через LemmaService; при отмене транзакция откатывается вместе со страницей
+        token.throwIfCancelled();
         lemmaService.processLemmas(page, cleanText, site);
         logger.info("Обработка лемм завершена для страницы с ID: {}", page.getId());
+        if (simhash != null) {
+            nearDuplicateDetector.register(site.getId(), page.getId(), simhash);
+        }
 
         logger.info("Индексация страницы завершена: {}", url);
+        return page;
     }
 
     /**
-     * Альтернативный метод индексирования страницы "вручную".
-     * Здесь выполняется разбиение текста на слова и сохранение лемм и индексов.
+     * Строит словарь сжатия HTML сайта, если для него набралось достаточно образцов.
+     * Вызывается перед indexFetched: словарь сохраняется в своей транзакции, пока
+     * транзакция страницы ещё не заняла соединение с БД.
      */
-    public void indexPageManually(String url) throws IOException {
-        // Проверяем сертификат перед загрузкой страницы
-        checkCertificate(url);
-
-        // Получаем HTML через Jsoup напрямую
-        Document doc = Jsoup.connect(url).get();
-        String htmlContent = doc.html();
-
-        // Сохраняем HTML в таблицу Page (предполагается, что метод savePage существует)
-        Page page = new Page();
-        page.setPath(url);
-        page.setContent(htmlContent);
-        page = pageDataService.savePage(page);
-
-        // Преобразуем HTML в набор лемм
-        String text = htmlCleaner.cleanHtml(htmlContent);
-        String[] words = text.split("\\W+");
-
-        // Создаем мапу для подсчета лемм
-        Map<String, Integer> lemmaCount = new HashMap<>();
-        for (String word : words) {
-            String lemma = word.toLowerCase();
-            lemmaCount.put(lemma, lemmaCount.getOrDefault(lemma, 0) + 1);
-        }
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void prepareContentDictionary(Site site) {
+        pageContentService.trainDictionary(site.getId());
+    }
 
-        // Обработка каждой леммы: обновление или создание записи в таблице Lemma,
-        // а затем сохранение индекса в таблице Index.
-        for (Map.Entry<String, Integer> entry : lemmaCount.entrySet()) {
-            String lemmaText = entry.getKey();
-            int rank = entry.getValue();
-
-            Lemma lemmaEntity = lemmaRepository.findByLemmaText(lemmaText);
-            if (lemmaEntity == null) {
-                // Пример: выбираем сайт с id 1 (это можно изменить по логике)
-                Site site = siteRepository.findById(1)
-                        .orElseThrow(() -> new EntityNotFoundException("Site with id 1 not found"));
-                lemmaEntity = new Lemma();
-                lemmaEntity.setLemmaText(lemmaText);
-                lemmaEntity.setSite(site);
-                lemmaEntity.setFrequency(1);
-            } else {
-                lemmaEntity.setFrequency(lemmaEntity.getFrequency() + 1);
-            }
-            lemmaRepository.save(lemmaEntity);
-
-            // Создаем запись в таблице Index для связывания леммы и страницы
-            Index indexEntity = new Index();
-            indexEntity.setLemmaId(lemmaEntity.getId());
-            indexEntity.setPageId(page.getId());
-            indexEntity.setLemma(lemmaText);
-            indexEntity.setRank((float) rank);
-            indexRepository.save(indexEntity);
+    /**
+     * Возвращает документ страницы для извлечения ссылок. При ответе 304
+     * документ восстанавливается из сохранённого HTML без обращения к сети.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public Document documentOf(FetchResult result, Page page) {
+        if (result.getDocument() != null) {
+            return result.getDocument();
         }
+        return Jsoup.parse(pageContentService.load(page), result.getUrl());
     }
 
     private void checkCertificate(String url) {
@@ -0,0 +1,266 @@
+package searchengine.services;
+
+import java.io.InterruptedIOException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import org.jsoup.HttpStatusException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import searchengine.config.CrawlerSettings;
+
+/**
+ * Повтор асинхронных операций с экспоненциальной задержкой и случайным разбросом.
+ *
+ * Ожидающие повторы хранятся в DelayQueue, которую разбирает один служебный поток:
+ * пока повтор ждёт своего времени, он не занимает ни поток, ни соединение с БД.
+ * Когда время наступает, служебный поток только запускает очередную попытку, сама
+ * работа выполняется в исполнителе, который использует переданная операция.
+ * Задержка перед попыткой n: половина от min(retry-max-delay-ms, retry-base-delay-ms * 2^(n-1))
+ * плюс случайная доля второй половины, чтобы повторы многих задач не совпадали по времени.
+ */
+@Service
+public class RetryScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(RetryScheduler.class);
+
+    private final CrawlerSettings crawlerSettings;
+    private final DelayQueue<ScheduledRetry> queue = new DelayQueue<>();
+    private final Thread dispatcher;
+
+    @Autowired
+    public RetryScheduler(CrawlerSettings crawlerSettings) {
+        this.crawlerSettings = crawlerSettings;
+        this.dispatcher = new Thread(this::dispatch, "RetryDispatcher");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    /**
+     * Выполняет операцию, повторяя её при ошибках, для которых retryable возвращает true.
+     * Отмена возвращённого future отменяет текущую попытку и ожидающий повтор.
+     *
+     * @param attempt   запускает одну попытку и сразу возвращает её future (не должен блокироваться)
+     * @param token     при отмене ожидающий повтор завершается CancellationException; может быть null
+     */
+    public <T> CompletableFuture<T> execute(String description, Supplier<CompletableFuture<T>> attempt,
+                                            Predicate<Throwable> retryable, CancellationToken token) {
+        RetryOperation<T> operation = new RetryOperation<>(description, attempt, retryable, token);
+        operation.run();
+        return operation.result;
+    }
+
+    /**
+     * Временные сетевые ошибки: таймаут, отказ или сброс соединения, ответы 429 и 5xx.
+     */
+    public static boolean isTransientFetchError(Throwable error) {
+        Throwable cause = unwrap(error);
+        if (cause instanceof HttpStatusException) {
+            int status = ((HttpStatusException) cause).getStatusCode();
+            return status == 429 || status >= 500;
+        }
+        if (cause instanceof InterruptedIOException && !(cause instanceof SocketTimeoutException)) {
+            // Загрузка прервана отменой индексации
+            return false;
+        }
+        return cause instanceof SocketTimeoutException || cause instanceof SocketException;
+    }
+
+    /**
+     * Временные ошибки БД: блокировки, взаимоблокировки, таймауты запросов.
+     */
+    public static boolean isTransientPersistError(Throwable error) {
+        for (Throwable cause = unwrap(error); cause != null; cause = cause.getCause()) {
+            if (cause instanceof TransientDataAccessException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Снимает обёртки CompletionException / ExecutionException.
+     */
+    public static Throwable unwrap(Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.interrupt();
+        queue.clear();
+    }
+
+    private void dispatch() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                queue.take().action.run();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                logger.error("Ошибка запуска повторной попытки: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Число повторов, ожидающих своего времени.
+     */
+    int pendingRetries() {
+        return queue.size();
+    }
+
+    /**
+     * Задержка перед повтором после failedAttempts неудачных попыток.
+     */
+    long backoffMillis(int failedAttempts) {
+        long base = Math.max(1, crawlerSettings.getRetryBaseDelayMs());
+        long max = Math.max(base, crawlerSettings.getRetryMaxDelayMs());
+        long exponential = failedAttempts >= 31 ? max : Math.min(max, base << (failedAttempts - 1));
+        long half = exponential / 2;
+        return half + ThreadLocalRandom.current().nextLong(exponential - half + 1);
+    }
+
+    /**
+     * Состояние одной повторяемой операции.
+     */
+    private final class RetryOperation<T> {
+
+        private final String description;
+        private final Supplier<CompletableFuture<T>> attempt;
+        private final Predicate<Throwable> retryable;
+        private final CancellationToken token;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+
+        private int attempts;
+        private volatile CompletableFuture<T> current;
+        private volatile ScheduledRetry pending;
+        private volatile Runnable onCancel;
+
+        RetryOperation(String description, Supplier<CompletableFuture<T>> attempt,
+                       Predicate<Throwable> retryable, CancellationToken token) {
+            this.description = description;
+            this.attempt = attempt;
+            this.retryable = retryable;
+            this.token = token;
+            result.whenComplete((value, error) -> {
+                if (result.isCancelled()) {
+                    CompletableFuture<T> running = current;
+                    if (running != null) {
+                        running.cancel(true);
+                    }
+                    ScheduledRetry waiting = pending;
+                    if (waiting != null) {
+                        queue.remove(waiting);
+                    }
+                }
+                stopWatchingToken();
+            });
+        }
+
+        void run() {
+            pending = null;
+            stopWatchingToken();
+            if (result.isDone()) {
+                return;
+            }
+            if (token != null && token.isCancelled()) {
+                result.completeExceptionally(new CancellationException(CancellationToken.STOPPED_BY_USER));
+                return;
+            }
+            attempts++;
+            CompletableFuture<T> future;
+            try {
+                future = attempt.get();
+            } catch (RuntimeException e) {
+                future = CompletableFuture.failedFuture(e);
+            }
+            current = future;
+            if (result.isCancelled()) {
+                future.cancel(true);
+                return;
+            }
+            future.whenComplete((value, error) -> {
+                if (error == null) {
+                    result.complete(value);
+                } else {
+                    failed(unwrap(error));
+                }
+            });
+        }
+
+        private void failed(Throwable cause) {
+            int maxAttempts = Math.max(1, crawlerSettings.getRetryMaxAttempts());
+            boolean cancelled = cause instanceof CancellationException || (token != null && token.isCancelled());
+            if (cancelled || attempts >= maxAttempts || result.isDone() || !retryable.test(cause)) {
+                result.completeExceptionally(cause);
+                return;
+            }
+            long delay = backoffMillis(attempts);
+            logger.warn("{}: попытка {}/{} не удалась ({}), повтор через {} мс",
+                    description, attempts, maxAttempts, cause.toString(), delay);
+            ScheduledRetry retry = new ScheduledRetry(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay), this::run);
+            pending = retry;
+            queue.add(retry);
+            if (token != null) {
+                // Подписка только на время ожидания: отмена не ждёт наступления повтора и убирает
+                // его из очереди. Подписка идёт после постановки в очередь: на уже отменённом
+                // признаке слушатель выполняется сразу и должен найти повтор в очереди
+                Runnable listener = () -> result.cancel(false);
+                onCancel = listener;
+                token.register(listener);
+            }
+        }
+
+        private void stopWatchingToken() {
+            Runnable listener = onCancel;
+            if (listener != null && token != null) {
+                onCancel = null;
+                token.unregister(listener);
+            }
+        }
+    }
+
+    /**
+     * Повтор, ожидающий своего времени в DelayQueue.
+     */
+    private static final class ScheduledRetry implements Delayed {
+
+        private final long dueNanos;
+        private final Runnable action;
+
+        ScheduledRetry(long dueNanos, Runnable action) {
+            this.dueNanos = dueNanos;
+            this.action = action;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(dueNanos, ((ScheduledRetry) other).dueNanos);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package searchengine.services;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Правила robots.txt для группы User-agent: * и список указанных в файле sitemap.
+ *
+ * Правило Allow / Disallow задаёт префикс пути, в котором допускаются '*' (любая
+ * последовательность символов) и '$' в конце (конец пути). Из подходящих правил
+ * применяется самое длинное; при равной длине побеждает Allow.
+ */
+public class RobotsRules {
+
+    // Как и поисковые системы, читаем не больше 500 КБ файла
+    private static final int MAX_CHARS = 500 * 1024;
+
+    private static final RobotsRules ALLOW_ALL = new RobotsRules(List.of(), List.of());
+
+    private final List<Rule> rules;
+    private final List<String> sitemaps;
+
+    private RobotsRules(List<Rule> rules, List<String> sitemaps) {
+        this.rules = rules;
+        this.sitemaps = sitemaps;
+    }
+
+    /**
+     * Правила, разрешающие всё (robots.txt отсутствует или недоступен).
+     */
+    public static RobotsRules allowAll() {
+        return ALLOW_ALL;
+    }
+
+    /**
+     * Построчно разбирает robots.txt, не загружая его в память целиком.
+     */
+    public static RobotsRules parse(BufferedReader reader) throws IOException {
+        List<Rule> rules = new ArrayList<>();
+        List<String> sitemaps = new ArrayList<>();
+
+        // Группа начинается с одной или нескольких строк User-agent подряд
+        boolean inAgentLine = false;
+        boolean groupMatches = false;
+        int read = 0;
+        String line;
+        while ((line = reader.readLine()) != null && read < MAX_CHARS) {
+            read += line.length() + 1;
+            int comment = line.indexOf('#');
+            if (comment >= 0) {
+                line = line.substring(0, comment);
+            }
+            int colon = line.indexOf(':');
+            if (colon < 0) {
+                continue;
+            }
+            String field = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            String value = line.substring(colon + 1).trim();
+
+            switch (field) {
+                case "user-agent":
+                    if (!inAgentLine) {
+                        groupMatches = false;
+                    }
+                    inAgentLine = true;
+                    if (value.equals("*")) {
+                        groupMatches = true;
+                    }
+                    break;
+                case "allow":
+                case "disallow":
+                    inAgentLine = false;
+                    // Пустой Disallow ничего не запрещает
+                    if (groupMatches && !value.isEmpty()) {
+                        rules.add(new Rule(value, field.equals("allow")));
+                    }
+                    break;
+                case "sitemap":
+                    if (!value.isEmpty()) {
+                        sitemaps.add(value);
+                    }
+                    break;
+                default:
+                    inAgentLine = false;
+            }
+        }
+        return new RobotsRules(rules, Collections.unmodifiableList(sitemaps));
+    }
+
+    /**
+     * Проверяет, разрешена ли загрузка URL.
+     */
+    public boolean isAllowed(String url) {
+        if (rules.isEmpty()) {
+            return true;
+        }
+        String path;
+        try {
+            URI uri = new URI(url);
+            path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+            if (uri.getRawQuery() != null) {
+                path += "?" + uri.getRawQuery();
+            }
+        } catch (Exception e) {
+            return true;
+        }
+
+        Rule best = null;
+        for (Rule rule : rules) {
+            if (rule.matches(path) && (best == null
+                    || rule.length() > best.length()
+                    || (rule.length() == best.length() && rule.allow))) {
+                best = rule;
+            }
+        }
+        return best == null || best.allow;
+    }
+
+    /**
+     * Адреса sitemap, указанные в robots.txt.
+     */
+    public List<String> getSitemaps() {
+        return sitemaps;
+    }
+
+    private static final class Rule {
+
+        private final String value;
+        private final boolean allow;
+        private final Pattern pattern;
+
+        Rule(String value, boolean allow) {
+            this.value = value;
+            this.allow = allow;
+            this.pattern = value.indexOf('*') >= 0 || value.endsWith("$") ? toPattern(value) : null;
+        }
+
+        boolean matches(String path) {
+            return pattern == null ? path.startsWith(value) : pattern.matcher(path).lookingAt();
+        }
+
+        int length() {
+            return value.length();
+        }
+
+        private static Pattern toPattern(String value) {
+            boolean anchored = value.endsWith("$");
+            String body = anchored ? value.substring(0, value.length() - 1) : value;
+            StringBuilder regex = new StringBuilder();
+            String[] parts = body.split("\\*", -1);
+            for (int i = 0; i < parts.length; i++) {
+                if (i > 0) {
+                    regex.append(".*");
+                }
+                regex.append(Pattern.quote(parts[i]));
+            }
+            if (anchored) {
+                regex.append("$");
+            }
+            return Pattern.compile(regex.toString());
+        }
+    }
+}
@@ -1,12 +1,14 @@
 package searchengine.services;
 
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
@@ -16,6 +18,7 @@ import org.springframework.stereotype.Service;
 import searchengine.dto.statistics.SearchResultDTO;
 import searchengine.entity.Page;
 import searchengine.entity.Site;
+import searchengine.repository.IndexRepository;
 import searchengine.repository.LemmaRepository;
 import searchengine.repository.PageRepository;
 import searchengine.repository.SiteRepository;
@@ -30,11 +33,18 @@ public class SearchService {
     private final LemmaRepository lemmaRepository;
     private final PageRepository pageRepository;
     private final SiteRepository siteRepository;
+    private final IndexRepository indexRepository;
+    private final PageContentService pageContentService;
+    private final Lemmatizer lemmatizer;
 
-    public SearchService(LemmaRepository lemmaRepository, PageRepository pageRepository, SiteRepository siteRepository) {
+    public SearchService(LemmaRepository lemmaRepository, PageRepository pageRepository, SiteRepository siteRepository,
+                         IndexRepository indexRepository, PageContentService pageContentService, Lemmatizer lemmatizer) {
         this.lemmaRepository = lemmaRepository;
         this.pageRepository = pageRepository;
         this.siteRepository = siteRepository;
+        this.indexRepository = indexRepository;
+        this.pageContentService = pageContentService;
+        this.lemmatizer = lemmatizer;
     }
 
     public List<SearchResultDTO> search(String query, String site, int offset, int limit) {
@@ -60,19 +70,28 @@ public class SearchService {
             }
         }
 
-        List<Page> pages = filterPagesByLemmas(lemmas, site);
-        List<SearchResultDTO> results = calculateRelevance(pages, lemmas);
-
-        if (results.isEmpty()) {
+        Map<Integer, Double> relevance = rankPages(lemmas, site);
+        if (relevance.isEmpty()) {
             String message = "По вашему запросу ничего не найдено.";
             logger.info(message);
             return Collections.emptyList(); // Возвращаем пустой список, а не исключение
         }
+        double maxRelevance = relevance.values().stream().max(Double::compare).orElse(1.0);
 
-        return results.stream()
-                .sorted(Comparator.comparingDouble(SearchResultDTO::getRelevance).reversed())
+        // Страницы и их содержимое загружаются только для показываемой части результатов
+        List<Integer> pageIds = relevance.entrySet().stream()
+                .sorted(Map.Entry.<Integer, Double>comparingByValue().reversed())
                 .skip(offset)
                 .limit(limit)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+        Map<Integer, Page> pages = pageRepository.findAllById(pageIds).stream()
+                .collect(Collectors.toMap(Page::getId, Function.identity()));
+        Map<Integer, String> contents = pageContentService.loadAll(pages.values());
+
+        return pageIds.stream()
+                .filter(pages::containsKey)
+                .map(id -> toResult(pages.get(id), contents.get(id), relevance.get(id) / maxRelevance, lemmas))
                 .collect(Collectors.toList());
     }
 
@@ -83,69 +102,70 @@ public class SearchService {
      * @return Список уникальных лемм.
      */
     private List<String> extractLemmas(String query, int minWordLength) {
-        return Arrays.stream(query.toLowerCase().split("[,\\s]+"))
-                .map(this::lemmatizeWord)
-                .filter(word -> word.length() >= minWordLength) // Гибкая настройка длины
-                .distinct()
-                .collect(Collectors.toList());
-    }
-    private String lemmatizeWord(String word) {
-        return word.replaceAll("\\d", "").replaceAll("\\W", "");
+        // Запрос разбивается на слова так же, как текст страниц при индексации;
+        // служебных слов нет в индексе, поэтому они не участвуют в поиске
+        Set<String> lemmas = new LinkedHashSet<>();
+        WordTokenizer.forEachWord(query, minWordLength, word -> {
+            String lemma = lemmatizer.contentLemmaOf(word.toString());
+            if (lemma != null) {
+                lemmas.add(lemma);
+            }
+        });
+        return new ArrayList<>(lemmas);
     }
 
-    private List<Page> filterPagesByLemmas(List<String> lemmas, String site) {
-        List<Page> pages;
+    /**
+     * Находит страницы, содержащие все леммы запроса, по таблице индекса.
+     * @return ID страницы -> абсолютная релевантность (сумма рангов лемм).
+     */
+    private Map<Integer, Double> rankPages(List<String> lemmas, String site) {
+        List<Integer> siteIds;
         if (site != null && !site.isEmpty()) {
             Optional<Site> siteEntity = siteRepository.findByUrl(site);
             if (siteEntity.isEmpty()) {
                 logger.info("Сайт '{}' не найден в базе.", site);
-                return Collections.emptyList();
+                return Collections.emptyMap();
             }
-            pages = pageRepository.findPagesByLemmasAndSite(lemmas, siteEntity.get().getId());
+            siteIds = List.of(siteEntity.get().getId());
         } else {
-            pages = pageRepository.findPagesByLemmas(lemmas);
+            siteIds = siteRepository.findAll().stream().map(Site::getId).collect(Collectors.toList());
         }
 
-        // Фильтруем страницы: оставляем только те, где присутствуют ВСЕ леммы
-        return pages.stream()
-                .filter(page -> lemmas.stream().allMatch(lemma -> page.getContent().toLowerCase().contains(lemma)))
-                .collect(Collectors.toList());
-    }
-
-    private List<SearchResultDTO> calculateRelevance(List<Page> pages, List<String> lemmas) {
-        Map<Page, Double> relevanceMap = new HashMap<>();
+        // Леммы ищутся по (сайт, текст); на каждом сайте у леммы свой идентификатор,
+        // поэтому страница должна содержать lemmas.size() различных идентификаторов
+        List<Integer> lemmaIds = lemmaRepository.findIdsBySiteIdsAndLemmaTexts(siteIds, lemmas);
+        if (lemmaIds.isEmpty() || (siteIds.size() == 1 && lemmaIds.size() < lemmas.size())) {
+            return Collections.emptyMap();
+        }
+        List<Object[]> rows = indexRepository.sumRanksByLemmaIds(lemmaIds, lemmas.size());
 
-        for (Page p : pages) {
-            double relevance = calculatePageRelevance(p, lemmas);
-            relevanceMap.put(p, relevance);
+        Map<Integer, Double> relevance = new HashMap<>();
+        for (Object[] row : rows) {
+            relevance.put((Integer) row[0], ((Number) row[1]).doubleValue());
         }
+        return relevance;
+    }
 
-        double maxRelevance = relevanceMap.values().stream().max(Double::compare).orElse(1.0);
-
-        return relevanceMap.entrySet().stream()
-                .map(entry -> {
-                    Page p = entry.getKey();
-                    String siteUrl = p.getSite().getUrl();
-                    String pagePath = p.getPath();
-                    String fullUrl = pagePath.startsWith("http") ? pagePath 
-                            : siteUrl + (pagePath.startsWith("/") ? "" : "/") + pagePath;
-                    String baseUrl = extractBaseUrl(fullUrl);
-                    String relativeUri = extractRelativeUrl(fullUrl);
-                    String fileName = extractFileName(fullUrl, siteUrl);
-
-                    logger.info("Создан результат: fileName={}, Title={}", fileName, p.getTitle());
-
-                    return new SearchResultDTO(
-                            baseUrl,
-                            relativeUri,
-                            p.getTitle(),
-                            generateSnippet(p.getContent(), lemmas),
-                            entry.getValue() / maxRelevance,
-                            p.getSite().getName(),
-                            fileName
-                    );
-                })
-                .collect(Collectors.toList());
+    private SearchResultDTO toResult(Page p, String content, double relevance, List<String> lemmas) {
+        String siteUrl = p.getSite().getUrl();
+        String pagePath = p.getPath();
+        String fullUrl = pagePath.startsWith("http") ? pagePath
+                : siteUrl + (pagePath.startsWith("/") ? "" : "/") + pagePath;
+        String baseUrl = extractBaseUrl(fullUrl);
+        String relativeUri = extractRelativeUrl(fullUrl);
+        String fileName = extractFileName(fullUrl, siteUrl);
+
+        logger.info("Создан результат: fileName={}, Title={}", fileName, p.getTitle());
+
+        return new SearchResultDTO(
+                baseUrl,
+                relativeUri,
+                p.getTitle(),
+                generateSnippet(content, lemmas),
+                relevance,
+                p.getSite().getName(),
+                fileName
+        );
     }
 
     private String extractBaseUrl(String fullUrl) {
@@ -176,23 +196,6 @@ public class SearchService {
         return extracted.isEmpty() ? siteUrl.replaceFirst("^https?://", "") : extracted;
     }
 
-    private double calculatePageRelevance(Page page, List<String> lemmas) {
-        String content = page.getContent().toLowerCase();
-        return lemmas.stream()
-                .mapToDouble(lemma -> countOccurrences(content, lemma))
-                .sum();
-    }
-
-    private int countOccurrences(String content, String lemma) {
-        int count = 0;
-        int index = 0;
-        while ((index = content.indexOf(lemma, index)) != -1) {
-            count++;
-            index += lemma.length();
-        }
-        return count;
-    }
-
     private String generateSnippet(String content, List<String> lemmas) {
         for (String lemma : lemmas) {
             content = content.replaceAll("(?i)" + lemma, "<b>" + lemma + "</b>");
@@ -0,0 +1,138 @@
+package searchengine.services;
+
+import java.net.URI;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import searchengine.entity.Page;
+import searchengine.model.FetchResult;
+
+/**
+ * Задача обработки загруженной страницы в ForkJoinPool.
+ * Сохраняет и индексирует документ, извлекает из него ссылки на тот же хост
+ * и добавляет ещё не посещённые URL в очередь обхода. Ошибки сохранения не перехватываются:
+ * SiteCrawler повторяет задачу при временных ошибках БД и затем освобождает её слот.
+ */
+public class SiteCrawlTask implements Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(SiteCrawlTask.class);
+
+    // Ссылки на файлы, которые не являются HTML-страницами
+    private static final Pattern SKIPPED_EXTENSIONS = Pattern.compile(
+            ".*\\.(jpg|jpeg|png|gif|bmp|svg|webp|ico|pdf|doc|docx|xls|xlsx|ppt|pptx|zip|rar|7z|gz|tar"
+                    + "|mp3|mp4|avi|mov|wmv|exe|apk|css|js|xml|json|rss)$");
+
+    private final SiteCrawler crawler;
+    private final PageService pageService;
+    private final CrawlContext context;
+    private final CrawlFrontier.Entry entry;
+    private final FetchResult result;
+
+    public SiteCrawlTask(SiteCrawler crawler, PageService pageService, CrawlContext context,
+                         CrawlFrontier.Entry entry, FetchResult result) {
+        this.crawler = crawler;
+        this.pageService = pageService;
+        this.context = context;
+        this.entry = entry;
+        this.result = result;
+    }
+
+    @Override
+    public void run() {
+        if (context.isCancelled()) {
+            return;
+        }
+        pageService.prepareContentDictionary(context.getSite());
+        Page page = pageService.indexFetched(result, context.getSite(), context.getToken());
+        context.pageIndexed(entry.getUrl());
+        String finalUrl = normalizeUrl(result.getFinalUrl());
+        if (finalUrl != null && !finalUrl.equals(entry.getUrl()) && isSameHost(finalUrl, context.getHost())) {
+            context.redirectVisited(finalUrl);
+        }
+        int indexed = context.incrementIndexedPages();
+        logger.debug("Проиндексировано страниц сайта {}: {}", context.getSite().getUrl(), indexed);
+
+        if (entry.getDepth() < context.getMaxDepth()) {
+            // Страница уже сохранена и учтена: повтор задачи её бы задвоил
+            try {
+                scheduleLinks(pageService.documentOf(result, page));
+            } catch (RuntimeException e) {
+                context.incrementFailedPages();
+                logger.warn("Не удалось извлечь ссылки со страницы {}: {}", result.getUrl(), e.getMessage());
+            }
+        }
+    }
+
+    private void scheduleLinks(Document doc) {
+        int found = 0;
+        for (Element link : doc.select("a[href]")) {
+            String next = normalizeUrl(link.attr("abs:href"));
+            if (next == null || !isSameHost(next, context.getHost()) || !context.isAllowed(next)) {
+                continue;
+            }
+            if (context.tryVisit(next)) {
+                crawler.schedule(context, next, entry.getDepth() + 1);
+                found++;
+            }
+        }
+        if (found > 0) {
+            logger.debug("Страница {}: найдено {} новых ссылок (глубина {})", result.getUrl(), found, entry.getDepth() + 1);
+        }
+    }
+
+    /**
+     * Приводит ссылку к каноническому виду: отбрасывает якорь, пустые и не-HTTP ссылки,
+     * а также ссылки на файлы. Возвращает null, если ссылку обходить не нужно.
+     */
+    public static String normalizeUrl(String href) {
+        if (href == null || href.isBlank()) {
+            return null;
+        }
+        try {
+            URI uri = new URI(href.trim());
+            String scheme = uri.getScheme();
+            if (scheme == null || !(scheme.equalsIgnoreCase("http") || scheme.equalsIgnoreCase("https"))) {
+                return null;
+            }
+            String path = uri.getRawPath();
+            if (path == null || path.isEmpty()) {
+                path = "/";
+            }
+            if (SKIPPED_EXTENSIONS.matcher(path.toLowerCase(Locale.ROOT)).matches()) {
+                return null;
+            }
+            String query = uri.getRawQuery();
+            return scheme.toLowerCase(Locale.ROOT) + "://" + uri.getHost().toLowerCase(Locale.ROOT)
+                    + (uri.getPort() != -1 ? ":" + uri.getPort() : "")
+                    + path
+                    + (query != null ? "?" + query : "");
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Возвращает хост URL без префикса "www." в нижнем регистре или null для некорректного URL.
+     */
+    public static String hostOf(String url) {
+        try {
+            String host = new URI(url).getHost();
+            if (host == null) {
+                return null;
+            }
+            host = host.toLowerCase(Locale.ROOT);
+            return host.startsWith("www.") ? host.substring(4) : host;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    public static boolean isSameHost(String url, String host) {
+        return host != null && host.equals(hostOf(url));
+    }
+}
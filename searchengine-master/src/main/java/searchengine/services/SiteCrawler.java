@@ -0,0 +1,236 @@
+package searchengine.services;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import searchengine.config.CrawlerSettings;
+import searchengine.entity.Site;
+import searchengine.model.FetchResult;
+
+/**
+ * Обход сайта начиная с главной страницы в пределах хоста сайта
+ * с учётом ограничений глубины и количества страниц из CrawlerSettings.
+ * Перед обходом загружаются robots.txt и sitemap.xml: запрещённые пути не загружаются,
+ * а URL из sitemap сразу попадают в очередь. Найденные URL накапливаются в дисковой
+ * очереди CrawlFrontier, поэтому прерванный обход продолжается с места остановки. Загрузка страниц выполняется в FetchExecutor,
+ * а разбор, сохранение и лемматизация - в ForkJoinPool размером по числу ядер.
+ * Временные ошибки загрузки и сохранения повторяются через RetryScheduler; пока страница
+ * ждёт повтора, она занимает слот сайта, но не поток и не соединение.
+ */
+@Service
+public class SiteCrawler {
+
+    private static final Logger logger = LoggerFactory.getLogger(SiteCrawler.class);
+
+    private final CrawlerSettings crawlerSettings;
+    private final PageService pageService;
+    private final FetchExecutor fetchExecutor;
+    private final SiteDiscoveryService siteDiscoveryService;
+    private final IndexingProgressService indexingProgressService;
+    private final RetryScheduler retryScheduler;
+    private final ForkJoinPool pool;
+
+    @Autowired
+    public SiteCrawler(CrawlerSettings crawlerSettings, PageService pageService, FetchExecutor fetchExecutor,
+                       SiteDiscoveryService siteDiscoveryService,
+                       IndexingProgressService indexingProgressService, RetryScheduler retryScheduler) {
+        this.crawlerSettings = crawlerSettings;
+        this.pageService = pageService;
+        this.fetchExecutor = fetchExecutor;
+        this.siteDiscoveryService = siteDiscoveryService;
+        this.indexingProgressService = indexingProgressService;
+        this.retryScheduler = retryScheduler;
+        int parallelism = crawlerSettings.getParallelism() > 0
+                ? crawlerSettings.getParallelism()
+                : Runtime.getRuntime().availableProcessors();
+        this.pool = new ForkJoinPool(parallelism);
+        logger.info("Пул обработки страниц создан, параллелизм: {}", parallelism);
+    }
+
+    /**
+     * Обходит сайт начиная с его главной страницы и индексирует найденные страницы.
+     * Если для сайта сохранилась очередь прерванного обхода, он продолжается с неё.
+     * Метод блокируется до завершения обхода или его отмены через token.
+     *
+     * @param maxFetches доля сайта в общем лимите загрузок: не больше стольких страниц
+     *                   сайта одновременно загружается и обрабатывается
+     * @return количество успешно проиндексированных страниц
+     * @throws java.util.concurrent.CancellationException если обход отменён
+     */
+    public int crawl(Site site, CancellationToken token, int maxFetches) throws IOException {
+        token.throwIfCancelled();
+        String startUrl = SiteCrawlTask.normalizeUrl(site.getUrl());
+        String host = SiteCrawlTask.hostOf(site.getUrl());
+        if (startUrl == null || host == null) {
+            throw new IllegalArgumentException("Некорректный URL сайта: " + site.getUrl());
+        }
+
+        Path frontierDir = Paths.get(crawlerSettings.getFrontierDir(), "site-" + site.getId());
+        CrawlFrontier frontier = CrawlFrontier.open(frontierDir);
+        if (frontier.isResumed() && frontier.isEmpty()) {
+            // Очередь завершённого обхода: начинаем заново
+            frontier.close();
+            CrawlFrontier.delete(frontierDir);
+            frontier = CrawlFrontier.open(frontierDir);
+        }
+
+        // Запрещённые robots.txt пути отбрасываются до постановки в очередь
+        RobotsRules robots = siteDiscoveryService.loadRobots(site.getUrl());
+
+        CrawlContext context = new CrawlContext(site, host, crawlerSettings.getMaxDepth(),
+                crawlerSettings.getMaxPagesPerSite(), maxFetches, frontier,
+                crawlerSettings.getVisitedFalsePositiveRate(), token, robots);
+        Runnable onCancel = context::cancel;
+        boolean completed = false;
+        try {
+            token.register(onCancel);
+            indexingProgressService.crawlStarted(site, context);
+            if (frontier.isResumed()) {
+                context.restoreVisited();
+                logger.info("Продолжение обхода сайта {}: в очереди {} URL, всего известно {}",
+                        site.getUrl(), frontier.size(), context.getScheduledPages());
+            } else {
+                if (context.isAllowed(startUrl) && context.tryVisit(startUrl)) {
+                    context.enqueue(startUrl, 0);
+                }
+                seedFromSitemaps(context, robots);
+                logger.info("Начат обход сайта {} (глубина до {}, страниц до {}, в очереди {} URL)",
+                        site.getUrl(), crawlerSettings.getMaxDepth(), crawlerSettings.getMaxPagesPerSite(),
+                        frontier.size());
+            }
+
+            dispatch(context);
+            context.getCompletion().join();
+            completed = true;
+        } finally {
+            token.unregister(onCancel);
+            if (!completed) {
+                // Ошибка могла завершить обход при выполняющихся задачах: они прерываются,
+                // и очередь закрывается только после того, как все они вернут свои записи
+                context.cancel();
+                context.awaitIdle();
+            }
+            indexingProgressService.crawlFinished(site, context);
+            frontier.close();
+            if (completed) {
+                CrawlFrontier.delete(frontierDir);
+            }
+        }
+        logger.info("Обход сайта {} завершён: проиндексировано {}, ошибок {}, фильтр посещённых URL: {} КБ вне heap",
+                site.getUrl(), context.getIndexedPages(), context.getFailedPages(), context.getVisited().offHeapBytes() / 1024);
+
+        if (context.getIndexedPages() == 0) {
+            throw new IllegalStateException("Не удалось проиндексировать ни одной страницы сайта " + site.getUrl());
+        }
+        return context.getIndexedPages();
+    }
+
+    /**
+     * Добавляет в очередь URL из sitemap сайта в порядке убывания приоритета.
+     * Они получают глубину 1, как ссылки с главной страницы.
+     */
+    private void seedFromSitemaps(CrawlContext context, RobotsRules robots) throws IOException {
+        int limit = crawlerSettings.getMaxPagesPerSite() - context.getScheduledPages();
+        List<String> urls = siteDiscoveryService.loadSitemapUrls(
+                context.getSite().getUrl(), context.getHost(), robots, limit);
+        for (String url : urls) {
+            if (context.tryVisit(url)) {
+                context.enqueue(url, Math.min(1, crawlerSettings.getMaxDepth()));
+            }
+        }
+    }
+
+    /**
+     * Добавляет найденный URL в очередь обхода.
+     */
+    void schedule(CrawlContext context, String url, int depth) {
+        try {
+            context.enqueue(url, depth);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Ошибка записи в очередь обхода: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Освобождает слот завершённой задачи и запускает следующие URL из очереди.
+     */
+    void finish(CrawlContext context, CrawlFrontier.Entry entry) {
+        context.taskFinished(entry);
+        dispatch(context);
+    }
+
+    /**
+     * Запускает загрузку URL из очереди, пока есть свободные слоты.
+     * Если очередь пуста и задач не осталось, обход завершается.
+     */
+    private void dispatch(CrawlContext context) {
+        try {
+            CrawlFrontier.Entry entry;
+            while ((entry = context.nextTask()) != null) {
+                startFetch(context, entry);
+            }
+        } catch (IOException e) {
+            logger.error("Ошибка чтения очереди обхода сайта {}: {}", context.getSite().getUrl(), e.getMessage(), e);
+            context.getCompletion().completeExceptionally(e);
+        }
+        context.completeIfIdle();
+    }
+
+    /**
+     * Загружает страницу в FetchExecutor. После получения документа его обработка
+     * передаётся в ForkJoinPool, чтобы поток загрузки сразу освобождался.
+     */
+    private void startFetch(CrawlContext context, CrawlFrontier.Entry entry) {
+        CompletableFuture<FetchResult> fetch = retryScheduler.execute("Загрузка " + entry.getUrl(),
+                () -> fetchExecutor.submit(() -> pageService.fetchPage(entry.getUrl(), context.getSite(), context.getToken())),
+                RetryScheduler::isTransientFetchError, context.getToken());
+        context.fetchStarted(fetch);
+        fetch.whenComplete((result, error) -> {
+            if (error != null) {
+                if (!context.isCancelled()) {
+                    context.incrementFailedPages();
+                    logger.warn("Не удалось загрузить страницу {}: {}", entry.getUrl(), error.getMessage());
+                }
+                finish(context, entry);
+                return;
+            }
+            process(context, entry, result);
+        });
+    }
+
+    /**
+     * Сохраняет и индексирует загруженную страницу в ForkJoinPool, повторяя при временных ошибках БД.
+     */
+    private void process(CrawlContext context, CrawlFrontier.Entry entry, FetchResult result) {
+        SiteCrawlTask task = new SiteCrawlTask(this, pageService, context, entry, result);
+        retryScheduler.execute("Сохранение " + entry.getUrl(),
+                () -> CompletableFuture.runAsync(task, pool),
+                RetryScheduler::isTransientPersistError, context.getToken())
+                .whenComplete((ignored, error) -> {
+                    if (error instanceof RejectedExecutionException) {
+                        logger.warn("Обработка страницы {} отклонена: пул остановлен", entry.getUrl());
+                    } else if (error != null && !context.isCancelled()) {
+                        context.incrementFailedPages();
+                        logger.warn("Не удалось проиндексировать страницу {}: {}", result.getUrl(), error.getMessage());
+                    }
+                    finish(context, entry);
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+}
@@ -0,0 +1,247 @@
+package searchengine.services;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import searchengine.config.CrawlerSettings;
+import searchengine.model.FetchResponse;
+
+/**
+ * Загрузка robots.txt и sitemap.xml сайта перед обходом.
+ *
+ * robots.txt читается построчно, sitemap - потоковым XML-парсером, поэтому даже
+ * многомегабайтные файлы не загружаются в память целиком. Поддерживаются индексы
+ * sitemap и сжатые gzip файлы. Из найденных URL отбираются страницы с наибольшим
+ * приоритетом (priority, затем lastmod): в памяти хранится не больше limit записей.
+ */
+@Service
+public class SiteDiscoveryService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SiteDiscoveryService.class);
+
+    // Ограничение на число файлов sitemap, читаемых через индексы
+    private static final int MAX_SITEMAP_FILES = 100;
+
+    private final ConnectionService connectionService;
+    private final CrawlerSettings crawlerSettings;
+    private final XMLInputFactory xmlInputFactory;
+
+    @Autowired
+    public SiteDiscoveryService(ConnectionService connectionService, CrawlerSettings crawlerSettings) {
+        this.connectionService = connectionService;
+        this.crawlerSettings = crawlerSettings;
+        this.xmlInputFactory = XMLInputFactory.newFactory();
+        // Внешние сущности и DTD в sitemap не нужны и небезопасны
+        xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    /**
+     * Загружает robots.txt сайта. Если файл отсутствует, недоступен или учёт
+     * robots.txt отключён в настройках, возвращаются правила, разрешающие всё.
+     */
+    public RobotsRules loadRobots(String siteUrl) {
+        if (!crawlerSettings.isRespectRobotsTxt()) {
+            return RobotsRules.allowAll();
+        }
+        String robotsUrl = rootOf(siteUrl) + "/robots.txt";
+        try {
+            FetchResponse response = connectionService.fetchRaw(robotsUrl);
+            if (response.getStatusCode() != 200) {
+                logger.info("robots.txt не найден ({}): {}", response.getStatusCode(), robotsUrl);
+                return RobotsRules.allowAll();
+            }
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(response.bodyStream(), StandardCharsets.UTF_8))) {
+                RobotsRules rules = RobotsRules.parse(reader);
+                logger.info("Загружен robots.txt сайта {}, sitemap: {}", siteUrl, rules.getSitemaps().size());
+                return rules;
+            }
+        } catch (IOException e) {
+            logger.warn("Не удалось загрузить {}: {}", robotsUrl, e.getMessage());
+            return RobotsRules.allowAll();
+        }
+    }
+
+    /**
+     * Читает sitemap сайта (указанные в robots.txt или /sitemap.xml) и возвращает
+     * до limit URL того же хоста, разрешённых robots.txt, в порядке убывания приоритета.
+     */
+    public List<String> loadSitemapUrls(String siteUrl, String host, RobotsRules rules, int limit) {
+        if (!crawlerSettings.isUseSitemaps() || limit <= 0) {
+            return List.of();
+        }
+        Deque<String> pending = new ArrayDeque<>(rules.getSitemaps());
+        if (pending.isEmpty()) {
+            pending.add(rootOf(siteUrl) + "/sitemap.xml");
+        }
+
+        PriorityQueue<SitemapEntry> best = new PriorityQueue<>(SitemapEntry.ORDER);
+        Set<String> seenSitemaps = new HashSet<>();
+        int[] scanned = new int[1];
+        while (!pending.isEmpty() && seenSitemaps.size() < MAX_SITEMAP_FILES
+                && scanned[0] < crawlerSettings.getMaxSitemapUrls()) {
+            String sitemapUrl = pending.poll();
+            if (!seenSitemaps.add(sitemapUrl)) {
+                continue;
+            }
+            try {
+                readSitemap(sitemapUrl, pending, entry -> {
+                    scanned[0]++;
+                    String url = SiteCrawlTask.normalizeUrl(entry.url);
+                    if (url != null && SiteCrawlTask.isSameHost(url, host) && rules.isAllowed(url)) {
+                        entry.url = url;
+                        best.add(entry);
+                        if (best.size() > limit) {
+                            best.poll();
+                        }
+                    }
+                    return scanned[0] < crawlerSettings.getMaxSitemapUrls();
+                });
+            } catch (IOException | XMLStreamException e) {
+                logger.warn("Не удалось прочитать sitemap {}: {}", sitemapUrl, e.getMessage());
+            }
+        }
+
+        List<SitemapEntry> entries = new ArrayList<>(best);
+        entries.sort(SitemapEntry.ORDER.reversed());
+        List<String> urls = new ArrayList<>(entries.size());
+        for (SitemapEntry entry : entries) {
+            urls.add(entry.url);
+        }
+        logger.info("Sitemap сайта {}: просмотрено URL {}, отобрано {}", siteUrl, scanned[0], urls.size());
+        return urls;
+    }
+
+    /**
+     * Потоково читает один файл sitemap. Ссылки на вложенные sitemap из индекса
+     * добавляются в pending, URL страниц передаются в consumer; чтение прекращается,
+     * когда consumer возвращает false.
+     */
+    private void readSitemap(String sitemapUrl, Deque<String> pending, Predicate<SitemapEntry> consumer)
+            throws IOException, XMLStreamException {
+        FetchResponse response = connectionService.fetchRaw(sitemapUrl);
+        if (response.getStatusCode() != 200) {
+            logger.info("Sitemap не найден ({}): {}", response.getStatusCode(), sitemapUrl);
+            return;
+        }
+        try (InputStream body = decompress(new BufferedInputStream(response.bodyStream()))) {
+            XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(body);
+            try {
+                boolean index = false;
+                SitemapEntry entry = null;
+                String element = null;
+                while (reader.hasNext()) {
+                    int event = reader.next();
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        element = reader.getLocalName();
+                        if (element.equals("sitemapindex")) {
+                            index = true;
+                        } else if (element.equals("url") || element.equals("sitemap")) {
+                            entry = new SitemapEntry();
+                        } else if (entry != null && isSitemapField(reader, element)) {
+                            String text = reader.getElementText().trim();
+                            if (element.equals("loc")) {
+                                entry.url = text;
+                            } else if (element.equals("priority")) {
+                                entry.priority = parsePriority(text);
+                            } else {
+                                entry.lastModified = text;
+                            }
+                        }
+                    } else if (event == XMLStreamConstants.END_ELEMENT) {
+                        String name = reader.getLocalName();
+                        if ((name.equals("url") || name.equals("sitemap")) && entry != null && entry.url != null) {
+                            if (index) {
+                                pending.add(entry.url);
+                            } else if (!consumer.test(entry)) {
+                                return;
+                            }
+                            entry = null;
+                        }
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * Поля записи sitemap без префикса пространства имён: расширения вроде image:loc пропускаются.
+     */
+    private static boolean isSitemapField(XMLStreamReader reader, String element) {
+        String prefix = reader.getPrefix();
+        return (prefix == null || prefix.isEmpty())
+                && (element.equals("loc") || element.equals("priority") || element.equals("lastmod"));
+    }
+
+    /**
+     * Распаковывает gzip, определяя сжатие по сигнатуре, а не по расширению файла.
+     */
+    private static InputStream decompress(BufferedInputStream body) throws IOException {
+        body.mark(2);
+        int first = body.read();
+        int second = body.read();
+        body.reset();
+        if (first == 0x1f && second == 0x8b) {
+            return new GZIPInputStream(body);
+        }
+        return body;
+    }
+
+    private static double parsePriority(String text) {
+        try {
+            return Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            return SitemapEntry.DEFAULT_PRIORITY;
+        }
+    }
+
+    private static String rootOf(String siteUrl) {
+        String url = siteUrl.endsWith("/") ? siteUrl.substring(0, siteUrl.length() - 1) : siteUrl;
+        int pathStart = url.indexOf('/', url.indexOf("//") + 2);
+        return pathStart > 0 ? url.substring(0, pathStart) : url;
+    }
+
+    /**
+     * Запись sitemap: URL, приоритет и дата изменения.
+     */
+    private static final class SitemapEntry {
+
+        static final double DEFAULT_PRIORITY = 0.5;
+
+        // Сначала меньший приоритет, затем более старая дата - такие записи вытесняются первыми
+        static final Comparator<SitemapEntry> ORDER = Comparator
+                .comparingDouble((SitemapEntry entry) -> entry.priority)
+                .thenComparing(entry -> entry.lastModified == null ? "" : entry.lastModified);
+
+        String url;
+        double priority = DEFAULT_PRIORITY;
+        String lastModified;
+    }
+}
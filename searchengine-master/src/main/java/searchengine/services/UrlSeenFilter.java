@@ -0,0 +1,298 @@
+package searchengine.services;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Множество URL, уже встреченных при обходе сайта, для больших сайтов.
+ *
+ * Основная структура - масштабируемый фильтр Блума по 64-битным хэшам URL. Его битовые
+ * массивы размещены вне heap (ByteBuffer.allocateDirect): когда текущий слой заполняется,
+ * добавляется новый, вдвое больший, с вдвое меньшей долей ложных срабатываний, поэтому
+ * суммарная доля ложных срабатываний не превышает заданной.
+ *
+ * Фильтр может ошибочно ответить "уже встречался". Такие ответы перепроверяются:
+ * сначала по точному множеству хэшей URL, которые стоят в очереди, но ещё не сохранены
+ * в базе (тоже вне heap), затем точной проверкой по записям текущего обхода - журналу
+ * CrawlFrontier. Таблица page для этого не подходит: в ней есть страницы прошлых обходов,
+ * которые в текущем обходе ещё нужно загрузить. Если URL нет ни там, ни там,
+ * срабатывание было ложным, и URL принимается как новый.
+ *
+ * При доле ложных срабатываний 0.1% слои фильтра на миллион URL занимают около 4.7 МБ вне heap,
+ * множество ожидающих хэшей - до 16 байт на URL в очереди; HashSet&lt;String&gt; с теми же URL
+ * занимал бы порядка 150 МБ heap.
+ */
+public class UrlSeenFilter {
+
+    private static final int INITIAL_CAPACITY = 1 << 16;
+    private static final double TIGHTENING_RATIO = 0.5;
+
+    private final double falsePositiveRate;
+    private final Predicate<String> seenCheck;
+    private final List<BloomLayer> layers = new ArrayList<>();
+    private final OffHeapLongSet pending = new OffHeapLongSet(INITIAL_CAPACITY);
+
+    /**
+     * @param falsePositiveRate допустимая доля ложных срабатываний фильтра
+     * @param seenCheck         точная проверка, встречался ли URL в текущем обходе
+     */
+    public UrlSeenFilter(double falsePositiveRate, Predicate<String> seenCheck) {
+        this.falsePositiveRate = falsePositiveRate;
+        this.seenCheck = seenCheck;
+        addLayer();
+    }
+
+    /**
+     * Отмечает URL как встреченный.
+     *
+     * @return true, если URL встретился впервые
+     */
+    public boolean add(String url) {
+        long hash = hash64(url);
+        synchronized (this) {
+            if (!mightContain(hash)) {
+                put(hash);
+                pending.add(hash);
+                return true;
+            }
+        }
+        // Возможное ложное срабатывание фильтра: перепроверяем точно
+        if (pending.contains(hash) || seenCheck.test(url)) {
+            return false;
+        }
+        return pending.add(hash);
+    }
+
+    /**
+     * Восстанавливает URL, встреченный до перезапуска, без проверок.
+     *
+     * @param queued true, если URL ещё ожидает загрузки
+     */
+    public synchronized void restore(String url, boolean queued) {
+        long hash = hash64(url);
+        if (!mightContain(hash)) {
+            put(hash);
+        }
+        if (queued) {
+            pending.add(hash);
+        }
+    }
+
+    /**
+     * Отмечает, что страница с данным URL сохранена в базе и больше не требует точного учёта в памяти:
+     * её URL уже записан в журнал очереди, по которому работает точная проверка.
+     */
+    public void markIndexed(String url) {
+        pending.remove(hash64(url));
+    }
+
+    /**
+     * Объём памяти вне heap, занятой фильтром и множеством ожидающих URL, в байтах.
+     */
+    public synchronized long offHeapBytes() {
+        long bytes = pending.offHeapBytes();
+        for (BloomLayer layer : layers) {
+            bytes += layer.offHeapBytes();
+        }
+        return bytes;
+    }
+
+    private boolean mightContain(long hash) {
+        for (BloomLayer layer : layers) {
+            if (layer.mightContain(hash)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void put(long hash) {
+        BloomLayer last = layers.get(layers.size() - 1);
+        if (last.isFull()) {
+            last = addLayer();
+        }
+        last.put(hash);
+    }
+
+    private BloomLayer addLayer() {
+        int index = layers.size();
+        long capacity = (long) INITIAL_CAPACITY << index;
+        double rate = falsePositiveRate * (1 - TIGHTENING_RATIO) * Math.pow(TIGHTENING_RATIO, index);
+        BloomLayer layer = new BloomLayer(capacity, rate);
+        layers.add(layer);
+        return layer;
+    }
+
+    /**
+     * 64-битный хэш строки: FNV-1a по символам с финальным перемешиванием MurmurHash3.
+     */
+    static long hash64(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Один слой фильтра Блума с битовым массивом вне heap.
+     * Номера битов вычисляются двойным хэшированием из одного 64-битного хэша.
+     */
+    private static final class BloomLayer {
+
+        private final LongBuffer bits;
+        private final long bitCount;
+        private final int hashCount;
+        private final long capacity;
+        private long size;
+
+        BloomLayer(long capacity, double falsePositiveRate) {
+            this.capacity = capacity;
+            long m = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            int words = (int) Math.min(Integer.MAX_VALUE / Long.BYTES, (m + 63) / 64);
+            this.bitCount = (long) words * 64;
+            this.hashCount = Math.max(1, (int) Math.round((double) bitCount / capacity * Math.log(2)));
+            this.bits = ByteBuffer.allocateDirect(words * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+        }
+
+        boolean mightContain(long hash) {
+            long step = mix(hash) | 1;
+            for (int i = 0; i < hashCount; i++) {
+                long bit = Math.floorMod(hash + i * step, bitCount);
+                if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void put(long hash) {
+            long step = mix(hash) | 1;
+            for (int i = 0; i < hashCount; i++) {
+                long bit = Math.floorMod(hash + i * step, bitCount);
+                int word = (int) (bit >>> 6);
+                bits.put(word, bits.get(word) | (1L << bit));
+            }
+            size++;
+        }
+
+        boolean isFull() {
+            return size >= capacity;
+        }
+
+        long offHeapBytes() {
+            return (long) bits.capacity() * Long.BYTES;
+        }
+    }
+
+    /**
+     * Множество 64-битных значений с открытой адресацией в памяти вне heap.
+     * Значение 0 зарезервировано под пустую ячейку и заменяется на 1.
+     */
+    private static final class OffHeapLongSet {
+
+        private static final double MAX_LOAD = 0.5;
+
+        private LongBuffer table;
+        private int mask;
+        private int size;
+
+        OffHeapLongSet(int initialCapacity) {
+            allocate(Integer.highestOneBit(Math.max(16, initialCapacity) - 1) << 1);
+        }
+
+        synchronized boolean add(long value) {
+            value = value == 0 ? 1 : value;
+            if (size + 1 > (mask + 1) * MAX_LOAD) {
+                resize();
+            }
+            int slot = (int) mix(value) & mask;
+            long current;
+            while ((current = table.get(slot)) != 0) {
+                if (current == value) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            table.put(slot, value);
+            size++;
+            return true;
+        }
+
+        synchronized boolean contains(long value) {
+            value = value == 0 ? 1 : value;
+            int slot = (int) mix(value) & mask;
+            long current;
+            while ((current = table.get(slot)) != 0) {
+                if (current == value) {
+                    return true;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return false;
+        }
+
+        synchronized void remove(long value) {
+            value = value == 0 ? 1 : value;
+            int slot = (int) mix(value) & mask;
+            long current;
+            while ((current = table.get(slot)) != value) {
+                if (current == 0) {
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            // Удаление со сдвигом назад, чтобы не оставлять разрывов в цепочках проб
+            int hole = slot;
+            int next = (hole + 1) & mask;
+            while ((current = table.get(next)) != 0) {
+                int home = (int) mix(current) & mask;
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    table.put(hole, current);
+                    hole = next;
+                }
+                next = (next + 1) & mask;
+            }
+            table.put(hole, 0);
+            size--;
+        }
+
+        synchronized long offHeapBytes() {
+            return (long) table.capacity() * Long.BYTES;
+        }
+
+        private void resize() {
+            LongBuffer old = table;
+            allocate((mask + 1) << 1);
+            for (int i = 0; i < old.capacity(); i++) {
+                long value = old.get(i);
+                if (value != 0) {
+                    int slot = (int) mix(value) & mask;
+                    while (table.get(slot) != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    table.put(slot, value);
+                }
+            }
+        }
+
+        private void allocate(int capacity) {
+            table = ByteBuffer.allocateDirect(capacity * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+            mask = capacity - 1;
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package searchengine.services;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+import searchengine.model.FetchResponse;
+
+/**
+ * Чтение записей WARC из несжатых (.warc) и сжатых по записям (.warc.gz) файлов.
+ *
+ * Запись читается позиционным чтением канала, поэтому один открытый файл можно
+ * читать из многих потоков одновременно. В .warc.gz каждая запись должна быть
+ * отдельным членом gzip; смещение следующей записи вычисляется по числу
+ * прочитанных распаковщиком байтов.
+ */
+public final class WarcReader {
+
+    private WarcReader() {
+    }
+
+    /**
+     * Запись WARC: заголовки, содержимое и смещение следующей записи в файле.
+     */
+    public static final class Record {
+
+        private final Map<String, String> headers;
+        private final byte[] content;
+        private final long nextOffset;
+
+        Record(Map<String, String> headers, byte[] content, long nextOffset) {
+            this.headers = headers;
+            this.content = content;
+            this.nextOffset = nextOffset;
+        }
+
+        public String header(String name) {
+            return headers.get(name);
+        }
+
+        public byte[] getContent() {
+            return content;
+        }
+
+        public long getNextOffset() {
+            return nextOffset;
+        }
+    }
+
+    /**
+     * Читает запись, начинающуюся со смещения offset, или возвращает null в конце файла.
+     */
+    public static Record read(FileChannel channel, long offset, boolean gzip) throws IOException {
+        InputStream in = new BufferedInputStream(new ChannelInputStream(channel, offset), 64 * 1024);
+        if (!gzip) {
+            long[] consumed = new long[1];
+            Record record = readRecord(in, consumed);
+            if (record == null) {
+                return null;
+            }
+            return new Record(record.headers, record.content, offset + consumed[0]);
+        }
+
+        long headerLength = skipGzipHeader(in);
+        if (headerLength < 0) {
+            return null;
+        }
+        Inflater inflater = new Inflater(true);
+        try {
+            InflaterInputStream member = new InflaterInputStream(in, inflater, 64 * 1024);
+            Record record = readRecord(member, new long[1]);
+            if (record == null) {
+                throw new EOFException("Пустой член gzip по смещению " + offset);
+            }
+            // Остаток члена (завершающие CRLF) пропускается, чтобы узнать его длину
+            byte[] skip = new byte[512];
+            while (member.read(skip) >= 0) {
+                // пропуск
+            }
+            long next = offset + headerLength + inflater.getBytesRead() + 8;
+            return new Record(record.headers, record.content, next);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Разбирает содержимое записи response как HTTP-ответ. Тело, сохранённое другими
+     * программами со сжатием или chunked-кодированием, декодируется.
+     */
+    public static FetchResponse toResponse(String url, Record record) throws IOException {
+        byte[] content = record.getContent();
+        int headEnd = indexOf(content, "\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+        int bodyStart;
+        if (headEnd >= 0) {
+            bodyStart = headEnd + 4;
+        } else {
+            headEnd = indexOf(content, "\n\n".getBytes(StandardCharsets.US_ASCII));
+            if (headEnd < 0) {
+                throw new IOException("Запись WARC для " + url + " не содержит HTTP-ответа");
+            }
+            bodyStart = headEnd + 2;
+        }
+        String[] lines = new String(content, 0, headEnd, StandardCharsets.UTF_8).split("\r?\n");
+        String[] status = lines[0].trim().split(" ", 3);
+        if (status.length < 2 || !status[0].startsWith("HTTP/")) {
+            throw new IOException("Некорректная статусная строка HTTP для " + url + ": " + lines[0]);
+        }
+        int statusCode = Integer.parseInt(status[1]);
+        String statusMessage = status.length > 2 ? status[2] : "";
+
+        Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (int i = 1; i < lines.length; i++) {
+            int colon = lines[i].indexOf(':');
+            if (colon > 0) {
+                headers.merge(lines[i].substring(0, colon).trim(), lines[i].substring(colon + 1).trim(),
+                        (a, b) -> a + ", " + b);
+            }
+        }
+
+        byte[] body = new byte[content.length - bodyStart];
+        System.arraycopy(content, bodyStart, body, 0, body.length);
+        String transferEncoding = headers.remove("Transfer-Encoding");
+        if (transferEncoding != null && transferEncoding.toLowerCase(Locale.ROOT).contains("chunked")) {
+            body = dechunk(body);
+        }
+        String contentEncoding = headers.remove("Content-Encoding");
+        if (contentEncoding != null) {
+            String encoding = contentEncoding.trim().toLowerCase(Locale.ROOT);
+            if (encoding.equals("gzip") || encoding.equals("x-gzip")) {
+                try (InputStream gzip = new GZIPInputStream(new ByteArrayInputStream(body))) {
+                    body = gzip.readAllBytes();
+                }
+            } else if (encoding.equals("deflate")) {
+                try (InputStream deflate = new InflaterInputStream(new ByteArrayInputStream(body))) {
+                    body = deflate.readAllBytes();
+                }
+            }
+        }
+        headers.put("Content-Length", String.valueOf(body.length));
+
+        String finalUrl = record.header(WarcWriter.FINAL_URI_HEADER);
+        return new FetchResponse(url, finalUrl != null ? finalUrl : url, statusCode, statusMessage, headers, body);
+    }
+
+    /**
+     * Читает заголовки и содержимое записи; consumed[0] - число прочитанных байтов.
+     */
+    private static Record readRecord(InputStream in, long[] consumed) throws IOException {
+        String line;
+        // Между записями допускаются пустые строки (завершающие CRLF предыдущей записи)
+        do {
+            line = readLine(in, consumed);
+            if (line == null) {
+                return null;
+            }
+        } while (line.isEmpty());
+        if (!line.startsWith("WARC/")) {
+            throw new IOException("Ожидалось начало записи WARC, прочитано: " + line);
+        }
+        Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        while ((line = readLine(in, consumed)) != null && !line.isEmpty()) {
+            int colon = line.indexOf(':');
+            if (colon > 0) {
+                headers.put(line.substring(0, colon).trim(), line.substring(colon + 1).trim());
+            }
+        }
+        String length = headers.get("Content-Length");
+        if (length == null) {
+            throw new IOException("Запись WARC без Content-Length");
+        }
+        int contentLength = Integer.parseInt(length.trim());
+        byte[] content = in.readNBytes(contentLength);
+        if (content.length != contentLength) {
+            throw new EOFException("Запись WARC обрезана: " + content.length + " из " + contentLength + " байт");
+        }
+        consumed[0] += contentLength;
+        return new Record(headers, content, -1);
+    }
+
+    /**
+     * Строка до LF (CR в конце отбрасывается) или null в конце потока.
+     */
+    private static String readLine(InputStream in, long[] consumed) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+        int b;
+        while ((b = in.read()) >= 0) {
+            consumed[0]++;
+            if (b == '\n') {
+                break;
+            }
+            line.write(b);
+        }
+        if (b < 0 && line.size() == 0) {
+            return null;
+        }
+        byte[] bytes = line.toByteArray();
+        int length = bytes.length > 0 && bytes[bytes.length - 1] == '\r' ? bytes.length - 1 : bytes.length;
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Пропускает заголовок члена gzip (RFC 1952) и возвращает его длину или -1 в конце файла.
+     */
+    private static long skipGzipHeader(InputStream in) throws IOException {
+        int id1 = in.read();
+        if (id1 < 0) {
+            return -1;
+        }
+        if (id1 != 0x1f || in.read() != 0x8b || in.read() != 8) {
+            throw new ZipException("Ожидался член gzip с записью WARC");
+        }
+        int flags = in.read();
+        long length = 4;
+        length += skipFully(in, 6);
+        if ((flags & 4) != 0) {
+            int extraLength = in.read() | (in.read() << 8);
+            length += 2 + skipFully(in, extraLength);
+        }
+        if ((flags & 8) != 0) {
+            length += skipZeroTerminated(in);
+        }
+        if ((flags & 16) != 0) {
+            length += skipZeroTerminated(in);
+        }
+        if ((flags & 2) != 0) {
+            length += skipFully(in, 2);
+        }
+        return length;
+    }
+
+    private static long skipFully(InputStream in, int count) throws IOException {
+        if (in.readNBytes(count).length != count) {
+            throw new EOFException("Заголовок gzip обрезан");
+        }
+        return count;
+    }
+
+    private static long skipZeroTerminated(InputStream in) throws IOException {
+        long length = 0;
+        int b;
+        do {
+            b = in.read();
+            if (b < 0) {
+                throw new EOFException("Заголовок gzip обрезан");
+            }
+            length++;
+        } while (b != 0);
+        return length;
+    }
+
+    private static byte[] dechunk(byte[] body) throws IOException {
+        InputStream in = new ByteArrayInputStream(body);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length);
+        long[] ignored = new long[1];
+        String line;
+        while ((line = readLine(in, ignored)) != null) {
+            int semicolon = line.indexOf(';');
+            String size = (semicolon >= 0 ? line.substring(0, semicolon) : line).trim();
+            if (size.isEmpty()) {
+                continue;
+            }
+            int chunkSize = Integer.parseInt(size, 16);
+            if (chunkSize == 0) {
+                break;
+            }
+            out.write(in.readNBytes(chunkSize));
+            readLine(in, ignored);
+        }
+        return out.toByteArray();
+    }
+
+    private static int indexOf(byte[] data, byte[] pattern) {
+        outer:
+        for (int i = 0; i <= data.length - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (data[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Поток над каналом с собственной позицией: чтение не меняет позицию канала.
+     */
+    private static final class ChannelInputStream extends InputStream {
+
+        private final FileChannel channel;
+        private long position;
+
+        ChannelInputStream(FileChannel channel, long position) {
+            this.channel = channel;
+            this.position = position;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            int read = channel.read(ByteBuffer.wrap(buffer, offset, length), position);
+            if (read > 0) {
+                position += read;
+            }
+            return read;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package searchengine.services;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import searchengine.model.FetchResponse;
+
+/**
+ * Загрузка из сети с записью каждого полученного ответа в WARC для последующего
+ * воспроизведения через WarcReplayFetcher. Записываются ответы с любым HTTP-кодом;
+ * сетевые ошибки (таймаут, отказ соединения) не записываются. Тело ответа читается
+ * в память целиком, в том числе для robots.txt и sitemap.
+ */
+public class WarcRecordingFetcher implements Fetcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(WarcRecordingFetcher.class);
+
+    private final Fetcher delegate;
+    private final WarcWriter writer;
+
+    public WarcRecordingFetcher(Fetcher delegate, WarcWriter writer) {
+        this.delegate = delegate;
+        this.writer = writer;
+    }
+
+    @Override
+    public FetchResponse fetch(String url, Map<String, String> headers, boolean stream) throws IOException {
+        FetchResponse response = delegate.fetch(url, headers, stream);
+        try {
+            writer.writeResponse(response);
+        } catch (IOException e) {
+            // Ошибка записи архива не должна прерывать обход
+            logger.error("Не удалось записать ответ {} в WARC: {}", url, e.getMessage());
+        }
+        return response;
+    }
+
+    @Override
+    public boolean isRemote() {
+        return delegate.isRemote();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            writer.close();
+        } finally {
+            delegate.close();
+        }
+    }
+}
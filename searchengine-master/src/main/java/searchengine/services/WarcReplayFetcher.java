@@ -0,0 +1,183 @@
+package searchengine.services;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import searchengine.model.FetchResponse;
+
+/**
+ * Воспроизведение ответов из WARC-файлов каталога без обращения к сети.
+ *
+ * При создании все файлы *.warc и *.warc.gz просматриваются по порядку имён,
+ * и для каждой записи response запоминается файл и смещение под записанным и
+ * нормализованным URL; при повторах URL действует последняя запись. При загрузке читается и распаковывается только
+ * нужная запись. Условные заголовки не учитываются: всегда отдаётся записанный
+ * ответ, поэтому повторные прогоны обрабатывают одинаковые данные.
+ * URL, которого нет в архиве, получает ответ 404.
+ */
+public class WarcReplayFetcher implements Fetcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(WarcReplayFetcher.class);
+
+    private final List<Archive> archives = new ArrayList<>();
+    private final Map<String, Location> index = new HashMap<>();
+    private volatile boolean closed;
+
+    public WarcReplayFetcher(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            throw new IllegalStateException("Каталог WARC для воспроизведения не найден: " + dir.toAbsolutePath());
+        }
+        List<Path> files;
+        try (Stream<Path> list = Files.list(dir)) {
+            files = list.filter(path -> {
+                String name = path.getFileName().toString();
+                return name.endsWith(".warc") || name.endsWith(".warc.gz");
+            }).sorted().toList();
+        }
+        long started = System.nanoTime();
+        try {
+            for (Path file : files) {
+                indexArchive(file);
+            }
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+        logger.info("Воспроизведение WARC из {}: файлов {}, URL {}, индекс построен за {} мс",
+                dir, files.size(), index.size(), (System.nanoTime() - started) / 1_000_000);
+    }
+
+    @Override
+    public FetchResponse fetch(String url, Map<String, String> headers, boolean stream) throws IOException {
+        Location location = index.get(url);
+        if (location == null) {
+            String normalized = SiteCrawlTask.normalizeUrl(url);
+            location = normalized != null ? index.get(normalized) : null;
+        }
+        if (location == null) {
+            logger.debug("URL нет в архиве WARC: {}", url);
+            return new FetchResponse(url, url, 404, "Not Found", Map.of(), new byte[0]);
+        }
+        Archive archive = location.archive;
+        WarcReader.Record record;
+        while (true) {
+            FileChannel channel = archive.channel;
+            try {
+                record = WarcReader.read(channel, location.offset, archive.gzip);
+                break;
+            } catch (ClosedByInterruptException e) {
+                // Прерывание при отмене загрузки закрывает канал для всех потоков
+                archive.reopen(channel);
+                throw new InterruptedIOException("Чтение " + url + " из WARC прервано");
+            } catch (ClosedChannelException e) {
+                if (closed) {
+                    throw e;
+                }
+                archive.reopen(channel);
+            }
+        }
+        if (record == null) {
+            throw new IOException("Запись " + url + " не найдена в " + archive.path + " по смещению " + location.offset);
+        }
+        return WarcReader.toResponse(url, record);
+    }
+
+    @Override
+    public boolean isRemote() {
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        for (Archive archive : archives) {
+            archive.channel.close();
+        }
+    }
+
+    private void indexArchive(Path file) throws IOException {
+        Archive archive = new Archive(file, FileChannel.open(file, StandardOpenOption.READ),
+                file.getFileName().toString().endsWith(".gz"));
+        archives.add(archive);
+        long offset = 0;
+        int responses = 0;
+        WarcReader.Record record;
+        while (true) {
+            try {
+                record = WarcReader.read(archive.channel, offset, archive.gzip);
+            } catch (EOFException e) {
+                // Последняя запись не дописана (обход был прерван во время записи)
+                logger.warn("Архив {} обрезан по смещению {}: {}", file, offset, e.getMessage());
+                break;
+            }
+            if (record == null) {
+                break;
+            }
+            String uri = record.header("WARC-Target-URI");
+            if ("response".equals(record.header("WARC-Type")) && uri != null) {
+                // Некоторые программы заключают URI в угловые скобки
+                if (uri.startsWith("<") && uri.endsWith(">")) {
+                    uri = uri.substring(1, uri.length() - 1);
+                }
+                Location location = new Location(archive, offset);
+                index.put(uri, location);
+                String normalized = SiteCrawlTask.normalizeUrl(uri);
+                if (normalized != null && !normalized.equals(uri)) {
+                    // Разные записанные URI одной страницы: по нормализованному тоже действует последняя запись
+                    index.put(normalized, location);
+                }
+                responses++;
+            }
+            offset = record.getNextOffset();
+        }
+        logger.debug("Архив {}: ответов {}", file, responses);
+    }
+
+    private static final class Archive {
+
+        private final Path path;
+        private final boolean gzip;
+        private volatile FileChannel channel;
+
+        Archive(Path path, FileChannel channel, boolean gzip) {
+            this.path = path;
+            this.channel = channel;
+            this.gzip = gzip;
+        }
+
+        /**
+         * Открывает файл заново, если канал stale ещё не заменён другим потоком.
+         */
+        synchronized void reopen(FileChannel stale) throws IOException {
+            if (channel == stale) {
+                channel = FileChannel.open(path, StandardOpenOption.READ);
+            }
+        }
+    }
+
+    private static final class Location {
+
+        private final Archive archive;
+        private final long offset;
+
+        Location(Archive archive, long offset) {
+            this.archive = archive;
+            this.offset = offset;
+        }
+    }
+}
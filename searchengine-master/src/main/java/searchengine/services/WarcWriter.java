@@ -0,0 +1,160 @@
+package searchengine.services;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import searchengine.model.FetchResponse;
+
+/**
+ * Запись HTTP-ответов в файлы WARC 1.1 (crawl-ДАТА-NNNNN.warc.gz).
+ *
+ * Каждая запись сжимается отдельным членом gzip, как принято для .warc.gz:
+ * файл можно читать с любой записи, а недописанная при сбое запись теряется одна.
+ * Тело сохраняется уже распакованным, поэтому заголовки Content-Encoding и
+ * Transfer-Encoding отбрасываются, а Content-Length пересчитывается.
+ * Файл сменяется новым по достижении MAX_FILE_SIZE.
+ */
+public final class WarcWriter implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(WarcWriter.class);
+
+    /** Нестандартное поле: URL после перенаправлений, если он отличается от запрошенного */
+    public static final String FINAL_URI_HEADER = "X-Final-URI";
+
+    private static final long MAX_FILE_SIZE = 1L << 30;
+    private static final String CRLF = "\r\n";
+    private static final DateTimeFormatter FILE_TIMESTAMP =
+            DateTimeFormatter.ofPattern("yyyyMMddHHmmss").withZone(ZoneOffset.UTC);
+
+    private final Path dir;
+    private final String prefix;
+    private OutputStream out;
+    private long fileSize;
+    private int fileNumber;
+
+    public WarcWriter(Path dir) throws IOException {
+        this.dir = dir;
+        this.prefix = "crawl-" + FILE_TIMESTAMP.format(Instant.now());
+        Files.createDirectories(dir);
+    }
+
+    /**
+     * Дописывает ответ записью WARC-Type: response. Тело ответа читается в память.
+     */
+    public void writeResponse(FetchResponse response) throws IOException {
+        byte[] http = httpBlock(response);
+        StringBuilder header = new StringBuilder();
+        header.append("WARC/1.1").append(CRLF);
+        header.append("WARC-Type: response").append(CRLF);
+        header.append("WARC-Record-ID: <urn:uuid:").append(UUID.randomUUID()).append('>').append(CRLF);
+        header.append("WARC-Date: ").append(Instant.now().truncatedTo(ChronoUnit.SECONDS)).append(CRLF);
+        header.append("WARC-Target-URI: ").append(response.getUrl()).append(CRLF);
+        if (!response.getFinalUrl().equals(response.getUrl())) {
+            header.append(FINAL_URI_HEADER).append(": ").append(response.getFinalUrl()).append(CRLF);
+        }
+        header.append("Content-Type: application/http;msgtype=response").append(CRLF);
+        header.append("Content-Length: ").append(http.length).append(CRLF);
+        header.append(CRLF);
+        append(gzipRecord(header.toString(), http));
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+    }
+
+    /**
+     * Сжатие выполняется в потоке загрузки, под блокировкой - только дозапись готовых байтов.
+     */
+    private synchronized void append(byte[] member) throws IOException {
+        if (out == null || (fileSize > 0 && fileSize + member.length > MAX_FILE_SIZE)) {
+            openNextFile();
+        }
+        out.write(member);
+        // Запись должна попасть в файл целиком, чтобы её можно было воспроизвести после сбоя
+        out.flush();
+        fileSize += member.length;
+    }
+
+    private void openNextFile() throws IOException {
+        close();
+        fileNumber++;
+        Path file = dir.resolve(String.format("%s-%05d.warc.gz", prefix, fileNumber));
+        out = new BufferedOutputStream(Files.newOutputStream(file,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE), 64 * 1024);
+        fileSize = 0;
+        logger.info("Запись ответов в WARC: {}", file);
+
+        String payload = "software: searchengine" + CRLF + "format: WARC File Format 1.1" + CRLF;
+        byte[] info = payload.getBytes(StandardCharsets.UTF_8);
+        String header = "WARC/1.1" + CRLF
+                + "WARC-Type: warcinfo" + CRLF
+                + "WARC-Record-ID: <urn:uuid:" + UUID.randomUUID() + '>' + CRLF
+                + "WARC-Date: " + Instant.now().truncatedTo(ChronoUnit.SECONDS) + CRLF
+                + "WARC-Filename: " + file.getFileName() + CRLF
+                + "Content-Type: application/warc-fields" + CRLF
+                + "Content-Length: " + info.length + CRLF
+                + CRLF;
+        byte[] member = gzipRecord(header, info);
+        out.write(member);
+        fileSize += member.length;
+    }
+
+    private static byte[] gzipRecord(String header, byte[] content) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(content.length / 4 + 512);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(buffer, 8192)) {
+            gzip.write(header.getBytes(StandardCharsets.UTF_8));
+            gzip.write(content);
+            gzip.write((CRLF + CRLF).getBytes(StandardCharsets.US_ASCII));
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * HTTP-ответ в виде статусной строки, заголовков и тела.
+     */
+    private static byte[] httpBlock(FetchResponse response) throws IOException {
+        byte[] body = response.bodyAsBytes();
+        StringBuilder head = new StringBuilder();
+        head.append("HTTP/1.1 ").append(response.getStatusCode());
+        if (response.getStatusMessage() != null && !response.getStatusMessage().isEmpty()) {
+            head.append(' ').append(response.getStatusMessage());
+        }
+        head.append(CRLF);
+        for (Map.Entry<String, String> header : response.getHeaders().entrySet()) {
+            String name = header.getKey();
+            if (name.equalsIgnoreCase("Content-Encoding") || name.equalsIgnoreCase("Transfer-Encoding")
+                    || name.equalsIgnoreCase("Content-Length")) {
+                continue;
+            }
+            head.append(name).append(": ").append(header.getValue().replace('\r', ' ').replace('\n', ' ')).append(CRLF);
+        }
+        head.append("Content-Length: ").append(body.length).append(CRLF);
+        head.append(CRLF);
+        byte[] headBytes = head.toString().getBytes(StandardCharsets.UTF_8);
+        byte[] block = new byte[headBytes.length + body.length];
+        System.arraycopy(headBytes, 0, block, 0, headBytes.length);
+        System.arraycopy(body, 0, block, headBytes.length, body.length);
+        return block;
+    }
+}
@@ -0,0 +1,153 @@
+package searchengine.services;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Разбиение текста на слова за один проход по кодовым точкам.
+ *
+ * Слово - последовательность букв (Character.isLetter), приведённых к нижнему
+ * регистру. Десятичные цифры внутри слова отбрасываются без разделения ("abc123def"
+ * даёт "abcdef"), как прежде делал replaceAll("\\d", ""); остальные символы разделяют
+ * слова. В отличие от split / replaceAll / matches не создаются промежуточные строки:
+ * слово собирается в переиспользуемом буфере, а при подсчёте строка создаётся только
+ * для первого вхождения слова в текст.
+ */
+public final class WordTokenizer {
+
+    private WordTokenizer() {
+    }
+
+    /**
+     * Передаёт consumer каждое слово не короче minLength букв (буква вне BMP - одна
+     * кодовая точка, хотя в буфере занимает два char). Передаётся общий буфер: он
+     * действителен только до возврата из consumer, для хранения нужен toString().
+     */
+    public static void forEachWord(CharSequence text, int minLength, Consumer<CharSequence> consumer) {
+        StringBuilder word = new StringBuilder(32);
+        int letters = 0;
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            char c = text.charAt(i);
+            int codePoint;
+            int width;
+            if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                codePoint = Character.toCodePoint(c, text.charAt(i + 1));
+                width = 2;
+            } else {
+                codePoint = c;
+                width = 1;
+            }
+            if (Character.isLetter(codePoint)) {
+                word.appendCodePoint(Character.toLowerCase(codePoint));
+                letters++;
+            } else if (Character.isDigit(codePoint)) {
+                // Цифра не разделяет слово, а пропускается
+            } else if (letters > 0) {
+                if (letters >= minLength) {
+                    consumer.accept(word);
+                }
+                word.setLength(0);
+                letters = 0;
+            }
+            i += width;
+        }
+        if (letters > 0 && letters >= minLength) {
+            consumer.accept(word);
+        }
+    }
+
+    /**
+     * Считает вхождения каждого слова не короче minLength букв.
+     */
+    public static Map<String, Integer> countWords(CharSequence text, int minLength) {
+        WordCounts counts = new WordCounts();
+        forEachWord(text, minLength, counts::add);
+        return counts.toMap();
+    }
+
+    /**
+     * Таблица с открытой адресацией, которая ищет слово по содержимому буфера,
+     * поэтому повторное вхождение слова не создаёт строку.
+     */
+    private static final class WordCounts {
+
+        private String[] words = new String[256];
+        private int[] hashes = new int[256];
+        private int[] counts = new int[256];
+        private int size;
+
+        void add(CharSequence word) {
+            int hash = hash(word);
+            int mask = words.length - 1;
+            int slot = hash & mask;
+            while (words[slot] != null) {
+                if (hashes[slot] == hash && contentEquals(words[slot], word)) {
+                    counts[slot]++;
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            words[slot] = word.toString();
+            hashes[slot] = hash;
+            counts[slot] = 1;
+            if (++size * 2 > words.length) {
+                grow();
+            }
+        }
+
+        Map<String, Integer> toMap() {
+            Map<String, Integer> map = new HashMap<>(size * 2);
+            for (int slot = 0; slot < words.length; slot++) {
+                if (words[slot] != null) {
+                    map.put(words[slot], counts[slot]);
+                }
+            }
+            return map;
+        }
+
+        private void grow() {
+            String[] oldWords = words;
+            int[] oldHashes = hashes;
+            int[] oldCounts = counts;
+            words = new String[oldWords.length * 2];
+            hashes = new int[words.length];
+            counts = new int[words.length];
+            int mask = words.length - 1;
+            for (int i = 0; i < oldWords.length; i++) {
+                if (oldWords[i] != null) {
+                    int slot = oldHashes[i] & mask;
+                    while (words[slot] != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    words[slot] = oldWords[i];
+                    hashes[slot] = oldHashes[i];
+                    counts[slot] = oldCounts[i];
+                }
+            }
+        }
+
+        private static int hash(CharSequence word) {
+            int hash = 0;
+            for (int i = 0; i < word.length(); i++) {
+                hash = 31 * hash + word.charAt(i);
+            }
+            // Перемешивание старших битов: индекс берётся из младших
+            return hash ^ (hash >>> 16);
+        }
+
+        private static boolean contentEquals(String stored, CharSequence word) {
+            if (stored.length() != word.length()) {
+                return false;
+            }
+            for (int i = 0; i < stored.length(); i++) {
+                if (stored.charAt(i) != word.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+-- Исходная схема: таблицы в том виде, в каком их создавал ddl-auto: update
+-- до появления хранилища содержимого, условных запросов и поиска дубликатов.
+-- На существующей базе эта миграция не выполняется (baseline-version: 1).
+
+CREATE TABLE IF NOT EXISTS site (
+    id          INT          NOT NULL AUTO_INCREMENT,
+    status      ENUM('INDEXING', 'INDEXED', 'FAILED') NOT NULL,
+    status_time DATETIME(6)  NOT NULL,
+    last_error  TEXT,
+    url         VARCHAR(255) NOT NULL,
+    name        VARCHAR(255) NOT NULL,
+    PRIMARY KEY (id)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
+
+CREATE TABLE IF NOT EXISTS page (
+    id      INT          NOT NULL AUTO_INCREMENT,
+    siteid  INT          NOT NULL,
+    path    TEXT         NOT NULL,
+    code    INT          NOT NULL,
+    content MEDIUMTEXT,
+    title   VARCHAR(255),
+    PRIMARY KEY (id),
+    CONSTRAINT fk_page_site FOREIGN KEY (siteid) REFERENCES site (id)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
+
+CREATE TABLE IF NOT EXISTS lemma (
+    id         INT          NOT NULL AUTO_INCREMENT,
+    siteid     INT,
+    lemma_text VARCHAR(255) NOT NULL,
+    frequency  INT,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_lemma_site FOREIGN KEY (siteid) REFERENCES site (id)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
+
+CREATE TABLE IF NOT EXISTS idx (
+    id         INT          NOT NULL AUTO_INCREMENT,
+    page_id    INT          NOT NULL,
+    lemma_id   INT          NOT NULL,
+    lemma      VARCHAR(255) NOT NULL,
+    idx        INT          NOT NULL,
+    rank_value FLOAT        NOT NULL,
+    PRIMARY KEY (id)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
+
+CREATE TABLE IF NOT EXISTS lemma_rank (
+    id      BIGINT       NOT NULL AUTO_INCREMENT,
+    `rank`  DOUBLE       NOT NULL,
+    page_id INT,
+    lemma   VARCHAR(255),
+    PRIMARY KEY (id),
+    CONSTRAINT fk_lemma_rank_page FOREIGN KEY (page_id) REFERENCES page (id)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
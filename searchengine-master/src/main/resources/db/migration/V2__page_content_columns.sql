@@ -0,0 +1,23 @@
+-- Столбцы страницы: расположение содержимого в файловом хранилище,
+-- ETag и Last-Modified для условных запросов, хэш содержимого,
+-- SimHash и ссылка на основную страницу для почти одинаковых страниц.
+
+-- MySQL не поддерживает ADD COLUMN IF NOT EXISTS, а в базе, которую создавал
+-- ddl-auto: update, часть столбцов уже может быть: добавляются только отсутствующие
+SET @ddl = (
+    SELECT CONCAT('ALTER TABLE page ', GROUP_CONCAT(CONCAT('ADD COLUMN ', c.definition) SEPARATOR ', '))
+    FROM (SELECT 'content_segment' AS name, 'content_segment INT' AS definition
+          UNION ALL SELECT 'content_offset', 'content_offset BIGINT'
+          UNION ALL SELECT 'content_length', 'content_length INT'
+          UNION ALL SELECT 'etag', 'etag VARCHAR(255)'
+          UNION ALL SELECT 'last_modified', 'last_modified VARCHAR(64)'
+          UNION ALL SELECT 'content_hash', 'content_hash VARCHAR(64)'
+          UNION ALL SELECT 'simhash', 'simhash BIGINT'
+          UNION ALL SELECT 'canonical_page_id', 'canonical_page_id INT') c
+    WHERE NOT EXISTS (SELECT 1 FROM information_schema.columns
+                      WHERE table_schema = DATABASE() AND table_name = 'page'
+                        AND column_name = c.name));
+SET @ddl = IFNULL(@ddl, 'DO 0');
+PREPARE statement FROM @ddl;
+EXECUTE statement;
+DEALLOCATE PREPARE statement;
@@ -0,0 +1,17 @@
+-- Сжатое содержимое страниц и словари сжатия сайтов.
+-- IF NOT EXISTS: в базе, которую создавал ddl-auto: update, таблицы уже могут быть.
+
+CREATE TABLE IF NOT EXISTS page_content (
+    page_id         INT        NOT NULL,
+    dictionary_id   INT,
+    original_length INT        NOT NULL,
+    data            MEDIUMBLOB NOT NULL,
+    PRIMARY KEY (page_id)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
+
+CREATE TABLE IF NOT EXISTS content_dictionary (
+    id      INT  NOT NULL AUTO_INCREMENT,
+    site_id INT  NOT NULL,
+    data    BLOB NOT NULL,
+    PRIMARY KEY (id)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
@@ -0,0 +1,93 @@
+-- Леммы уникальны в пределах сайта; индексы для поиска леммы по (сайт, текст),
+-- записей индекса по лемме и странице и страницы по (сайт, путь).
+
+-- Двоичное сравнение: "е" и "ё", "cafe" и "café" - разные леммы
+ALTER TABLE lemma MODIFY lemma_text VARCHAR(255) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin NOT NULL;
+
+-- Записи индекса без страницы в поиск не попадают и сайта не имеют
+DELETE i FROM idx i LEFT JOIN page p ON p.id = i.page_id WHERE p.id IS NULL;
+
+-- Прежний LemmaService искал лемму только по тексту, поэтому записи индекса страниц
+-- одного сайта могли ссылаться на лемму другого сайта (или на лемму без сайта).
+-- Недостающие леммы создаются на сайте страницы, записи переносятся на них
+CREATE TEMPORARY TABLE lemma_missing AS
+SELECT DISTINCT p.siteid, l.lemma_text
+FROM idx i
+JOIN page p ON p.id = i.page_id
+JOIN lemma l ON l.id = i.lemma_id
+WHERE (l.siteid IS NULL OR l.siteid <> p.siteid)
+  AND NOT EXISTS (SELECT 1 FROM lemma x WHERE x.siteid = p.siteid AND x.lemma_text = l.lemma_text);
+
+INSERT INTO lemma (siteid, lemma_text, frequency)
+SELECT siteid, lemma_text, 0 FROM lemma_missing;
+
+CREATE TEMPORARY TABLE idx_rehome AS
+SELECT i.id AS idx_id, MIN(x.id) AS lemma_id
+FROM idx i
+JOIN page p ON p.id = i.page_id
+JOIN lemma l ON l.id = i.lemma_id
+JOIN lemma x ON x.siteid = p.siteid AND x.lemma_text = l.lemma_text
+WHERE l.siteid IS NULL OR l.siteid <> p.siteid
+GROUP BY i.id;
+
+UPDATE idx i JOIN idx_rehome r ON i.id = r.idx_id SET i.lemma_id = r.lemma_id;
+
+DROP TEMPORARY TABLE idx_rehome;
+DROP TEMPORARY TABLE lemma_missing;
+
+-- На леммы без сайта больше не ссылается ни одна запись индекса, а уникальный ключ
+-- не мешает повторам NULL: такие строки удаляются, и сайт леммы становится обязательным
+DELETE FROM lemma WHERE siteid IS NULL;
+
+ALTER TABLE lemma MODIFY siteid INT NOT NULL;
+
+-- Дубликаты лемм сайта (появлялись без уникального ключа) сливаются в строку с меньшим id
+CREATE TEMPORARY TABLE lemma_merge AS
+SELECT l.id AS old_id, k.keep_id
+FROM lemma l
+JOIN (SELECT siteid, lemma_text, MIN(id) AS keep_id
+      FROM lemma
+      GROUP BY siteid, lemma_text
+      HAVING COUNT(*) > 1) k ON l.siteid = k.siteid AND l.lemma_text = k.lemma_text
+WHERE l.id <> k.keep_id;
+
+UPDATE idx i JOIN lemma_merge m ON i.lemma_id = m.old_id SET i.lemma_id = m.keep_id;
+
+DELETE l FROM lemma l JOIN lemma_merge m ON l.id = m.old_id;
+
+DROP TEMPORARY TABLE lemma_merge;
+
+-- Повторные записи индекса одной леммы на одной странице: ранг складывается
+-- в запись с меньшим id, остальные удаляются
+UPDATE idx j
+JOIN (SELECT lemma_id, page_id, MIN(id) AS id, SUM(rank_value) AS r
+      FROM idx
+      GROUP BY lemma_id, page_id
+      HAVING COUNT(*) > 1) d ON j.id = d.id
+SET j.rank_value = d.r;
+
+DELETE i FROM idx i JOIN idx j ON i.lemma_id = j.lemma_id AND i.page_id = j.page_id AND i.id > j.id;
+
+-- Частота леммы - число страниц её сайта с этой леммой: после переноса и слияния
+-- пересчитывается для всех лемм
+UPDATE lemma l
+LEFT JOIN (SELECT lemma_id, COUNT(*) AS pages FROM idx GROUP BY lemma_id) f ON f.lemma_id = l.id
+SET l.frequency = COALESCE(f.pages, 0);
+
+-- Уникальный ключ лемм мог уже создать ddl-auto по аннотации сущности Lemma
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.statistics
+               WHERE table_schema = DATABASE() AND table_name = 'lemma'
+                 AND index_name = 'uk_lemma_site_text') = 0,
+              'ALTER TABLE lemma ADD CONSTRAINT uk_lemma_site_text UNIQUE (siteid, lemma_text)',
+              'DO 0');
+PREPARE statement FROM @ddl;
+EXECUTE statement;
+DEALLOCATE PREPARE statement;
+
+-- Поиск по леммам (lemma_id IN ...) и пересчёт записей страницы (page_id = ?)
+ALTER TABLE idx
+    ADD CONSTRAINT uk_idx_lemma_page UNIQUE (lemma_id, page_id),
+    ADD INDEX ix_idx_page (page_id);
+
+-- path имеет тип TEXT: индекс по префиксу, поэтому не уникальный
+ALTER TABLE page ADD INDEX ix_page_site_path (siteid, path(255));
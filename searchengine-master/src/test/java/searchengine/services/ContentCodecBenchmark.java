@@ -0,0 +1,96 @@
+package searchengine.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Степень сжатия HTML deflate без словаря и со словарём сайта, время распаковки.
+ *
+ * По умолчанию используются 200 сгенерированных страниц одного шаблона. Свой корпус -
+ * каталог с файлами *.html одного сайта:
+ * mvn test -Pbenchmark -Dtest=ContentCodecBenchmark -Dbenchmark.corpus=/путь/к/страницам
+ */
+class ContentCodecBenchmark {
+
+    // Словарь обучается на первых страницах сайта, как в PageContentService
+    private static final int SAMPLES = 16;
+    private static final int ROUNDS = 50;
+
+    @Test
+    void compressionRatio() throws Exception {
+        List<String> pages = corpus();
+        List<String> samples = new ArrayList<>();
+        for (int i = 0; i < pages.size() && samples.size() < SAMPLES; i += Math.max(1, pages.size() / SAMPLES)) {
+            samples.add(pages.get(i));
+        }
+        long trainStarted = System.nanoTime();
+        byte[] dictionary = ContentCodec.trainDictionary(samples);
+        long trainNanos = System.nanoTime() - trainStarted;
+
+        long raw = 0;
+        long plain = 0;
+        long withDictionary = 0;
+        List<byte[]> compressed = new ArrayList<>();
+        int[] lengths = new int[pages.size()];
+        for (int i = 0; i < pages.size(); i++) {
+            String page = pages.get(i);
+            lengths[i] = page.getBytes(StandardCharsets.UTF_8).length;
+            byte[] data = ContentCodec.compress(page, dictionary);
+            assertEquals(page, ContentCodec.decompress(data, lengths[i], dictionary));
+            compressed.add(data);
+            raw += lengths[i];
+            plain += ContentCodec.compress(page, null).length;
+            withDictionary += data.length;
+        }
+
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int i = 0; i < pages.size(); i++) {
+                ContentCodec.decompress(compressed.get(i), lengths[i], dictionary);
+            }
+        }
+        long[] latencies = new long[pages.size() * ROUNDS];
+        int n = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int i = 0; i < pages.size(); i++) {
+                long started = System.nanoTime();
+                ContentCodec.decompress(compressed.get(i), lengths[i], dictionary);
+                latencies[n++] = System.nanoTime() - started;
+            }
+        }
+        Arrays.sort(latencies);
+
+        System.out.printf("Страниц: %d, в среднем %.1f КБ, словарь %d байт, обучение %d мс%n",
+                pages.size(), raw / 1024.0 / pages.size(), dictionary == null ? 0 : dictionary.length,
+                trainNanos / 1_000_000);
+        System.out.printf("deflate: %.2fx, deflate со словарём: %.2fx (на %.1f%% меньше)%n",
+                (double) raw / plain, (double) raw / withDictionary, 100.0 * (plain - withDictionary) / plain);
+        System.out.printf("Распаковка: p50 %.1f мкс, p99 %.1f мкс%n",
+                latencies[n / 2] / 1e3, latencies[n * 99 / 100] / 1e3);
+    }
+
+    private static List<String> corpus() throws Exception {
+        String dir = System.getProperty("benchmark.corpus");
+        List<String> pages = new ArrayList<>();
+        if (dir == null) {
+            for (int i = 0; i < 200; i++) {
+                pages.add(ContentCodecTest.page(i));
+            }
+            return pages;
+        }
+        try (Stream<Path> files = Files.list(Path.of(dir))) {
+            for (Path file : files.filter(f -> f.toString().endsWith(".html")).sorted().toList()) {
+                pages.add(Files.readString(file));
+            }
+        }
+        return pages;
+    }
+}
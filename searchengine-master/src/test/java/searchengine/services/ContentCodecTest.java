@@ -0,0 +1,142 @@
+package searchengine.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class ContentCodecTest {
+
+    @Test
+    void roundTripWithoutDictionary() {
+        String html = page(1);
+        byte[] data = ContentCodec.compress(html, null);
+
+        assertTrue(data.length < html.length());
+        assertEquals(html, ContentCodec.decompress(data, utf8Length(html), null));
+    }
+
+    @Test
+    void roundTripWithDictionary() {
+        byte[] dictionary = ContentCodec.trainDictionary(List.of(page(1), page(2), page(3)));
+        assertNotNull(dictionary);
+
+        String html = page(42);
+        byte[] data = ContentCodec.compress(html, dictionary);
+        assertEquals(html, ContentCodec.decompress(data, utf8Length(html), dictionary));
+    }
+
+    @Test
+    void roundTripFromDirectBuffer() {
+        String html = "<p>Кириллица, emoji 😀 и символы &amp; разметки</p>";
+        byte[] data = ContentCodec.compress(html, null);
+        ByteBuffer direct = ByteBuffer.allocateDirect(data.length + 10);
+        direct.position(10);
+        direct.put(data);
+        direct.position(10);
+
+        assertEquals(html, ContentCodec.decompress(direct, utf8Length(html), null));
+    }
+
+    @Test
+    void emptyTextRoundTrips() {
+        byte[] data = ContentCodec.compress("", null);
+        assertEquals("", ContentCodec.decompress(data, 0, null));
+    }
+
+    @Test
+    void dictionaryImprovesCompressionOfTemplatedPages() {
+        List<String> samples = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            samples.add(page(i));
+        }
+        byte[] dictionary = ContentCodec.trainDictionary(samples);
+
+        String html = page(100);
+        int plain = ContentCodec.compress(html, null).length;
+        int withDictionary = ContentCodec.compress(html, dictionary).length;
+        assertTrue(withDictionary < plain * 0.7, "со словарём " + withDictionary + " байт, без - " + plain);
+    }
+
+    @Test
+    void dataCompressedWithDictionaryNeedsIt() {
+        byte[] dictionary = ContentCodec.trainDictionary(List.of(page(1), page(2)));
+        String html = page(3);
+        byte[] data = ContentCodec.compress(html, dictionary);
+
+        assertThrows(IllegalStateException.class,
+                () -> ContentCodec.decompress(data, utf8Length(html), null));
+    }
+
+    @Test
+    void corruptOrTruncatedDataIsRejected() {
+        String html = page(1);
+        byte[] data = ContentCodec.compress(html, null);
+
+        byte[] corrupt = data.clone();
+        corrupt[0] ^= 0x55;
+        assertThrows(IllegalStateException.class,
+                () -> ContentCodec.decompress(corrupt, utf8Length(html), null));
+
+        byte[] truncated = Arrays.copyOf(data, data.length / 2);
+        assertThrows(IllegalStateException.class,
+                () -> ContentCodec.decompress(truncated, utf8Length(html), null));
+
+        assertThrows(IllegalStateException.class,
+                () -> ContentCodec.decompress(data, utf8Length(html) + 1, null));
+    }
+
+    @Test
+    void trainingKeepsOnlySharedFragmentsWithinWindow() {
+        assertNull(ContentCodec.trainDictionary(List.of("<p>единственная страница</p>")));
+        assertNull(ContentCodec.trainDictionary(List.of("<div class=\"a\">", "<div class=\"b\">")));
+
+        List<String> samples = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            StringBuilder html = new StringBuilder();
+            for (int j = 0; j < 2000; j++) {
+                html.append("<li class=\"menu-item-").append(j).append("\">\n");
+            }
+            samples.add(html.toString());
+        }
+        byte[] dictionary = ContentCodec.trainDictionary(samples);
+        assertTrue(dictionary.length <= ContentCodec.MAX_DICTIONARY_SIZE);
+        assertTrue(dictionary.length > ContentCodec.MAX_DICTIONARY_SIZE - 64);
+    }
+
+    static String page(int number) {
+        StringBuilder html = new StringBuilder()
+                .append("<!DOCTYPE html>\n<html lang=\"ru\">\n<head>\n")
+                .append("<meta charset=\"utf-8\">\n<title>Страница ").append(number).append("</title>\n")
+                .append("<link rel=\"stylesheet\" href=\"/assets/css/main.min.css?v=20240101\">\n")
+                .append("<script src=\"/assets/js/vendor.bundle.js\" defer></script>\n</head>\n<body>\n")
+                .append("<header class=\"site-header\"><nav class=\"main-menu\">\n");
+        for (String section : new String[] {"Каталог", "Доставка", "Оплата", "Контакты", "Блог", "О компании"}) {
+            html.append("<a class=\"main-menu__link\" href=\"/").append(section.length())
+                    .append("/\">").append(section).append("</a>\n");
+        }
+        html.append("</nav></header>\n<main class=\"content\">\n<h1>Товар номер ").append(number).append("</h1>\n");
+        for (int i = 0; i < 5; i++) {
+            html.append("<p>Описание ").append(number * 31 + i)
+                    .append(": характеристика ").append((number * 7 + i) % 13).append("</p>\n");
+        }
+        html.append("</main>\n<footer class=\"site-footer\">\n")
+                .append("<p class=\"site-footer__copy\">© 2024 Интернет-магазин. Все права защищены.</p>\n")
+                .append("<p class=\"site-footer__address\">Москва, ул. Примерная, д. 1, тел. +7 (495) 000-00-00</p>\n")
+                .append("</footer>\n</body>\n</html>\n");
+        return html.toString();
+    }
+
+    private static int utf8Length(String text) {
+        return text.getBytes(StandardCharsets.UTF_8).length;
+    }
+}
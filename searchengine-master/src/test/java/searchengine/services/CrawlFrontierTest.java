@@ -0,0 +1,252 @@
+package searchengine.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CrawlFrontierTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void pollsInPushOrderWithDepth() throws Exception {
+        try (CrawlFrontier frontier = CrawlFrontier.open(dir)) {
+            assertFalse(frontier.isResumed());
+            assertTrue(frontier.isEmpty());
+            for (int i = 0; i < 5; i++) {
+                assertTrue(frontier.push("https://example.com/" + i, i));
+            }
+            assertEquals(5, frontier.size());
+
+            for (int i = 0; i < 5; i++) {
+                CrawlFrontier.Entry entry = frontier.poll();
+                assertEquals("https://example.com/" + i, entry.getUrl());
+                assertEquals(i, entry.getDepth());
+                frontier.done(entry);
+            }
+            assertNull(frontier.poll());
+            assertTrue(frontier.isEmpty());
+        }
+    }
+
+    @Test
+    void rejectsEmptyAndOversizedUrls() throws Exception {
+        try (CrawlFrontier frontier = CrawlFrontier.open(dir)) {
+            assertFalse(frontier.push("", 0));
+            assertFalse(frontier.push("https://example.com/" + "a".repeat(9000), 0));
+            assertTrue(frontier.isEmpty());
+        }
+    }
+
+    @Test
+    void recordThatDoesNotFitMovesToNextChunk() throws Exception {
+        String padding = "x".repeat(8000);
+        List<Long> offsets = new ArrayList<>();
+        int count = 0;
+        try (CrawlFrontier frontier = CrawlFrontier.open(dir)) {
+            // Записи по ~8 КБ: примерно через 2000 штук блок в 16 МБ заканчивается
+            while (count < 2 * CrawlFrontier.CHUNK_SIZE / 8000 + 10) {
+                assertTrue(frontier.push("https://example.com/" + count + "/" + padding, 1));
+                count++;
+            }
+            assertEquals(count, frontier.size());
+
+            CrawlFrontier.Entry entry;
+            int polled = 0;
+            while ((entry = frontier.poll()) != null) {
+                assertTrue(entry.getUrl().startsWith("https://example.com/" + polled + "/"));
+                offsets.add(entry.getOffset());
+                frontier.done(entry);
+                polled++;
+            }
+            assertEquals(count, polled);
+
+            List<String> replayed = new ArrayList<>();
+            frontier.forEachEntry(e -> replayed.add(e.getUrl()));
+            assertEquals(count, replayed.size());
+        }
+        // Ни одна запись не пересекает границу блока, а остаток блока пропущен
+        long chunk = CrawlFrontier.CHUNK_SIZE;
+        assertTrue(offsets.contains(chunk), "первая запись второго блока начинается с его начала");
+        assertTrue(offsets.contains(2 * chunk), "первая запись третьего блока начинается с его начала");
+        for (int i = 1; i < offsets.size(); i++) {
+            long start = offsets.get(i - 1);
+            long end = offsets.get(i);
+            assertTrue(start / chunk == (end - 1) / chunk || end % chunk == 0);
+        }
+    }
+
+    @Test
+    void resumesFromEarliestUnfinishedEntry() throws Exception {
+        try (CrawlFrontier frontier = CrawlFrontier.open(dir)) {
+            for (int i = 0; i < 10; i++) {
+                frontier.push("https://example.com/" + i, 0);
+            }
+            CrawlFrontier.Entry first = frontier.poll();
+            CrawlFrontier.Entry second = frontier.poll();
+            CrawlFrontier.Entry third = frontier.poll();
+            frontier.done(first);
+            frontier.done(third);
+            assertFalse(frontier.isQueued(first));
+            assertTrue(frontier.isQueued(second));
+        }
+
+        try (CrawlFrontier frontier = CrawlFrontier.open(dir)) {
+            assertTrue(frontier.isResumed());
+            // Незавершённая вторая запись и всё после неё загружаются заново
+            assertEquals(9, frontier.size());
+            assertEquals("https://example.com/1", frontier.poll().getUrl());
+            assertEquals("https://example.com/2", frontier.poll().getUrl());
+
+            List<String> all = new ArrayList<>();
+            frontier.forEachEntry(e -> all.add(e.getUrl()));
+            assertEquals(10, all.size());
+        }
+    }
+
+    @Test
+    void resumedQueueKeepsAppending() throws Exception {
+        try (CrawlFrontier frontier = CrawlFrontier.open(dir)) {
+            frontier.push("https://example.com/a", 0);
+        }
+        try (CrawlFrontier frontier = CrawlFrontier.open(dir)) {
+            frontier.push("https://example.com/b", 1);
+        }
+        try (CrawlFrontier frontier = CrawlFrontier.open(dir)) {
+            assertEquals(2, frontier.size());
+            assertEquals("https://example.com/a", frontier.poll().getUrl());
+            CrawlFrontier.Entry entry = frontier.poll();
+            assertEquals("https://example.com/b", entry.getUrl());
+            assertEquals(1, entry.getDepth());
+        }
+    }
+
+    @Test
+    void containsEveryUrlScheduledByThisCrawl() throws Exception {
+        try (CrawlFrontier frontier = CrawlFrontier.open(dir)) {
+            frontier.push("https://example.com/done", 0);
+            frontier.push("https://example.com/queued", 1);
+            frontier.done(frontier.poll());
+        }
+        try (CrawlFrontier frontier = CrawlFrontier.open(dir)) {
+            frontier.push("https://example.com/new", 1);
+
+            // Обработанные, ожидающие и добавленные после перезапуска URL
+            assertTrue(frontier.contains("https://example.com/done"));
+            assertTrue(frontier.contains("https://example.com/queued"));
+            assertTrue(frontier.contains("https://example.com/new"));
+            // URL той же длины, префикс записанного URL и пустая строка
+            assertFalse(frontier.contains("https://example.com/dune"));
+            assertFalse(frontier.contains("https://example.com/do"));
+            assertFalse(frontier.contains(""));
+
+            frontier.close();
+            assertFalse(frontier.contains("https://example.com/done"));
+        }
+    }
+
+    @Test
+    void callsAfterCloseAreIgnored() throws Exception {
+        CrawlFrontier frontier = CrawlFrontier.open(dir);
+        frontier.push("https://example.com/a", 0);
+        CrawlFrontier.Entry entry = frontier.poll();
+        frontier.close();
+
+        assertFalse(frontier.push("https://example.com/b", 0));
+        assertNull(frontier.poll());
+        frontier.done(entry);
+        frontier.close();
+
+        // Запись, не завершённая до закрытия, остаётся в очереди
+        try (CrawlFrontier reopened = CrawlFrontier.open(dir)) {
+            assertEquals(1, reopened.size());
+            assertEquals("https://example.com/a", reopened.poll().getUrl());
+        }
+    }
+
+    @Test
+    void resumedQueueMarksSkippedChunkTailOverStaleBytes() throws Exception {
+        // Записи по 8008 байт: после 2095 штук в блоке остаётся 456 байт - меньше записи, но больше заголовка
+        String prefix = "https://example.com/";
+        int recordSize = 8008;
+        int records = CrawlFrontier.CHUNK_SIZE / recordSize;
+        long checkpointTail = (long) records * recordSize;
+        try (CrawlFrontier frontier = CrawlFrontier.open(dir)) {
+            for (int i = 0; i < records; i++) {
+                assertTrue(frontier.push(url(prefix, i, 8000), 0));
+            }
+        }
+
+        // Запись, дописанная после контрольной точки и не попавшая в meta (сбой процесса)
+        try (FileChannel channel = FileChannel.open(dir.resolve("queue.dat"), StandardOpenOption.WRITE)) {
+            ByteBuffer stale = ByteBuffer.allocate(8 + 100 + 8);
+            stale.putInt(100).putInt(3).put("y".repeat(100).getBytes(StandardCharsets.UTF_8)).putInt(-7).putInt(0);
+            stale.flip();
+            channel.write(stale, checkpointTail);
+        }
+
+        try (CrawlFrontier frontier = CrawlFrontier.open(dir)) {
+            assertEquals(records, frontier.size());
+            assertTrue(frontier.push(url(prefix, records, 8000), 1));
+
+            List<String> polled = new ArrayList<>();
+            CrawlFrontier.Entry entry;
+            while ((entry = frontier.poll()) != null) {
+                polled.add(entry.getUrl());
+                frontier.done(entry);
+            }
+            assertEquals(records + 1, polled.size());
+            assertEquals(url(prefix, records, 8000), polled.get(records));
+
+            List<String> all = new ArrayList<>();
+            frontier.forEachEntry(e -> all.add(e.getUrl()));
+            assertEquals(polled, all);
+        }
+    }
+
+    @Test
+    void corruptRecordLengthFailsOnOpen() throws Exception {
+        try (CrawlFrontier frontier = CrawlFrontier.open(dir)) {
+            frontier.push("https://example.com/a", 0);
+            frontier.push("https://example.com/b", 0);
+        }
+        try (FileChannel channel = FileChannel.open(dir.resolve("queue.dat"), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4).putInt(0, Integer.MAX_VALUE), 0);
+        }
+        assertThrows(IOException.class, () -> CrawlFrontier.open(dir));
+    }
+
+    /**
+     * URL ровно из length байт с номером i.
+     */
+    private static String url(String prefix, int i, int length) {
+        String head = prefix + i + "/";
+        return head + "x".repeat(length - head.length());
+    }
+
+    @Test
+    void deleteRemovesQueueFiles() throws Exception {
+        Path frontierDir = dir.resolve("site-1");
+        try (CrawlFrontier frontier = CrawlFrontier.open(frontierDir)) {
+            frontier.push("https://example.com/", 0);
+        }
+        CrawlFrontier.delete(frontierDir);
+        assertFalse(Files.exists(frontierDir));
+    }
+}
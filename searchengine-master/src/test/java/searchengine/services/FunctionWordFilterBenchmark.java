@@ -0,0 +1,119 @@
+package searchengine.services;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import searchengine.config.CrawlerSettings;
+
+/**
+ * Насколько function-word-filter уменьшает индекс: LemmaService.countLemmas со словарями
+ * морфологии Lemmatizer при включённом и выключенном фильтре. Считаются вхождения слов,
+ * попадающие в ранги, записи idx на страницу и различные леммы (строки lemma).
+ *
+ * По умолчанию страницы собираются из случайных предложений обычного русского текста;
+ * доля служебных слов в нём близка к живой речи, но для настоящей цифры нужен корпус
+ * страниц сайта - текстовый файл в UTF-8, например очищенный текст страниц:
+ * mvn test -Pbenchmark -Dtest=FunctionWordFilterBenchmark -Dbenchmark.corpus=/путь/к/тексту.txt
+ */
+class FunctionWordFilterBenchmark {
+
+    private static final int PAGE_CHARS = 20_000;
+
+    private static final String[] SENTENCES = {
+            "Поисковая система обходит страницы сайта и сохраняет их текст, чтобы потом быстро найти нужный документ.",
+            "Если сервер отвечает слишком медленно, обход этого сайта замедляется, а запросы к другим сайтам продолжаются.",
+            "Для каждой страницы вычисляется набор лемм, и только после этого записи попадают в индекс.",
+            "Утром над рекой стоял туман, поэтому лодки вышли из гавани лишь после полудня.",
+            "Он долго не мог понять, почему письмо так и не дошло до адресата, хотя отправил его ещё весной.",
+            "Между тем цены на жильё в крупных городах продолжали расти, несмотря на высокие ставки по ипотеке.",
+            "Однако даже самый точный прогноз погоды не учитывает всех особенностей местного рельефа.",
+            "Библиотека открыта ежедневно, кроме воскресенья, а читальный зал работает до девяти вечера.",
+            "При сборке проекта важно проверить, что все зависимости загружены и тесты проходят без ошибок.",
+            "Через несколько лет команда переписала модуль заново, потому что старый код было почти невозможно поддерживать.",
+            "Вдоль дороги тянулись поля пшеницы, а за ними виднелся лес, откуда доносилось пение птиц.",
+            "Врач посоветовал больше гулять на свежем воздухе и не засиживаться допоздна за компьютером.",
+            "Ведь никто не знал заранее, чем закончится эта история и кто окажется прав.",
+            "Под мостом проплывала баржа с лесом, и рабочие на берегу махали ей вслед.",
+            "Среди участников конференции были инженеры, учёные и студенты из разных стран.",
+            "Впрочем, ответ оказался довольно простым: достаточно было перезапустить сервис и очистить кэш.",
+    };
+
+    @Test
+    void indexSizeWithAndWithoutFilter() throws Exception {
+        List<String> pages = pages();
+        Counts off = count(pages, false);
+        Counts on = count(pages, true);
+
+        assertTrue(on.tokens <= off.tokens && on.postings <= off.postings && on.lemmas <= off.lemmas);
+        System.out.printf("Страниц: %d%n", pages.size());
+        report("Вхождений слов", off.tokens, on.tokens, pages.size());
+        report("Записей idx", off.postings, on.postings, pages.size());
+        System.out.printf("Различных лемм: %d -> %d (-%.1f%%)%n",
+                off.lemmas, on.lemmas, 100.0 * (off.lemmas - on.lemmas) / off.lemmas);
+    }
+
+    private static Counts count(List<String> pages, boolean functionWordFilter) {
+        CrawlerSettings settings = new CrawlerSettings();
+        settings.setFunctionWordFilter(functionWordFilter);
+        LemmaService lemmaService = new LemmaService(null, null);
+        ReflectionTestUtils.setField(lemmaService, "lemmatizer", new Lemmatizer(settings));
+
+        Counts counts = new Counts();
+        Set<String> lemmas = new HashSet<>();
+        for (String page : pages) {
+            Map<String, Integer> lemmaCount = lemmaService.countLemmas(page);
+            counts.postings += lemmaCount.size();
+            for (Map.Entry<String, Integer> entry : lemmaCount.entrySet()) {
+                counts.tokens += entry.getValue();
+                lemmas.add(entry.getKey());
+            }
+        }
+        counts.lemmas = lemmas.size();
+        return counts;
+    }
+
+    private static void report(String name, long off, long on, int pages) {
+        System.out.printf("%s: %d -> %d (-%.1f%%), на страницу %.1f -> %.1f%n",
+                name, off, on, 100.0 * (off - on) / off, (double) off / pages, (double) on / pages);
+    }
+
+    private static List<String> pages() throws Exception {
+        String corpus = corpus();
+        List<String> pages = new ArrayList<>();
+        for (int i = 0; i < corpus.length(); i += PAGE_CHARS) {
+            pages.add(corpus.substring(i, Math.min(corpus.length(), i + PAGE_CHARS)));
+        }
+        return pages;
+    }
+
+    private static String corpus() throws Exception {
+        String file = System.getProperty("benchmark.corpus");
+        if (file != null) {
+            return Files.readString(Path.of(file));
+        }
+        Random random = new Random(42);
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 2_000_000) {
+            text.append(SENTENCES[random.nextInt(SENTENCES.length)]).append(' ');
+        }
+        return text.toString();
+    }
+
+    private static final class Counts {
+
+        private long tokens;
+        private long postings;
+        private int lemmas;
+    }
+}
@@ -0,0 +1,90 @@
+package searchengine.services;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import searchengine.config.CrawlerSettings;
+import searchengine.dto.statistics.HostFetchStatistics;
+
+/**
+ * Моделирование AIMD-лимита на двух хостах без сети: быстрый хост выдерживает
+ * 4 параллельных запроса, медленный - 1 и отвечает 503, когда их больше двух.
+ * Запуск: mvn test -Pbenchmark -Dtest=HostConcurrencyLimiterBenchmark
+ */
+class HostConcurrencyLimiterBenchmark {
+
+    private static final int WORKERS = 8;
+    private static final long DURATION_MS = 6000;
+
+    @Test
+    void limitFollowsHostCapacity() throws Exception {
+        HostConcurrencyLimiter limiter = new HostConcurrencyLimiter(new CrawlerSettings());
+
+        int[] fast = simulate(limiter, "https://fast.example/", 40, 4);
+        int[] slow = simulate(limiter, "https://slow.example/", 300, 1);
+        // Те же потоки без лимита: сколько ответов 503 получил бы медленный хост
+        int[] unlimited = simulate(null, "https://slow.example/", 300, 1);
+
+        for (HostFetchStatistics statistics : limiter.getStatistics()) {
+            System.out.printf("%s: лимит %d, задержка %d мс (базовая %d мс), запросов %d, перегрузок %d%n",
+                    statistics.getHost(), statistics.getLimit(), statistics.getAverageLatencyMs(),
+                    statistics.getBaselineLatencyMs(), statistics.getRequests(), statistics.getErrors());
+        }
+        System.out.printf("Быстрый хост: %.1f запросов/с, медленный: %.1f запросов/с, перегрузок %d из %d%n",
+                fast[0] * 1000.0 / DURATION_MS, slow[0] * 1000.0 / DURATION_MS, slow[1], slow[0]);
+        System.out.printf("Медленный хост без лимита: %.1f запросов/с, перегрузок %d из %d%n",
+                unlimited[0] * 1000.0 / DURATION_MS, unlimited[1], unlimited[0]);
+    }
+
+    /**
+     * WORKERS потоков обращаются к хосту, который без замедления обслуживает capacity
+     * параллельных запросов, медленнее - до 2 * capacity и отвечает 503 сверх этого.
+     *
+     * @param limiter лимит одновременных запросов или null, если запросы не ограничиваются
+     * @return число выполненных запросов и число ответов о перегрузке
+     */
+    private static int[] simulate(HostConcurrencyLimiter limiter, String url, long latencyMs, int capacity)
+            throws Exception {
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger done = new AtomicInteger();
+        AtomicInteger overloads = new AtomicInteger();
+        long end = System.currentTimeMillis() + DURATION_MS;
+        ExecutorService workers = Executors.newFixedThreadPool(WORKERS);
+        for (int i = 0; i < WORKERS; i++) {
+            workers.submit(() -> {
+                while (System.currentTimeMillis() < end) {
+                    if (limiter != null) {
+                        limiter.acquire(url);
+                    }
+                    int parallel = active.incrementAndGet();
+                    long started = System.nanoTime();
+                    HostConcurrencyLimiter.Outcome outcome;
+                    if (parallel > 2 * capacity) {
+                        Thread.sleep(latencyMs / 4);
+                        outcome = HostConcurrencyLimiter.Outcome.OVERLOAD;
+                        overloads.incrementAndGet();
+                    } else {
+                        double slowdown = Math.max(1.0, (double) parallel / capacity);
+                        double jitter = 0.7 + 0.6 * ThreadLocalRandom.current().nextDouble();
+                        Thread.sleep((long) (latencyMs * slowdown * jitter));
+                        outcome = HostConcurrencyLimiter.Outcome.SUCCESS;
+                    }
+                    active.decrementAndGet();
+                    done.incrementAndGet();
+                    if (limiter != null) {
+                        limiter.release(url, System.nanoTime() - started, outcome);
+                    }
+                }
+                return null;
+            });
+        }
+        workers.shutdown();
+        workers.awaitTermination(1, TimeUnit.MINUTES);
+        return new int[] {done.get(), overloads.get()};
+    }
+}
@@ -0,0 +1,108 @@
+package searchengine.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import searchengine.services.HostConcurrencyLimiter.HostLimit;
+import searchengine.services.HostConcurrencyLimiter.Outcome;
+
+class HostConcurrencyLimiterTest {
+
+    private static final long MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    // Время поддельных часов, нс
+    private long now;
+
+    @Test
+    void successIncreasesLimitByOneOverLimit() throws Exception {
+        HostLimit limit = new HostLimit("example.com", 1, 8, 2, 2.0, now);
+
+        respond(limit, 100, Outcome.SUCCESS);
+        assertEquals(2.5, limit.limit(), 1e-9);
+        respond(limit, 100, Outcome.SUCCESS);
+        assertEquals(2.9, limit.limit(), 1e-9);
+        // Примерно на единицу за limit успешных ответов
+        respond(limit, 100, Outcome.SUCCESS);
+        assertEquals(2.9 + 1 / 2.9, limit.limit(), 1e-9);
+    }
+
+    @Test
+    void limitGrowsUpToCeiling() throws Exception {
+        HostLimit limit = new HostLimit("example.com", 1, 8, 2, 2.0, now);
+
+        for (int i = 0; i < 200; i++) {
+            respond(limit, 100, Outcome.SUCCESS);
+        }
+        assertEquals(8.0, limit.limit(), 1e-9);
+    }
+
+    @Test
+    void overloadHalvesLimitAtMostOncePerAverageLatency() throws Exception {
+        HostLimit limit = new HostLimit("example.com", 1, 8, 8, 2.0, now);
+        // Средняя задержка 100 мс
+        respond(limit, 100, Outcome.SUCCESS);
+
+        respond(limit, 100, Outcome.OVERLOAD);
+        assertEquals(4.0, limit.limit(), 1e-9);
+
+        // Остальные ошибки той же волны запросов лимит не снижают
+        now += 50 * MILLI;
+        respond(limit, 100, Outcome.OVERLOAD);
+        now += 49 * MILLI;
+        respond(limit, 100, Outcome.OVERLOAD);
+        assertEquals(4.0, limit.limit(), 1e-9);
+
+        now += MILLI;
+        respond(limit, 100, Outcome.OVERLOAD);
+        assertEquals(2.0, limit.limit(), 1e-9);
+    }
+
+    @Test
+    void limitDoesNotDropBelowFloor() throws Exception {
+        HostLimit limit = new HostLimit("example.com", 2, 8, 8, 2.0, now);
+        respond(limit, 100, Outcome.SUCCESS);
+
+        for (int i = 0; i < 10; i++) {
+            now += TimeUnit.SECONDS.toNanos(1);
+            respond(limit, 100, Outcome.OVERLOAD);
+        }
+        assertEquals(2.0, limit.limit(), 1e-9);
+    }
+
+    @Test
+    void risingAverageLatencyHalvesLimitWithoutErrors() throws Exception {
+        HostLimit limit = new HostLimit("example.com", 1, 8, 8, 2.0, now);
+        respond(limit, 100, Outcome.SUCCESS);
+
+        // Среднее догоняет 300 мс быстрее базовой задержки и через несколько ответов
+        // превышает её вдвое
+        int responses = 0;
+        while (limit.limit() == 8.0 && responses < 20) {
+            now += TimeUnit.SECONDS.toNanos(1);
+            respond(limit, 300, Outcome.SUCCESS);
+            responses++;
+        }
+        assertEquals(4.0, limit.limit(), 1e-9);
+        assertTrue(responses > 1, "одиночный медленный ответ не должен снижать лимит");
+        assertEquals(0, limit.snapshot().getErrors());
+    }
+
+    @Test
+    void ignoredOutcomeDoesNotChangeLimit() throws Exception {
+        HostLimit limit = new HostLimit("example.com", 1, 8, 2, 2.0, now);
+
+        respond(limit, 100, Outcome.IGNORED);
+        assertEquals(2.0, limit.limit(), 1e-9);
+        assertEquals(0, limit.snapshot().getRequests());
+        assertEquals(0, limit.snapshot().getInFlight());
+    }
+
+    private void respond(HostLimit limit, long latencyMs, Outcome outcome) throws Exception {
+        limit.acquire();
+        limit.release(latencyMs * MILLI, outcome, now);
+    }
+}
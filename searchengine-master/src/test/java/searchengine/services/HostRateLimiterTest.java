@@ -0,0 +1,91 @@
+package searchengine.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import searchengine.config.CrawlerSettings;
+
+class HostRateLimiterTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final long MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    void burstIsGrantedWithoutWaiting() {
+        HostRateLimiter.HostBucket bucket = new HostRateLimiter.HostBucket(2, 3, 0);
+        long now = System.nanoTime();
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, bucket.reserve(now), "запрос " + i + " в пределах burst");
+        }
+    }
+
+    @Test
+    void requestsAfterBurstReserveConsecutiveSlots() {
+        HostRateLimiter.HostBucket bucket = new HostRateLimiter.HostBucket(2, 1, 0);
+        long now = System.nanoTime();
+
+        assertEquals(0, bucket.reserve(now));
+        // Каждый следующий запрос занимает слот через 1/rate после предыдущего
+        assertEquals(SECOND / 2, bucket.reserve(now), MILLI);
+        assertEquals(SECOND, bucket.reserve(now), MILLI);
+        assertEquals(3 * SECOND / 2, bucket.reserve(now), MILLI);
+    }
+
+    @Test
+    void minDelaySeparatesRequestsEvenWithTokens() {
+        HostRateLimiter.HostBucket bucket = new HostRateLimiter.HostBucket(100, 10, 250);
+        long now = System.nanoTime();
+
+        assertEquals(0, bucket.reserve(now));
+        assertEquals(250 * MILLI, bucket.reserve(now), MILLI);
+        assertEquals(500 * MILLI, bucket.reserve(now), MILLI);
+    }
+
+    @Test
+    void idleTimeRefillsUpToBurstOnly() {
+        HostRateLimiter.HostBucket bucket = new HostRateLimiter.HostBucket(1, 2, 0);
+        long now = System.nanoTime();
+        bucket.reserve(now);
+        bucket.reserve(now);
+
+        // За минуту простоя набирается не больше burst токенов
+        long later = now + 60 * SECOND;
+        assertEquals(0, bucket.reserve(later));
+        assertEquals(0, bucket.reserve(later));
+        assertEquals(SECOND, bucket.reserve(later), MILLI);
+    }
+
+    @Test
+    void reservationsInThePastDoNotMoveTheClockBack() {
+        HostRateLimiter.HostBucket bucket = new HostRateLimiter.HostBucket(1, 1, 0);
+        long now = System.nanoTime();
+        assertEquals(0, bucket.reserve(now));
+
+        // Поток, прочитавший время раньше, всё равно встаёт в очередь после выданного слота
+        long wait = bucket.reserve(now - 100 * MILLI);
+        assertEquals(SECOND + 100 * MILLI, wait, MILLI);
+    }
+
+    @Test
+    void acquireTracksHostsAndSkipsUrlsWithoutHost() throws Exception {
+        CrawlerSettings settings = new CrawlerSettings();
+        settings.setHostRequestsPerSecond(1000);
+        settings.setHostBurst(10);
+        settings.setHostMinDelayMs(0);
+        HostRateLimiter limiter = new HostRateLimiter(settings);
+
+        limiter.acquire("not a url");
+        limiter.acquire("https://www.example.com/a");
+        limiter.acquire("https://example.com/b");
+
+        // www.example.com и example.com - один хост, после ожидания очередь пуста
+        assertEquals(1, limiter.getQueueDepths().size());
+        assertTrue(limiter.getQueueDepths().containsKey("example.com"));
+        assertEquals(0, (int) limiter.getQueueDepths().get("example.com"));
+    }
+}
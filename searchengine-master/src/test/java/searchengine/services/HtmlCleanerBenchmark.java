@@ -0,0 +1,80 @@
+package searchengine.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.lang.management.ManagementFactory;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Выделение памяти и время извлечения текста страницы: прежний путь (разбор,
+ * сериализация, повторный разбор и удаление script/style) против обхода уже
+ * разобранного документа. Оба пути включают первый разбор HTML.
+ * Запуск: mvn test -Pbenchmark -Dtest=HtmlCleanerBenchmark
+ */
+class HtmlCleanerBenchmark {
+
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int PAGES = 200;
+
+    private final HtmlCleaner cleaner = new HtmlCleaner();
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    @Test
+    void allocationPerPage() {
+        String html = page();
+        assertEquals(reparse(html), cleaner.cleanDocument(Jsoup.parse(html)));
+
+        Result reparse = null;
+        Result traversal = null;
+        for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+            reparse = measure(() -> reparse(html));
+            traversal = measure(() -> cleaner.cleanDocument(Jsoup.parse(html)));
+        }
+        System.out.printf("Повторный разбор: %d КБ, %.2f мс на страницу%n", reparse.bytes / 1024, reparse.millis);
+        System.out.printf("Обход документа:  %d КБ, %.2f мс на страницу%n", traversal.bytes / 1024, traversal.millis);
+    }
+
+    private static String reparse(String html) {
+        Document fetched = Jsoup.parse(html);
+        Document doc = Jsoup.parse(fetched.html());
+        doc.select("script, style, iframe, noscript").remove();
+        return doc.text();
+    }
+
+    private Result measure(Runnable extraction) {
+        long thread = Thread.currentThread().getId();
+        long bytes = threads.getThreadAllocatedBytes(thread);
+        long started = System.nanoTime();
+        for (int i = 0; i < PAGES; i++) {
+            extraction.run();
+        }
+        long elapsed = System.nanoTime() - started;
+        return new Result((threads.getThreadAllocatedBytes(thread) - bytes) / PAGES, elapsed / 1e6 / PAGES);
+    }
+
+    private static String page() {
+        StringBuilder html = new StringBuilder("<html><head><title>Каталог</title>"
+                + "<style>p { margin: 0 }</style><script>var x = 1;</script></head><body>");
+        for (int i = 0; i < 400; i++) {
+            html.append("<div class=c><p>Слово номер ").append(i)
+                    .append(" и <a href='/p/").append(i).append("'>ссылка</a> text <b>bold</b></p>")
+                    .append("<noscript>ns</noscript><ul><li>one</li><li>two<br>three</li></ul></div>");
+        }
+        return html.append("</body></html>").toString();
+    }
+
+    private static final class Result {
+
+        private final long bytes;
+        private final double millis;
+
+        Result(long bytes, double millis) {
+            this.bytes = bytes;
+            this.millis = millis;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package searchengine.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.junit.jupiter.api.Test;
+
+class HtmlCleanerTest {
+
+    private final HtmlCleaner cleaner = new HtmlCleaner();
+
+    @Test
+    void matchesTextOfDocumentWithoutSkippedElements() {
+        String[] pages = {
+                "<html><head><title>Заголовок</title><style>p { color: red }</style></head>"
+                        + "<body><p>Первый   абзац\n\tтекста</p><div>Второй<br>блок</div>"
+                        + "<script>var x = 'не текст';</script><noscript>тоже не текст</noscript></body></html>",
+                "<p>&nbsp;неразрывный&nbsp;&nbsp;пробел</p><p>мягкий&shy;перенос и нулевой&#8203;ширины</p>",
+                "<ul><li>один</li><li>два</li></ul> <span>встроенный</span><b>жирный</b> <i>курсив</i>",
+                "<p>эмодзи 😀 и суррогатные пары</p><iframe>рамка</iframe>",
+        };
+        for (String html : pages) {
+            assertEquals(reference(html), cleaner.cleanDocument(Jsoup.parse(html)), html);
+        }
+    }
+
+    @Test
+    void leavesDocumentUnchanged() {
+        Document doc = Jsoup.parse("<p>текст <a href=\"/a\">ссылка</a></p><script>код()</script>");
+        String before = doc.html();
+
+        assertEquals("текст ссылка", cleaner.cleanDocument(doc));
+        assertEquals(before, doc.html());
+        assertEquals(1, doc.select("script").size());
+    }
+
+    @Test
+    void reusedBufferDoesNotLeakTextBetweenCalls() {
+        String large = "<p>" + "слово ".repeat(50_000) + "</p>";
+        assertEquals(reference(large), cleaner.cleanDocument(Jsoup.parse(large)));
+        assertEquals("короткая страница", cleaner.cleanDocument(Jsoup.parse("<p>короткая страница</p>")));
+        assertEquals("", cleaner.cleanDocument(Jsoup.parse("<script>только код</script>")));
+    }
+
+    private static String reference(String html) {
+        Document doc = Jsoup.parse(html);
+        doc.select("script, style, iframe, noscript").remove();
+        return doc.text();
+    }
+}
@@ -0,0 +1,119 @@
+package searchengine.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class LemmaDictionaryTest {
+
+    @Test
+    void returnsIdsOfPutLemmas() {
+        LemmaDictionary dictionary = new LemmaDictionary();
+        dictionary.put("дом", 10);
+        dictionary.put("house", 11);
+
+        assertEquals(10, dictionary.idOf("дом"));
+        assertEquals(11, dictionary.idOf("house"));
+        assertEquals(-1, dictionary.idOf("дома"));
+        assertEquals(-1, dictionary.idOf("до"));
+        assertEquals(2, dictionary.size());
+    }
+
+    @Test
+    void putReplacesIdOfExistingLemma() {
+        LemmaDictionary dictionary = new LemmaDictionary();
+        dictionary.put("сайт", 1);
+        dictionary.put("сайт", 42);
+
+        assertEquals(42, dictionary.idOf("сайт"));
+        assertEquals(1, dictionary.size());
+    }
+
+    @Test
+    void lookupAcceptsAnyCharSequence() {
+        LemmaDictionary dictionary = new LemmaDictionary();
+        dictionary.put(new StringBuilder("поиск"), 7);
+
+        assertEquals(7, dictionary.idOf("поиск"));
+        assertEquals(7, dictionary.idOf(new StringBuilder("поиск")));
+    }
+
+    @Test
+    void narrowAndWideKeysDoNotCollide() {
+        LemmaDictionary dictionary = new LemmaDictionary();
+        // "ё" и ASCII кодируются одним байтом, "é" и иероглифы - двумя байтами на символ
+        dictionary.put("ёлка", 1);
+        dictionary.put("елка", 2);
+        dictionary.put("cafe", 3);
+        dictionary.put("café", 4);
+        dictionary.put("日本", 5);
+        dictionary.put("", 6);
+        dictionary.put("Дом", 7);
+
+        assertEquals(1, dictionary.idOf("ёлка"));
+        assertEquals(2, dictionary.idOf("елка"));
+        assertEquals(3, dictionary.idOf("cafe"));
+        assertEquals(4, dictionary.idOf("café"));
+        assertEquals(5, dictionary.idOf("日本"));
+        assertEquals(6, dictionary.idOf(""));
+        assertEquals(7, dictionary.idOf("Дом"));
+        assertEquals(-1, dictionary.idOf("дом"));
+        assertEquals(7, dictionary.size());
+    }
+
+    @Test
+    void keepsLongLemmas() {
+        LemmaDictionary dictionary = new LemmaDictionary();
+        String narrow = "а".repeat(300);
+        String wide = "ü".repeat(300);
+        dictionary.put(narrow, 1);
+        dictionary.put(wide, 2);
+
+        assertEquals(1, dictionary.idOf(narrow));
+        assertEquals(2, dictionary.idOf(wide));
+        assertEquals(-1, dictionary.idOf("а".repeat(299)));
+    }
+
+    @Test
+    void growsWithoutLosingEntries() {
+        LemmaDictionary dictionary = new LemmaDictionary();
+        long initialBytes = dictionary.memoryBytes();
+        int count = 300_000;
+        for (int i = 0; i < count; i++) {
+            dictionary.put(lemma(i), i + 1);
+        }
+
+        assertEquals(count, dictionary.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(i + 1, dictionary.idOf(lemma(i)));
+        }
+        assertEquals(-1, dictionary.idOf(lemma(count)));
+
+        long bytes = dictionary.memoryBytes();
+        assertTrue(bytes > initialBytes);
+        // Таблица заполнена не больше чем наполовину, записи растут в полтора раза
+        assertTrue(bytes / count < 64, "байт на лемму: " + bytes / count);
+    }
+
+    @Test
+    void largeIdsRoundTrip() {
+        LemmaDictionary dictionary = new LemmaDictionary();
+        dictionary.put("максимум", Integer.MAX_VALUE);
+        dictionary.put("отрицательный", Integer.MIN_VALUE + 1);
+
+        assertEquals(Integer.MAX_VALUE, dictionary.idOf("максимум"));
+        assertEquals(Integer.MIN_VALUE + 1, dictionary.idOf("отрицательный"));
+    }
+
+    private static String lemma(int i) {
+        StringBuilder lemma = new StringBuilder();
+        for (int n = i; ; n /= 32) {
+            lemma.append((char) ('а' + n % 32));
+            if (n < 32) {
+                break;
+            }
+        }
+        return lemma.append(i % 3 == 0 ? "ость" : "ение").toString();
+    }
+}
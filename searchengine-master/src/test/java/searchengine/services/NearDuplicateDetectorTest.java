@@ -0,0 +1,171 @@
+package searchengine.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import searchengine.config.CrawlerSettings;
+import searchengine.repository.PageRepository;
+
+class NearDuplicateDetectorTest {
+
+    private static final String ARTICLE = "Поисковый движок обходит сайты из конфигурации и сохраняет каждую найденную страницу в базу данных. "
+            + "Для каждой страницы из текста извлекаются леммы, то есть нормальные формы слов, и для каждой леммы "
+            + "запоминается ранг на странице. Частота леммы показывает, на скольких страницах сайта она встречается. "
+            + "При поиске запрос тоже разбивается на леммы, слишком частые леммы отбрасываются, а оставшиеся "
+            + "сортируются по возрастанию частоты. Сначала выбираются страницы с самой редкой леммой, затем список "
+            + "последовательно сужается по остальным. Релевантность страницы равна сумме рангов найденных лемм, "
+            + "делённой на максимальную сумму среди всех результатов. Обход выполняется параллельно, но число "
+            + "одновременных запросов к одному хосту ограничено, чтобы не перегружать сервер. Ответы с ошибками "
+            + "сервера повторяются с экспоненциальной задержкой, а страницы, которые не изменились с прошлого обхода, "
+            + "повторно не индексируются. Почти одинаковые страницы, например печатные версии статей, сохраняются "
+            + "как ссылки на основную страницу и в индекс не попадают.";
+
+    private static final String OTHER_ARTICLE = "Сервис статистики показывает для каждого сайта число страниц и лемм, "
+            + "статус последней индексации, время изменения статуса и текст ошибки, если индексация завершилась неудачно. "
+            + "Индексацию можно запустить для всех сайтов сразу или переиндексировать одну страницу по адресу. Остановка "
+            + "прерывает загрузку страниц, снимает задачи из очереди и помечает незавершённые сайты как прерванные "
+            + "пользователем. Настройки обходчика задаются в файле конфигурации: глубина обхода, задержки между "
+            + "запросами, размер пула потоков, параметры повторов и допустимая доля ложных срабатываний фильтра "
+            + "посещённых адресов.";
+
+    private static final int SITE_ID = 1;
+
+    private final CrawlerSettings settings = new CrawlerSettings();
+    private final PageRepository pageRepository = mock(PageRepository.class);
+    private final NearDuplicateDetector detector = new NearDuplicateDetector(settings, pageRepository);
+
+    @AfterEach
+    void clearTransaction() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void shortTextHasNoFingerprint() {
+        assertNull(detector.fingerprint("Контакты: телефон и адрес офиса"));
+    }
+
+    @Test
+    void fingerprintIgnoresCaseAndPunctuation() {
+        assertEquals(detector.fingerprint(ARTICLE), detector.fingerprint(ARTICLE.toUpperCase().replace(",", " ;")));
+    }
+
+    @Test
+    void knownNearDuplicatesAreWithinMaxDistance() {
+        long article = detector.fingerprint(ARTICLE);
+        int maxDistance = settings.getNearDuplicateMaxDistance();
+
+        // Навигационная цепочка над статьёй и замена одного слова
+        assertTrue(Long.bitCount(article ^ detector.fingerprint("Главная / Статьи / " + ARTICLE)) <= maxDistance);
+        assertTrue(Long.bitCount(article ^ detector.fingerprint(ARTICLE.replace("параллельно", "одновременно"))) <= maxDistance);
+        // Разные тексты различаются примерно в половине битов
+        assertTrue(Long.bitCount(article ^ detector.fingerprint(OTHER_ARTICLE)) > 16);
+    }
+
+    @Test
+    void findsRegisteredNearDuplicateButNotDistinctPage() {
+        detector.register(SITE_ID, 10, detector.fingerprint(ARTICLE));
+
+        assertEquals(10, detector.findCanonical(SITE_ID, detector.fingerprint("Главная / Статьи / " + ARTICLE), 0));
+        assertNull(detector.findCanonical(SITE_ID, detector.fingerprint(OTHER_ARTICLE), 0));
+        // Страница не считается дубликатом самой себя, а отпечатки других сайтов не видны
+        assertNull(detector.findCanonical(SITE_ID, detector.fingerprint(ARTICLE), 10));
+        assertNull(detector.findCanonical(2, detector.fingerprint(ARTICLE), 0));
+    }
+
+    @Test
+    void bandingFindsEveryPageWithinMaxDistance() {
+        // maxDistance 3: четыре полосы по 16 бит
+        long original = 0x0123_4567_89ab_cdefL;
+        detector.register(SITE_ID, 10, original);
+
+        // Три изменённых бита в трёх разных полосах: совпадает только четвёртая
+        long threeBands = original ^ (1L) ^ (1L << 16) ^ (1L << 32);
+        assertEquals(10, detector.findCanonical(SITE_ID, threeBands, 0));
+        // Три изменённых бита в одной полосе: совпадают три другие
+        long oneBand = original ^ 0b111L;
+        assertEquals(10, detector.findCanonical(SITE_ID, oneBand, 0));
+        // По биту в каждой полосе: расстояние 4 больше допустимого, общих полос нет
+        assertNull(detector.findCanonical(SITE_ID, threeBands ^ (1L << 48), 0));
+        // Общая полоса есть, но расстояние 4 больше допустимого
+        assertNull(detector.findCanonical(SITE_ID, original ^ 0b1111L, 0));
+    }
+
+    @Test
+    void bandCountFollowsMaxDistance() {
+        settings.setNearDuplicateMaxDistance(1);
+        NearDuplicateDetector strict = new NearDuplicateDetector(settings, pageRepository);
+        long original = 0x0123_4567_89ab_cdefL;
+        strict.register(SITE_ID, 10, original);
+
+        // Две полосы по 32 бита
+        assertEquals(10, strict.findCanonical(SITE_ID, original ^ (1L << 31), 0));
+        assertNull(strict.findCanonical(SITE_ID, original ^ (1L << 31) ^ (1L << 32), 0));
+        assertNull(strict.findCanonical(SITE_ID, original ^ 0b11L, 0));
+    }
+
+    @Test
+    void loadsCanonicalPagesOfSiteFromDatabase() {
+        long simhash = detector.fingerprint(ARTICLE);
+        when(pageRepository.findSimhashesBySiteId(SITE_ID)).thenReturn(List.<Object[]>of(new Object[] {7, simhash}));
+
+        assertEquals(7, detector.findCanonical(SITE_ID, simhash, 0));
+        detector.findCanonical(SITE_ID, simhash, 0);
+        verify(pageRepository).findSimhashesBySiteId(SITE_ID);
+    }
+
+    @Test
+    void registerTakesEffectOnlyAfterCommit() {
+        long simhash = detector.fingerprint(ARTICLE);
+
+        TransactionSynchronizationManager.initSynchronization();
+        detector.register(SITE_ID, 10, simhash);
+        assertNull(detector.findCanonical(SITE_ID, simhash, 0));
+        commit();
+        assertEquals(10, detector.findCanonical(SITE_ID, simhash, 0));
+    }
+
+    @Test
+    void rolledBackRegisterLeavesNoFingerprint() {
+        long simhash = detector.fingerprint(ARTICLE);
+
+        TransactionSynchronizationManager.initSynchronization();
+        detector.register(SITE_ID, 10, simhash);
+        // Откат: afterCommit не вызывается
+        TransactionSynchronizationManager.clearSynchronization();
+
+        assertNull(detector.findCanonical(SITE_ID, simhash, 0));
+    }
+
+    @Test
+    void unregisterTakesEffectOnlyAfterCommitAndResetsDuplicates() {
+        long simhash = detector.fingerprint(ARTICLE);
+        detector.register(SITE_ID, 10, simhash);
+
+        TransactionSynchronizationManager.initSynchronization();
+        detector.unregister(SITE_ID, 10, simhash);
+        verify(pageRepository).resetDuplicatesOf(10);
+        assertNotNull(detector.findCanonical(SITE_ID, simhash, 0));
+        commit();
+        assertNull(detector.findCanonical(SITE_ID, simhash, 0));
+    }
+
+    private static void commit() {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        synchronizations.forEach(TransactionSynchronization::afterCommit);
+    }
+}
@@ -0,0 +1,176 @@
+package searchengine.services;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import searchengine.config.CrawlerSettings;
+
+class PageContentStoreTest {
+
+    private static final int SEGMENT_BYTES = 1024 * 1024;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsBackAppendedContent() throws Exception {
+        PageContentStore store = store();
+        PageContentStore.Pointer first = store.append(1, ByteBuffer.wrap(record(1, 100)));
+        PageContentStore.Pointer second = store.append(2, ByteBuffer.wrap(record(2, 200)));
+
+        assertEquals(1, first.getSegment());
+        assertEquals(0, first.getOffset());
+        assertEquals(100, second.getOffset());
+        assertArrayEquals(record(1, 100), bytes(store.read(1, first.getOffset(), first.getLength())));
+        assertArrayEquals(record(2, 200), bytes(store.read(1, second.getOffset(), second.getLength())));
+        assertTrue(store.read(1, 0, 100).isReadOnly());
+        store.close();
+    }
+
+    @Test
+    void rollsOverToNextSegmentWhenRecordDoesNotFit() throws Exception {
+        PageContentStore store = store();
+        List<PageContentStore.Pointer> pointers = new ArrayList<>();
+        // Три записи по 400 КБ: третья не помещается в сегмент 1 МБ
+        for (int page = 1; page <= 3; page++) {
+            pointers.add(store.append(page, ByteBuffer.wrap(record(page, 400 * 1024))));
+        }
+
+        assertEquals(1, pointers.get(1).getSegment());
+        assertEquals(2, pointers.get(2).getSegment());
+        assertEquals(0, pointers.get(2).getOffset());
+        assertTrue(Files.exists(dir.resolve("segment-000002.seg")));
+        assertEquals(16, Files.size(dir.resolve("segment-000002.idx")));
+        for (int page = 1; page <= 3; page++) {
+            PageContentStore.Pointer pointer = pointers.get(page - 1);
+            assertArrayEquals(record(page, 400 * 1024),
+                    bytes(store.read(pointer.getSegment(), pointer.getOffset(), pointer.getLength())));
+        }
+        store.close();
+    }
+
+    @Test
+    void rejectsRecordLargerThanSegment() throws Exception {
+        PageContentStore store = store();
+        assertThrows(IllegalArgumentException.class,
+                () -> store.append(1, ByteBuffer.wrap(new byte[SEGMENT_BYTES + 1])));
+        store.close();
+    }
+
+    @Test
+    void reopenedStoreContinuesAfterLastIndexedRecord() throws Exception {
+        PageContentStore store = store();
+        store.append(1, ByteBuffer.wrap(record(1, 1000)));
+        PageContentStore.Pointer kept = store.append(2, ByteBuffer.wrap(record(2, 500)));
+        store.close();
+
+        PageContentStore reopened = store();
+        PageContentStore.Pointer next = reopened.append(3, ByteBuffer.wrap(record(3, 300)));
+        assertEquals(1, next.getSegment());
+        assertEquals(1500, next.getOffset());
+        assertArrayEquals(record(2, 500), bytes(reopened.read(1, kept.getOffset(), kept.getLength())));
+        reopened.close();
+    }
+
+    @Test
+    void tornIndexEntryIsDiscardedOnReopen() throws Exception {
+        PageContentStore store = store();
+        PageContentStore.Pointer kept = store.append(1, ByteBuffer.wrap(record(1, 700)));
+        store.close();
+
+        // Сбой во время записи индекса: в конце .idx осталась неполная запись
+        Path index = dir.resolve("segment-000001.idx");
+        Files.write(index, new byte[] {0, 0, 0, 2, 0, 0, 0}, StandardOpenOption.APPEND);
+
+        PageContentStore reopened = store();
+        PageContentStore.Pointer next = reopened.append(2, ByteBuffer.wrap(record(2, 50)));
+        assertEquals(700, next.getOffset());
+        assertEquals(32, Files.size(index));
+        assertArrayEquals(record(1, 700), bytes(reopened.read(1, kept.getOffset(), kept.getLength())));
+        assertArrayEquals(record(2, 50), bytes(reopened.read(1, next.getOffset(), next.getLength())));
+        reopened.close();
+    }
+
+    @Test
+    void reopenedStoreAppendsToLatestSegment() throws Exception {
+        PageContentStore store = store();
+        for (int page = 1; page <= 3; page++) {
+            store.append(page, ByteBuffer.wrap(record(page, 400 * 1024)));
+        }
+        store.close();
+
+        PageContentStore reopened = store();
+        PageContentStore.Pointer next = reopened.append(4, ByteBuffer.wrap(record(4, 10)));
+        assertEquals(2, next.getSegment());
+        assertEquals(400 * 1024, next.getOffset());
+        // Сегмент 1 после перезапуска отображается только для чтения
+        assertArrayEquals(record(1, 400 * 1024), bytes(reopened.read(1, 0, 400 * 1024)));
+        reopened.close();
+    }
+
+    @Test
+    void concurrentAppendsAreAllIndexedAcrossSegments() throws Exception {
+        PageContentStore store = store();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<PageContentStore.Pointer>> futures = new ArrayList<>();
+        // 64 записи по 40 КБ не помещаются в один сегмент 1 МБ
+        for (int page = 1; page <= 64; page++) {
+            int id = page;
+            futures.add(pool.submit(() -> store.append(id, ByteBuffer.wrap(record(id, 40 * 1024)))));
+        }
+        List<PageContentStore.Pointer> pointers = new ArrayList<>();
+        for (Future<PageContentStore.Pointer> future : futures) {
+            pointers.add(future.get());
+        }
+        pool.shutdown();
+        store.close();
+
+        long entries = Files.size(dir.resolve("segment-000001.idx")) / 16
+                + Files.size(dir.resolve("segment-000002.idx")) / 16
+                + Files.size(dir.resolve("segment-000003.idx")) / 16;
+        assertEquals(64, entries);
+        PageContentStore reopened = store();
+        for (int page = 1; page <= 64; page++) {
+            PageContentStore.Pointer pointer = pointers.get(page - 1);
+            assertArrayEquals(record(page, 40 * 1024),
+                    bytes(reopened.read(pointer.getSegment(), pointer.getOffset(), pointer.getLength())));
+        }
+        reopened.close();
+    }
+
+    private PageContentStore store() {
+        CrawlerSettings settings = new CrawlerSettings();
+        settings.setContentStoreDir(dir.toString());
+        settings.setContentSegmentSizeMb(SEGMENT_BYTES / (1024 * 1024));
+        return new PageContentStore(settings);
+    }
+
+    private static byte[] record(int page, int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (page * 31 + i);
+        }
+        return data;
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        byte[] data = new byte[buffer.remaining()];
+        buffer.get(data);
+        return data;
+    }
+}
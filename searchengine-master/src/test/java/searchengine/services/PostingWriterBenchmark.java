@@ -0,0 +1,104 @@
+package searchengine.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import searchengine.config.CrawlerSettings;
+import searchengine.entity.Index;
+
+/**
+ * Скорость записи индекса (таблица idx), записей в секунду: по одной строке на INSERT,
+ * как вставлял Hibernate, против пакетов PostingWriter. Каждая страница - отдельная транзакция.
+ *
+ * Нужен MySQL; без -Dbenchmark.jdbc-url замер пропускается:
+ * mvn test -Pbenchmark -Dtest=PostingWriterBenchmark
+ *     -Dbenchmark.jdbc-url=jdbc:mysql://localhost:3306/search_engine
+ *     -Dbenchmark.jdbc-user=root -Dbenchmark.jdbc-password=...
+ *
+ * Запись идёт во временную таблицу idx одного соединения: она скрывает постоянную
+ * таблицу idx только для этого соединения, поэтому данные базы не изменяются.
+ */
+class PostingWriterBenchmark {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO idx (page_id, lemma_id, lemma, idx, rank_value) VALUES (?, ?, ?, ?, ?)";
+
+    private static final int PAGES = 200;
+    private static final int POSTINGS_PER_PAGE = 500;
+
+    @Test
+    void postingsPerSecond() throws Exception {
+        String url = System.getProperty("benchmark.jdbc-url");
+        assumeTrue(url != null, "не задан -Dbenchmark.jdbc-url");
+        if (!url.contains("rewriteBatchedStatements")) {
+            url += (url.contains("?") ? "&" : "?") + "rewriteBatchedStatements=true";
+        }
+        SingleConnectionDataSource dataSource = new SingleConnectionDataSource(url,
+                System.getProperty("benchmark.jdbc-user", "root"),
+                System.getProperty("benchmark.jdbc-password", ""), true);
+        dataSource.setAutoCommit(false);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        try {
+            jdbcTemplate.execute("CREATE TEMPORARY TABLE idx ("
+                    + "id INT NOT NULL AUTO_INCREMENT, page_id INT NOT NULL, lemma_id INT NOT NULL,"
+                    + " lemma VARCHAR(255) NOT NULL, idx INT NOT NULL, rank_value FLOAT NOT NULL,"
+                    + " PRIMARY KEY (id), UNIQUE KEY uk_idx_lemma_page (lemma_id, page_id), KEY ix_idx_page (page_id)"
+                    + ") ENGINE = InnoDB DEFAULT CHARSET = utf8mb4");
+            Connection connection = dataSource.getConnection();
+
+            long started = System.nanoTime();
+            for (int page = 1; page <= PAGES; page++) {
+                for (Index posting : postings(page)) {
+                    jdbcTemplate.update(INSERT_SQL, posting.getPageId(), posting.getLemmaId(),
+                            posting.getLemma(), posting.getIdx(), posting.getRank());
+                }
+                connection.commit();
+            }
+            double rowByRow = PAGES * POSTINGS_PER_PAGE / ((System.nanoTime() - started) / 1e9);
+            assertEquals(PAGES * POSTINGS_PER_PAGE, count(jdbcTemplate));
+            jdbcTemplate.execute("TRUNCATE TABLE idx");
+
+            PostingWriter writer = new PostingWriter(jdbcTemplate, new CrawlerSettings());
+            started = System.nanoTime();
+            for (int page = 1; page <= PAGES; page++) {
+                writer.write(postings(page));
+                connection.commit();
+            }
+            double batched = PAGES * POSTINGS_PER_PAGE / ((System.nanoTime() - started) / 1e9);
+            assertEquals(PAGES * POSTINGS_PER_PAGE, count(jdbcTemplate));
+
+            System.out.printf("По одной строке: %.0f записей/с%n", rowByRow);
+            System.out.printf("PostingWriter:   %.0f записей/с с фиксацией страниц, %.0f записей/с без неё%n",
+                    batched, writer.getPostingsPerSecond());
+        } finally {
+            jdbcTemplate.execute("DROP TEMPORARY TABLE IF EXISTS idx");
+            dataSource.destroy();
+        }
+    }
+
+    private static int count(JdbcTemplate jdbcTemplate) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM idx", Integer.class);
+    }
+
+    private static List<Index> postings(int page) {
+        List<Index> postings = new ArrayList<>(POSTINGS_PER_PAGE);
+        for (int i = 0; i < POSTINGS_PER_PAGE; i++) {
+            Index posting = new Index();
+            posting.setPageId(page);
+            posting.setLemmaId(1 + (page * 7919 + i) % 50_000);
+            posting.setLemma("лемма" + posting.getLemmaId());
+            posting.setIdx(i);
+            posting.setRank(1 + i % 5);
+            postings.add(posting);
+        }
+        return postings;
+    }
+}
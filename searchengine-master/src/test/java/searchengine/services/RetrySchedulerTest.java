@@ -0,0 +1,178 @@
+package searchengine.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jsoup.HttpStatusException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
+
+import searchengine.config.CrawlerSettings;
+
+class RetrySchedulerTest {
+
+    private final CrawlerSettings settings = new CrawlerSettings();
+    private RetryScheduler scheduler;
+
+    @AfterEach
+    void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    void retriesTransientFailuresUntilSuccess() throws Exception {
+        scheduler = scheduler(3, 1, 5);
+        AtomicInteger attempts = new AtomicInteger();
+
+        CompletableFuture<String> result = scheduler.execute("тест", () -> attempts.incrementAndGet() < 3
+                        ? CompletableFuture.failedFuture(new SocketTimeoutException("таймаут"))
+                        : CompletableFuture.completedFuture("ok"),
+                RetryScheduler::isTransientFetchError, null);
+
+        assertEquals("ok", result.get(5, TimeUnit.SECONDS));
+        assertEquals(3, attempts.get());
+    }
+
+    @Test
+    void givesUpAfterMaxAttemptsWithLastError() throws Exception {
+        scheduler = scheduler(3, 1, 5);
+        AtomicInteger attempts = new AtomicInteger();
+        SocketTimeoutException error = new SocketTimeoutException("таймаут");
+
+        CompletableFuture<String> result = scheduler.execute("тест", () -> {
+            attempts.incrementAndGet();
+            return CompletableFuture.failedFuture(error);
+        }, RetryScheduler::isTransientFetchError, null);
+
+        ExecutionException thrown = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+        assertSame(error, thrown.getCause());
+        assertEquals(3, attempts.get());
+    }
+
+    @Test
+    void permanentErrorIsNotRetried() {
+        scheduler = scheduler(3, 1, 5);
+        AtomicInteger attempts = new AtomicInteger();
+
+        CompletableFuture<String> result = scheduler.execute("тест", () -> {
+            attempts.incrementAndGet();
+            return CompletableFuture.failedFuture(new HttpStatusException("не найдено", 404, "https://example.com/"));
+        }, RetryScheduler::isTransientFetchError, null);
+
+        assertThrows(CompletionException.class, result::join);
+        assertEquals(1, attempts.get());
+        assertEquals(0, scheduler.pendingRetries());
+    }
+
+    @Test
+    void backoffDoublesUpToMaxWithJitterInUpperHalf() {
+        scheduler = scheduler(10, 100, 1000);
+        for (int failed = 1; failed <= 40; failed++) {
+            long exponential = Math.min(1000, failed >= 31 ? 1000 : 100L << (failed - 1));
+            for (int i = 0; i < 200; i++) {
+                long delay = scheduler.backoffMillis(failed);
+                assertTrue(delay >= exponential / 2 && delay <= exponential,
+                        "задержка " + delay + " после " + failed + " попыток вне [" + exponential / 2 + ", " + exponential + "]");
+            }
+        }
+    }
+
+    @Test
+    void classifiesTransientFetchErrors() {
+        assertTrue(RetryScheduler.isTransientFetchError(new HttpStatusException("много запросов", 429, "u")));
+        assertTrue(RetryScheduler.isTransientFetchError(new HttpStatusException("ошибка сервера", 500, "u")));
+        assertTrue(RetryScheduler.isTransientFetchError(new HttpStatusException("недоступен", 503, "u")));
+        assertFalse(RetryScheduler.isTransientFetchError(new HttpStatusException("не найдено", 404, "u")));
+        assertFalse(RetryScheduler.isTransientFetchError(new HttpStatusException("запрещено", 403, "u")));
+        assertTrue(RetryScheduler.isTransientFetchError(new SocketTimeoutException()));
+        assertTrue(RetryScheduler.isTransientFetchError(new ConnectException()));
+        assertTrue(RetryScheduler.isTransientFetchError(new CompletionException(new SocketTimeoutException())));
+        // Прерванная отменой загрузка не повторяется
+        assertFalse(RetryScheduler.isTransientFetchError(new InterruptedIOException()));
+        assertFalse(RetryScheduler.isTransientFetchError(new IllegalArgumentException()));
+    }
+
+    @Test
+    void classifiesTransientPersistErrors() {
+        assertTrue(RetryScheduler.isTransientPersistError(new QueryTimeoutException("блокировка")));
+        assertTrue(RetryScheduler.isTransientPersistError(
+                new CompletionException(new RuntimeException("обёртка", new QueryTimeoutException("блокировка")))));
+        assertFalse(RetryScheduler.isTransientPersistError(new DataIntegrityViolationException("дубликат")));
+        assertFalse(RetryScheduler.isTransientPersistError(new SocketTimeoutException()));
+    }
+
+    @Test
+    void cancellingTokenRemovesWaitingRetry() {
+        scheduler = scheduler(3, 60_000, 60_000);
+        CancellationToken token = new CancellationToken();
+        AtomicInteger attempts = new AtomicInteger();
+
+        CompletableFuture<String> result = scheduler.execute("тест", () -> {
+            attempts.incrementAndGet();
+            return CompletableFuture.failedFuture(new SocketTimeoutException());
+        }, RetryScheduler::isTransientFetchError, token);
+        assertEquals(1, scheduler.pendingRetries());
+
+        token.cancel();
+        assertThrows(CancellationException.class, result::join);
+        assertEquals(0, scheduler.pendingRetries());
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    void tokenCancelledWhileSchedulingLeavesNoQueuedRetry() {
+        scheduler = scheduler(3, 60_000, 60_000);
+        CancellationToken token = new CancellationToken();
+
+        // Отмена приходит между проверкой признака и постановкой повтора в очередь
+        CompletableFuture<String> result = scheduler.execute("тест",
+                () -> CompletableFuture.failedFuture(new SocketTimeoutException()),
+                error -> {
+                    token.cancel();
+                    return true;
+                }, token);
+
+        assertThrows(CancellationException.class, result::join);
+        assertEquals(0, scheduler.pendingRetries());
+    }
+
+    @Test
+    void alreadyCancelledTokenSkipsAttempt() {
+        scheduler = scheduler(3, 1, 5);
+        CancellationToken token = new CancellationToken();
+        token.cancel();
+        AtomicInteger attempts = new AtomicInteger();
+
+        CompletableFuture<String> result = scheduler.execute("тест", () -> {
+            attempts.incrementAndGet();
+            return CompletableFuture.completedFuture("ok");
+        }, RetryScheduler::isTransientFetchError, token);
+
+        assertThrows(CancellationException.class, result::join);
+        assertEquals(0, attempts.get());
+    }
+
+    private RetryScheduler scheduler(int maxAttempts, long baseDelayMs, long maxDelayMs) {
+        settings.setRetryMaxAttempts(maxAttempts);
+        settings.setRetryBaseDelayMs(baseDelayMs);
+        settings.setRetryMaxDelayMs(maxDelayMs);
+        return new RetryScheduler(settings);
+    }
+}
@@ -0,0 +1,118 @@
+package searchengine.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class RobotsRulesTest {
+
+    private static final String SITE = "https://example.com";
+
+    @Test
+    void longestMatchingRuleWins() throws Exception {
+        RobotsRules rules = parse(
+                "User-agent: *",
+                "Disallow: /shop",
+                "Allow: /shop/catalog",
+                "Disallow: /shop/catalog/private");
+
+        assertFalse(rules.isAllowed(SITE + "/shop/cart"));
+        assertTrue(rules.isAllowed(SITE + "/shop/catalog/item-1"));
+        assertFalse(rules.isAllowed(SITE + "/shop/catalog/private/1"));
+        assertTrue(rules.isAllowed(SITE + "/news"));
+    }
+
+    @Test
+    void allowWinsTieOfEqualLength() throws Exception {
+        RobotsRules rules = parse(
+                "User-agent: *",
+                "Disallow: /page",
+                "Allow: /page");
+
+        assertTrue(rules.isAllowed(SITE + "/page/1"));
+
+        RobotsRules wildcards = parse(
+                "User-agent: *",
+                "Allow: /*.html",
+                "Disallow: /a*.htm");
+        assertTrue(wildcards.isAllowed(SITE + "/about.html"));
+    }
+
+    @Test
+    void wildcardMatchesAnySequence() throws Exception {
+        RobotsRules rules = parse(
+                "User-agent: *",
+                "Disallow: /*?sort=",
+                "Disallow: /users/*/settings");
+
+        assertFalse(rules.isAllowed(SITE + "/catalog?sort=price&page=2"));
+        assertTrue(rules.isAllowed(SITE + "/catalog?page=2"));
+        assertFalse(rules.isAllowed(SITE + "/users/42/settings/email"));
+        assertTrue(rules.isAllowed(SITE + "/users/42/profile"));
+    }
+
+    @Test
+    void dollarAnchorsEndOfPath() throws Exception {
+        RobotsRules rules = parse(
+                "User-agent: *",
+                "Disallow: /*.pdf$",
+                "Disallow: /exact$");
+
+        assertFalse(rules.isAllowed(SITE + "/files/report.pdf"));
+        assertTrue(rules.isAllowed(SITE + "/files/report.pdf?download=1"));
+        assertTrue(rules.isAllowed(SITE + "/files/report.pdfx"));
+        assertFalse(rules.isAllowed(SITE + "/exact"));
+        assertTrue(rules.isAllowed(SITE + "/exact/more"));
+    }
+
+    @Test
+    void onlyWildcardAgentGroupApplies() throws Exception {
+        RobotsRules rules = parse(
+                "User-agent: Googlebot",
+                "Disallow: /google-only",
+                "",
+                "User-agent: Yandex",
+                "User-agent: *",
+                "Disallow: /private # комментарий",
+                "",
+                "User-agent: Bingbot",
+                "Disallow: /bing-only");
+
+        assertTrue(rules.isAllowed(SITE + "/google-only"));
+        assertTrue(rules.isAllowed(SITE + "/bing-only"));
+        assertFalse(rules.isAllowed(SITE + "/private/1"));
+    }
+
+    @Test
+    void emptyDisallowAllowsEverything() throws Exception {
+        RobotsRules rules = parse(
+                "User-agent: *",
+                "Disallow:");
+
+        assertTrue(rules.isAllowed(SITE + "/anything"));
+        assertTrue(RobotsRules.allowAll().isAllowed(SITE + "/anything"));
+    }
+
+    @Test
+    void collectsSitemapsFromAnyGroup() throws Exception {
+        RobotsRules rules = parse(
+                "Sitemap: https://example.com/sitemap.xml",
+                "User-agent: Googlebot",
+                "Disallow: /",
+                "sitemap: https://example.com/news.xml");
+
+        assertEquals(List.of("https://example.com/sitemap.xml", "https://example.com/news.xml"),
+                rules.getSitemaps());
+        assertTrue(rules.isAllowed(SITE + "/"));
+    }
+
+    private static RobotsRules parse(String... lines) throws Exception {
+        return RobotsRules.parse(new BufferedReader(new StringReader(String.join("\n", lines))));
+    }
+}
@@ -0,0 +1,136 @@
+package searchengine.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import searchengine.dto.statistics.SearchResultDTO;
+import searchengine.entity.Page;
+import searchengine.entity.Site;
+import searchengine.repository.IndexRepository;
+import searchengine.repository.LemmaRepository;
+import searchengine.repository.PageRepository;
+import searchengine.repository.SiteRepository;
+
+/**
+ * Ранжирование поиска по таблице idx: страница должна содержать все леммы запроса,
+ * релевантность - сумма рангов, делённая на максимальную.
+ */
+class SearchServiceTest {
+
+    private final LemmaRepository lemmaRepository = mock(LemmaRepository.class);
+    private final PageRepository pageRepository = mock(PageRepository.class);
+    private final SiteRepository siteRepository = mock(SiteRepository.class);
+    private final IndexRepository indexRepository = mock(IndexRepository.class);
+    private final PageContentService pageContentService = mock(PageContentService.class);
+    private final Lemmatizer lemmatizer = mock(Lemmatizer.class);
+
+    private final Site site = new Site();
+    private final Map<Integer, Page> pages = new HashMap<>();
+    private SearchService searchService;
+
+    @BeforeEach
+    void setUp() {
+        site.setId(1);
+        site.setUrl("https://example.com");
+        site.setName("Пример");
+        when(siteRepository.findByUrl("https://example.com")).thenReturn(Optional.of(site));
+        when(siteRepository.findAll()).thenReturn(List.of(site));
+        // Слова запроса уже в нормальной форме
+        when(lemmatizer.contentLemmaOf(anyString())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(pageRepository.findAllById(any())).thenAnswer(invocation -> {
+            List<Page> found = new ArrayList<>();
+            for (Integer id : invocation.<Iterable<Integer>>getArgument(0)) {
+                found.add(pages.get(id));
+            }
+            return found;
+        });
+        when(pageContentService.loadAll(anyCollection())).thenAnswer(invocation -> invocation.<Collection<Page>>getArgument(0)
+                .stream().collect(Collectors.toMap(Page::getId, page -> "текст страницы " + page.getId())));
+        for (int id = 1; id <= 4; id++) {
+            Page page = new Page();
+            page.setId(id);
+            page.setSite(site);
+            page.setPath("/page-" + id);
+            page.setTitle("Страница " + id);
+            pages.put(id, page);
+        }
+        searchService = new SearchService(lemmaRepository, pageRepository, siteRepository,
+                indexRepository, pageContentService, lemmatizer);
+    }
+
+    @Test
+    void ranksPagesBySumOfRanksNormalizedToBest() {
+        when(lemmaRepository.findIdsBySiteIdsAndLemmaTexts(List.of(1), List.of("поиск", "индекс")))
+                .thenReturn(List.of(10, 11));
+        when(indexRepository.sumRanksByLemmaIds(List.of(10, 11), 2)).thenReturn(List.of(
+                new Object[]{1, 2.0}, new Object[]{2, 8.0}, new Object[]{3, 4.0}));
+
+        List<SearchResultDTO> results = searchService.search("поиск индекс", "https://example.com", 0, 10);
+
+        assertEquals(List.of("/page-2", "/page-3", "/page-1"),
+                results.stream().map(SearchResultDTO::getUri).collect(Collectors.toList()));
+        assertEquals(1.0, results.get(0).getRelevance(), 1e-9);
+        assertEquals(0.5, results.get(1).getRelevance(), 1e-9);
+        assertEquals(0.25, results.get(2).getRelevance(), 1e-9);
+    }
+
+    @Test
+    void requiresEveryQueryLemmaOnThePage() {
+        when(lemmaRepository.findIdsBySiteIdsAndLemmaTexts(List.of(1), List.of("поиск", "индекс", "сайт")))
+                .thenReturn(List.of(10, 11, 12));
+        when(indexRepository.sumRanksByLemmaIds(List.of(10, 11, 12), 3)).thenReturn(List.<Object[]>of(new Object[]{4, 3.0}));
+
+        List<SearchResultDTO> results = searchService.search("поиск индекс сайт", null, 0, 10);
+
+        // Запрос группирует по странице и оставляет только страницы со всеми тремя леммами
+        verify(indexRepository).sumRanksByLemmaIds(List.of(10, 11, 12), 3);
+        assertEquals(1, results.size());
+        assertEquals("/page-4", results.get(0).getUri());
+    }
+
+    @Test
+    void lemmaMissingFromSiteMeansNoResults() {
+        // Одна из лемм запроса на сайте не встречается: ни одна страница не содержит всех
+        when(lemmaRepository.findIdsBySiteIdsAndLemmaTexts(List.of(1), List.of("поиск", "отсутствует")))
+                .thenReturn(List.of(10));
+
+        List<SearchResultDTO> results = searchService.search("поиск отсутствует", "https://example.com", 0, 10);
+
+        assertTrue(results.isEmpty());
+        verify(indexRepository, never()).sumRanksByLemmaIds(anyCollection(), anyLong());
+    }
+
+    @Test
+    void loadsOnlyTheRequestedSlice() {
+        when(lemmaRepository.findIdsBySiteIdsAndLemmaTexts(List.of(1), List.of("поиск"))).thenReturn(List.of(10));
+        when(indexRepository.sumRanksByLemmaIds(List.of(10), 1)).thenReturn(List.of(
+                new Object[]{1, 1.0}, new Object[]{2, 4.0}, new Object[]{3, 3.0}, new Object[]{4, 2.0}));
+
+        List<SearchResultDTO> results = searchService.search("поиск", "https://example.com", 1, 2);
+
+        assertEquals(List.of("/page-3", "/page-4"),
+                results.stream().map(SearchResultDTO::getUri).collect(Collectors.toList()));
+        // Релевантность нормируется по лучшей странице всей выдачи, а не среза
+        assertEquals(0.75, results.get(0).getRelevance(), 1e-9);
+        verify(pageRepository).findAllById(List.of(3, 4));
+    }
+}
@@ -0,0 +1,202 @@
+package searchengine.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+/**
+ * Время запросов поиска до и после миграции V4 (уникальность лемм в пределах сайта
+ * и индексы по (сайт, лемма), (лемма, страница) и (сайт, путь)), с планами EXPLAIN:
+ * поиск леммы сайта (LemmaRepository.findBySiteIdAndLemmaText), суммы рангов страниц
+ * по леммам запроса (IndexRepository.sumRanksByLemmaIds) и страницы по пути
+ * (PageRepository.findByPathAndSiteId).
+ *
+ * Нужен MySQL; без -Dbenchmark.jdbc-url замер пропускается:
+ * mvn test -Pbenchmark -Dtest=SiteScopedIndexesBenchmark
+ *     -Dbenchmark.jdbc-url=jdbc:mysql://localhost:3306/search_engine
+ *     -Dbenchmark.jdbc-user=root -Dbenchmark.jdbc-password=...
+ *
+ * Схема создаётся миграциями V1-V3 в отдельной базе (-Dbenchmark.schema, по умолчанию
+ * search_engine_v4_benchmark), заполняется, дополняется миграцией V4 и в конце удаляется.
+ */
+class SiteScopedIndexesBenchmark {
+
+    private static final int QUERY_LEMMAS = 3;
+
+    private static final String LEMMA_SQL =
+            "SELECT id, siteid, lemma_text, frequency FROM lemma WHERE siteid = ? AND lemma_text = ?";
+    private static final String RANK_SQL =
+            "SELECT page_id, SUM(rank_value) FROM idx WHERE lemma_id IN ("
+                    + String.join(", ", Collections.nCopies(QUERY_LEMMAS, "?")) + ")"
+                    + " GROUP BY page_id HAVING COUNT(DISTINCT lemma_id) = ? ORDER BY page_id";
+    private static final String PAGE_SQL =
+            "SELECT id, siteid, path, code, title FROM page WHERE path = ? AND siteid = ?";
+
+    private static final int SITES = 4;
+    private static final int PAGES_PER_SITE = 2_000;
+    private static final int LEMMAS_PER_SITE = 20_000;
+    private static final int POSTINGS_PER_PAGE = 100;
+    private static final int ITERATIONS = 50;
+    private static final int WARMUP_ITERATIONS = 5;
+
+    @Test
+    void queriesBeforeAndAfterV4() {
+        String url = System.getProperty("benchmark.jdbc-url");
+        assumeTrue(url != null, "не задан -Dbenchmark.jdbc-url");
+        if (!url.contains("rewriteBatchedStatements")) {
+            url += (url.contains("?") ? "&" : "?") + "rewriteBatchedStatements=true";
+        }
+        String schema = System.getProperty("benchmark.schema", "search_engine_v4_benchmark");
+        SingleConnectionDataSource dataSource = new SingleConnectionDataSource(url,
+                System.getProperty("benchmark.jdbc-user", "root"),
+                System.getProperty("benchmark.jdbc-password", ""), true);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        try {
+            jdbcTemplate.execute("DROP DATABASE IF EXISTS " + schema);
+            jdbcTemplate.execute("CREATE DATABASE " + schema + " DEFAULT CHARSET = utf8mb4");
+            migrate(dataSource, jdbcTemplate, schema, "3");
+            seed(jdbcTemplate);
+
+            Map<String, Object> before = measure("До V4", jdbcTemplate);
+            migrate(dataSource, jdbcTemplate, schema, "4");
+            Map<String, Object> after = measure("После V4", jdbcTemplate);
+            assertEquals(before, after);
+        } finally {
+            jdbcTemplate.execute("DROP DATABASE IF EXISTS " + schema);
+            dataSource.destroy();
+        }
+    }
+
+    private static void migrate(SingleConnectionDataSource dataSource, JdbcTemplate jdbcTemplate,
+                                String schema, String target) {
+        Flyway.configure()
+                .dataSource(dataSource)
+                .schemas(schema)
+                .locations("classpath:db/migration")
+                .target(target)
+                .load()
+                .migrate();
+        jdbcTemplate.execute("USE " + schema);
+        jdbcTemplate.execute("ANALYZE TABLE lemma, idx, page");
+    }
+
+    private static void seed(JdbcTemplate jdbcTemplate) {
+        Random random = new Random(42);
+        for (int site = 1; site <= SITES; site++) {
+            jdbcTemplate.update("INSERT INTO site (id, status, status_time, url, name) VALUES (?, 'INDEXED', NOW(6), ?, ?)",
+                    site, "https://site" + site + ".example", "Сайт " + site);
+
+            List<Object[]> lemmas = new ArrayList<>(LEMMAS_PER_SITE);
+            for (int lemma = 0; lemma < LEMMAS_PER_SITE; lemma++) {
+                lemmas.add(new Object[]{lemmaId(site, lemma), site, lemmaText(lemma), 0});
+            }
+            jdbcTemplate.batchUpdate("INSERT INTO lemma (id, siteid, lemma_text, frequency) VALUES (?, ?, ?, ?)", lemmas);
+
+            List<Object[]> pages = new ArrayList<>(PAGES_PER_SITE);
+            List<Object[]> postings = new ArrayList<>(PAGES_PER_SITE * POSTINGS_PER_PAGE);
+            for (int page = 0; page < PAGES_PER_SITE; page++) {
+                int pageId = (site - 1) * PAGES_PER_SITE + page + 1;
+                pages.add(new Object[]{pageId, site, path(page), 200, "Страница " + page});
+                // Частые леммы встречаются на многих страницах, редкие - на немногих
+                Set<Integer> pageLemmas = new LinkedHashSet<>();
+                while (pageLemmas.size() < POSTINGS_PER_PAGE) {
+                    double r = random.nextDouble();
+                    pageLemmas.add((int) (LEMMAS_PER_SITE * r * r * r));
+                }
+                for (int lemma : pageLemmas) {
+                    postings.add(new Object[]{pageId, lemmaId(site, lemma), lemmaText(lemma),
+                            postings.size() % POSTINGS_PER_PAGE, 1 + random.nextInt(5)});
+                }
+            }
+            jdbcTemplate.batchUpdate("INSERT INTO page (id, siteid, path, code, title) VALUES (?, ?, ?, ?, ?)", pages);
+            jdbcTemplate.batchUpdate("INSERT INTO idx (page_id, lemma_id, lemma, idx, rank_value) VALUES (?, ?, ?, ?, ?)",
+                    postings);
+        }
+        jdbcTemplate.update("UPDATE lemma l SET l.frequency = (SELECT COUNT(*) FROM idx i WHERE i.lemma_id = l.id)");
+    }
+
+    /**
+     * Печатает среднее время и план каждого запроса; возвращает их результаты
+     * для одних и тех же параметров, чтобы сравнить до и после миграции.
+     */
+    private static Map<String, Object> measure(String label, JdbcTemplate jdbcTemplate) {
+        Map<String, Object> results = new LinkedHashMap<>();
+        System.out.println(label + ":");
+        results.put("lemma", time("findBySiteIdAndLemmaText", jdbcTemplate, SiteScopedIndexesBenchmark::lemmaQuery));
+        results.put("rank", time("sumRanksByLemmaIds", jdbcTemplate, SiteScopedIndexesBenchmark::rankQuery));
+        results.put("page", time("findByPathAndSiteId", jdbcTemplate, SiteScopedIndexesBenchmark::pageQuery));
+        return results;
+    }
+
+    private static List<Map<String, Object>> time(String name, JdbcTemplate jdbcTemplate, IntFunction<Query> queries) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            queries.apply(i).run(jdbcTemplate);
+        }
+        long started = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            queries.apply(WARMUP_ITERATIONS + i).run(jdbcTemplate);
+        }
+        System.out.printf("  %s: %.0f мкс на запрос%n", name, (System.nanoTime() - started) / 1e3 / ITERATIONS);
+
+        Query sample = queries.apply(0);
+        for (Map<String, Object> row : jdbcTemplate.queryForList("EXPLAIN " + sample.sql(), sample.args())) {
+            System.out.println("    EXPLAIN " + row);
+        }
+        return sample.run(jdbcTemplate);
+    }
+
+    private static Query lemmaQuery(int i) {
+        return new Query(LEMMA_SQL, 1 + i % SITES, lemmaText((i * 7919) % LEMMAS_PER_SITE));
+    }
+
+    /**
+     * Несколько частых лемм одного сайта, в том виде, в каком Hibernate
+     * выполняет sumRanksByLemmaIds.
+     */
+    private static Query rankQuery(int i) {
+        int site = 1 + i % SITES;
+        Object[] args = new Object[QUERY_LEMMAS + 1];
+        for (int k = 0; k < QUERY_LEMMAS; k++) {
+            args[k] = lemmaId(site, (i * 31 + k * 7) % 200);
+        }
+        args[QUERY_LEMMAS] = QUERY_LEMMAS;
+        return new Query(RANK_SQL, args);
+    }
+
+    private static Query pageQuery(int i) {
+        return new Query(PAGE_SQL, path((i * 7919) % PAGES_PER_SITE), 1 + i % SITES);
+    }
+
+    private static int lemmaId(int site, int lemma) {
+        return (site - 1) * LEMMAS_PER_SITE + lemma + 1;
+    }
+
+    private static String lemmaText(int lemma) {
+        return "лемма" + lemma;
+    }
+
+    private static String path(int page) {
+        return "/section/" + page % 50 + "/page-" + page + ".html";
+    }
+
+    private record Query(String sql, Object... args) {
+
+        List<Map<String, Object>> run(JdbcTemplate jdbcTemplate) {
+            return jdbcTemplate.queryForList(sql, args);
+        }
+    }
+}
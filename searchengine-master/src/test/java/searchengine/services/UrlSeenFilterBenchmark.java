@@ -0,0 +1,54 @@
+package searchengine.services;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Память на миллион URL: UrlSeenFilter против HashSet&lt;String&gt;.
+ * Запуск: mvn test -Pbenchmark -Dtest=UrlSeenFilterBenchmark
+ */
+class UrlSeenFilterBenchmark {
+
+    private static final int URLS = 1_000_000;
+
+    @Test
+    void memoryPerMillionUrls() {
+        UrlSeenFilter indexed = new UrlSeenFilter(0.001, url -> false);
+        UrlSeenFilter queued = new UrlSeenFilter(0.001, url -> false);
+        for (int i = 0; i < URLS; i++) {
+            String url = url(i);
+            indexed.add(url);
+            indexed.markIndexed(url);
+            queued.add(url);
+        }
+
+        long before = usedHeap();
+        Set<String> set = new HashSet<>();
+        for (int i = 0; i < URLS; i++) {
+            set.add(url(i));
+        }
+        long hashSetBytes = usedHeap() - before;
+
+        System.out.printf("UrlSeenFilter, все страницы сохранены: %.1f МБ вне heap%n", mb(indexed.offHeapBytes()));
+        System.out.printf("UrlSeenFilter, все URL в очереди:      %.1f МБ вне heap%n", mb(queued.offHeapBytes()));
+        System.out.printf("HashSet<String>:                       %.1f МБ heap (%d URL)%n", mb(hashSetBytes), set.size());
+    }
+
+    private static String url(int i) {
+        return "https://www.example.com/catalog/section-" + (i % 500) + "/item-" + i + "?utm_source=feed";
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static double mb(long bytes) {
+        return bytes / (1024.0 * 1024.0);
+    }
+}
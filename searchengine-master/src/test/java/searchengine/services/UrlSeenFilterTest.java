@@ -0,0 +1,122 @@
+package searchengine.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class UrlSeenFilterTest {
+
+    @Test
+    void secondAddOfSameUrlIsRejected() {
+        UrlSeenFilter filter = new UrlSeenFilter(0.001, url -> false);
+
+        assertTrue(filter.add("https://example.com/a"));
+        assertFalse(filter.add("https://example.com/a"));
+        assertTrue(filter.add("https://example.com/b"));
+    }
+
+    @Test
+    void indexedUrlIsRecheckedByExactCheck() {
+        AtomicInteger checks = new AtomicInteger();
+        UrlSeenFilter filter = new UrlSeenFilter(0.001, url -> {
+            checks.incrementAndGet();
+            return url.endsWith("/a");
+        });
+
+        assertTrue(filter.add("https://example.com/a"));
+        filter.markIndexed("https://example.com/a");
+
+        // После сохранения страницы точного хэша в памяти нет: ответ даёт журнал обхода
+        assertFalse(filter.add("https://example.com/a"));
+        assertEquals(1, checks.get());
+    }
+
+    @Test
+    void restoredUrlsAreSeen() {
+        UrlSeenFilter filter = new UrlSeenFilter(0.001, Set.of("https://example.com/done")::contains);
+
+        filter.restore("https://example.com/queued", true);
+        filter.restore("https://example.com/done", false);
+
+        assertFalse(filter.add("https://example.com/queued"));
+        assertFalse(filter.add("https://example.com/done"));
+        assertTrue(filter.add("https://example.com/new"));
+    }
+
+    @Test
+    void falsePositivesStayBelowConfiguredRateAcrossLayers() {
+        double rate = 0.01;
+        AtomicInteger falsePositives = new AtomicInteger();
+        // Все URL помечаются сохранёнными, поэтому точная проверка вызывается
+        // только на ложных срабатываниях фильтра Блума
+        UrlSeenFilter filter = new UrlSeenFilter(rate, url -> {
+            falsePositives.incrementAndGet();
+            return false;
+        });
+
+        int inserted = 500_000;
+        for (int i = 0; i < inserted; i++) {
+            String url = "https://example.com/page/" + i;
+            filter.add(url);
+            filter.markIndexed(url);
+        }
+        falsePositives.set(0);
+
+        int probes = 200_000;
+        for (int i = 0; i < probes; i++) {
+            assertTrue(filter.add("https://example.org/other/" + i));
+        }
+        double measured = (double) falsePositives.get() / probes;
+        assertTrue(measured <= rate, "доля ложных срабатываний " + measured + " больше " + rate);
+    }
+
+    @Test
+    void layersGrowWhenFilterFills() {
+        UrlSeenFilter filter = new UrlSeenFilter(0.001, url -> false);
+        long initial = filter.offHeapBytes();
+
+        // Первый слой рассчитан на 65536 URL, второй - на 131072;
+        // ложные срабатывания в слой не записываются, поэтому URL нужно чуть больше
+        int secondAt = addUntilGrowth(filter, 0);
+        long secondLayer = filter.offHeapBytes() - initial;
+        assertTrue(secondAt > 65_536 && secondAt < 66_000, "второй слой создан после " + secondAt + " URL");
+
+        int thirdAt = addUntilGrowth(filter, secondAt);
+        long thirdLayer = filter.offHeapBytes() - initial - secondLayer;
+        assertTrue(thirdAt > 196_608 && thirdAt < 198_000, "третий слой создан после " + thirdAt + " URL");
+
+        // Каждый следующий слой вдвое больше по ёмкости и с вдвое меньшей долей ложных срабатываний
+        assertTrue(thirdLayer > 2 * secondLayer, "слои: " + secondLayer + " и " + thirdLayer + " байт");
+    }
+
+    @Test
+    void pendingHashesSurviveRemovalOfNeighbours() {
+        UrlSeenFilter filter = new UrlSeenFilter(0.001, url -> false);
+        for (int i = 0; i < 100_000; i++) {
+            filter.add("https://example.com/" + i);
+        }
+        for (int i = 0; i < 100_000; i += 2) {
+            filter.markIndexed("https://example.com/" + i);
+        }
+        // Удаление со сдвигом не должно терять оставшиеся в цепочках проб хэши
+        for (int i = 1; i < 100_000; i += 2) {
+            assertFalse(filter.add("https://example.com/" + i));
+        }
+    }
+
+    private static int addUntilGrowth(UrlSeenFilter filter, int from) {
+        long bytes = filter.offHeapBytes();
+        int next = from;
+        while (filter.offHeapBytes() == bytes && next < from + 1_000_000) {
+            String url = "https://example.com/" + next++;
+            filter.add(url);
+            filter.markIndexed(url);
+        }
+        return next;
+    }
+}
@@ -0,0 +1,151 @@
+package searchengine.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import searchengine.model.FetchResponse;
+
+/**
+ * Запись ответов локального HTTP-сервера в WARC и их воспроизведение: ответы при
+ * воспроизведении должны совпадать с живыми, замеряется скорость загрузки и разбора
+ * страниц из WARC.
+ * Запуск: mvn test -Pbenchmark -Dtest=WarcReplayBenchmark
+ */
+class WarcReplayBenchmark {
+
+    private static final int PAGES = 200;
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 20;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void replayMatchesLiveFetch() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", WarcReplayBenchmark::serve);
+        server.start();
+        String base = "http://127.0.0.1:" + server.getAddress().getPort();
+        List<String> urls = new ArrayList<>();
+        for (int i = 0; i < PAGES; i++) {
+            urls.add(base + "/page/" + i);
+        }
+        urls.add(base + "/missing");
+        urls.add(base + "/moved");
+
+        Map<String, String> live = new HashMap<>();
+        Path warcDir = dir.resolve("warc");
+        try (Fetcher recording = new WarcRecordingFetcher(new JsoupFetcher(), new WarcWriter(warcDir))) {
+            for (String url : urls) {
+                live.put(url, summary(recording.fetch(url, Map.of(), false)));
+            }
+        } finally {
+            server.stop(0);
+        }
+        long warcBytes;
+        try (Stream<Path> files = Files.list(warcDir)) {
+            warcBytes = files.mapToLong(file -> file.toFile().length()).sum();
+        }
+
+        try (Fetcher replay = new WarcReplayFetcher(warcDir)) {
+            int identical = 0;
+            for (String url : urls) {
+                if (summary(replay.fetch(url, Map.of(), false)).equals(live.get(url))) {
+                    identical++;
+                }
+            }
+            System.out.printf("Совпало при воспроизведении: %d из %d, WARC %d КБ%n",
+                    identical, urls.size(), warcBytes / 1024);
+            assertEquals(urls.size(), identical);
+            assertEquals(404, replay.fetch(base + "/never-fetched", Map.of(), false).getStatusCode());
+
+            double pagesPerSecond = 0;
+            for (int round = 0; round < 3; round++) {
+                pagesPerSecond = replayThroughput(replay, urls);
+            }
+            System.out.printf("Загрузка и разбор из WARC: %.0f страниц/с в %d потоках%n", pagesPerSecond, THREADS);
+        }
+    }
+
+    private static double replayThroughput(Fetcher replay, List<String> urls) throws Exception {
+        AtomicLong pages = new AtomicLong();
+        List<Thread> threads = new ArrayList<>();
+        long started = System.nanoTime();
+        for (int t = 0; t < THREADS; t++) {
+            int first = t;
+            Thread thread = new Thread(() -> {
+                try {
+                    for (int round = 0; round < ROUNDS; round++) {
+                        for (int i = first; i < urls.size(); i += THREADS) {
+                            replay.fetch(urls.get(i), Map.of(), false).parse();
+                            pages.incrementAndGet();
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return pages.get() / ((System.nanoTime() - started) / 1e9);
+    }
+
+    /**
+     * Всё, что видит индексатор: статус, итоговый URL, тело и ссылки страницы.
+     */
+    private static String summary(FetchResponse response) throws IOException {
+        return response.getStatusCode() + "|" + response.getFinalUrl() + "|"
+                + Arrays.hashCode(response.bodyAsBytes()) + "|"
+                + response.parse().select("a[href]").eachAttr("abs:href");
+    }
+
+    private static void serve(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        if (path.equals("/moved")) {
+            exchange.getResponseHeaders().add("Location", "/page/0");
+            exchange.sendResponseHeaders(301, -1);
+            exchange.close();
+            return;
+        }
+        int status = path.startsWith("/page/") ? 200 : 404;
+        StringBuilder html = new StringBuilder("<html><head><title>").append(path).append("</title></head><body>");
+        if (status == 200) {
+            int number = Integer.parseInt(path.substring("/page/".length()));
+            for (int i = 0; i < 50; i++) {
+                html.append("<p>Абзац ").append(i).append(" страницы ").append(number)
+                        .append(" <a href=\"/page/").append((number * 7 + i) % PAGES).append("\">далее</a></p>");
+            }
+        } else {
+            html.append("<h1>Не найдено</h1>");
+        }
+        byte[] body = html.append("</body></html>").toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "text/html; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package searchengine.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import searchengine.model.FetchResponse;
+
+/**
+ * Ответы, записанные WarcWriter, воспроизводятся WarcReplayFetcher без изменений.
+ */
+class WarcReplayFetcherTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void replaysRecordedResponse() throws Exception {
+        try (WarcWriter writer = new WarcWriter(dir)) {
+            writer.writeResponse(new FetchResponse("https://example.com/a", "https://example.com/b", 200, "OK",
+                    Map.of("Content-Type", "text/html; charset=utf-8", "ETag", "\"v1\""),
+                    "<p>страница</p>".getBytes(StandardCharsets.UTF_8)));
+        }
+
+        try (WarcReplayFetcher replay = new WarcReplayFetcher(dir)) {
+            FetchResponse response = replay.fetch("https://example.com/a", Map.of(), false);
+            assertEquals(200, response.getStatusCode());
+            assertEquals("https://example.com/b", response.getFinalUrl());
+            assertEquals("\"v1\"", response.header("ETag"));
+            assertEquals("<p>страница</p>", body(response));
+            assertEquals(404, replay.fetch("https://example.com/missing", Map.of(), false).getStatusCode());
+        }
+    }
+
+    @Test
+    void lastRecordOfUrlWins() throws Exception {
+        try (WarcWriter writer = new WarcWriter(dir)) {
+            writer.writeResponse(html("https://example.com/a", "первая"));
+            writer.writeResponse(html("https://example.com/a", "вторая"));
+        }
+
+        try (WarcReplayFetcher replay = new WarcReplayFetcher(dir)) {
+            assertEquals("<p>вторая</p>", body(replay.fetch("https://example.com/a", Map.of(), false)));
+        }
+    }
+
+    @Test
+    void lastRecordWinsForNormalizedUrl() throws Exception {
+        // Оба URI нормализуются в https://example.com/page
+        try (WarcWriter writer = new WarcWriter(dir)) {
+            writer.writeResponse(html("https://Example.com/page#top", "первая"));
+            writer.writeResponse(html("HTTPS://EXAMPLE.COM/page", "вторая"));
+        }
+
+        try (WarcReplayFetcher replay = new WarcReplayFetcher(dir)) {
+            assertEquals("<p>вторая</p>", body(replay.fetch("https://example.com/page", Map.of(), false)));
+            // Записанные URI находятся как есть
+            assertEquals("<p>первая</p>", body(replay.fetch("https://Example.com/page#top", Map.of(), false)));
+            assertEquals("<p>вторая</p>", body(replay.fetch("HTTPS://EXAMPLE.COM/page", Map.of(), false)));
+        }
+    }
+
+    private static FetchResponse html(String url, String text) {
+        return new FetchResponse(url, url, 200, "OK", Map.of("Content-Type", "text/html; charset=utf-8"),
+                ("<p>" + text + "</p>").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String body(FetchResponse response) throws Exception {
+        return new String(response.bodyAsBytes(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,113 @@
+package searchengine.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Скорость и выделение памяти при подсчёте слов страницы: прежний конвейер
+ * (split, replaceAll, matches и toLowerCase для каждого слова) против WordTokenizer.
+ *
+ * По умолчанию текст генерируется (10 млн символов русских слов с цифрами и знаками
+ * препинания). Свой корпус - текстовый файл в UTF-8:
+ * mvn test -Pbenchmark -Dtest=WordTokenizerBenchmark -Dbenchmark.corpus=/путь/к/тексту.txt
+ */
+class WordTokenizerBenchmark {
+
+    private static final int PAGE_CHARS = 20_000;
+    private static final int ITERATIONS = 8;
+    private static final int WARMUP_ITERATIONS = 3;
+
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    @Test
+    void countWords() throws Exception {
+        String corpus = corpus();
+        long bytes = corpus.getBytes(StandardCharsets.UTF_8).length;
+        List<String> pages = new ArrayList<>();
+        for (int i = 0; i < corpus.length(); i += PAGE_CHARS) {
+            pages.add(corpus.substring(i, Math.min(corpus.length(), i + PAGE_CHARS)));
+        }
+        for (String page : pages) {
+            assertEquals(splitAndMatch(page), WordTokenizer.countWords(page, 3));
+        }
+
+        report("split/replaceAll/matches", pages, bytes, WordTokenizerBenchmark::splitAndMatch);
+        report("WordTokenizer.countWords", pages, bytes, page -> WordTokenizer.countWords(page, 3));
+    }
+
+    private void report(String name, List<String> pages, long bytes, Function<String, Map<String, Integer>> counter) {
+        long best = Long.MAX_VALUE;
+        long allocated = 0;
+        long sink = 0;
+        for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+            long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+            long started = System.nanoTime();
+            for (String page : pages) {
+                sink += counter.apply(page).size();
+            }
+            long elapsed = System.nanoTime() - started;
+            allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+            if (iteration >= WARMUP_ITERATIONS) {
+                best = Math.min(best, elapsed);
+            }
+        }
+        System.out.printf("%s: %d мс, %.0f МБ/с, %.1f байт выделено на байт текста"
+                        + " (%d страниц, %d различных слов на страницах)%n",
+                name, best / 1_000_000, bytes / (best / 1e9) / 1e6, (double) allocated / bytes,
+                pages.size(), sink / ITERATIONS);
+    }
+
+    /**
+     * Подсчёт слов в том виде, в каком он был в LemmaService до WordTokenizer.
+     */
+    private static Map<String, Integer> splitAndMatch(String text) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (String word : text.split("[^\\p{L}\\p{Nd}]+")) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            String cleaned = word.replaceAll("\\d", "");
+            if (!cleaned.matches("^[\\p{L}]+$") || cleaned.length() < 3) {
+                continue;
+            }
+            counts.merge(cleaned.toLowerCase(), 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    private static String corpus() throws Exception {
+        String file = System.getProperty("benchmark.corpus");
+        if (file != null) {
+            return Files.readString(Path.of(file));
+        }
+        String[] syllables = {"по", "ис", "ка", "ко", "вая", "сис", "те", "ма", "ин", "дек", "са", "ци",
+                "я", "стра", "ни", "цы", "сай", "та", "ле", "мма", "Мо", "сква", "ре", "зуль", "тат"};
+        String[] separators = {" ", " ", " ", " ", ", ", ". ", " - ", "\n", " (", ") ", ": "};
+        Random random = new Random(42);
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 10_000_000) {
+            int length = 1 + random.nextInt(4);
+            for (int i = 0; i < length; i++) {
+                text.append(syllables[random.nextInt(syllables.length)]);
+            }
+            if (random.nextInt(20) == 0) {
+                text.append(random.nextInt(1000));
+            }
+            text.append(separators[random.nextInt(separators.length)]);
+        }
+        return text.toString();
+    }
+}
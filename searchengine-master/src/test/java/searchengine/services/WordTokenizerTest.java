@@ -0,0 +1,113 @@
+package searchengine.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class WordTokenizerTest {
+
+    @Test
+    void splitsOnNonLettersAndLowercases() {
+        assertEquals(List.of("поиск", "по", "сайту", "search", "engine"),
+                words("Поиск по САЙТУ: search-engine!", 1));
+    }
+
+    @Test
+    void digitsInsideWordAreDroppedWithoutSplitting() {
+        assertEquals(List.of("abcdef", "версия"), words("abc123def версия2", 1));
+        // Число без букв словом не считается
+        assertEquals(List.of("год"), words("2024 год", 1));
+        // Числовые символы, не являющиеся цифрами (дроби), разделяют слова
+        assertEquals(List.of("том", "часть"), words("том½часть", 1));
+    }
+
+    @Test
+    void supplementaryLettersStayWholeAndAreLowercased() {
+        // U+10400 DESERET CAPITAL LONG I и его строчная форма U+10428
+        String capital = new String(Character.toChars(0x10400));
+        String small = new String(Character.toChars(0x10428));
+        assertEquals(List.of("a" + small + "b"), words("A" + capital + "B", 1));
+        // Эмодзи (не буква) разделяет слова, как пробел
+        assertEquals(List.of("кот", "пёс"), words("кот😀пёс", 1));
+    }
+
+    @Test
+    void unpairedSurrogateSeparatesWords() {
+        assertEquals(List.of("до", "после"), words("до\uD800после", 1));
+        assertEquals(List.of("до", "после"), words("до\uDC00после", 1));
+        // Высокий суррогат в конце текста
+        assertEquals(List.of("конец"), words("конец\uD83D", 1));
+    }
+
+    @Test
+    void minLengthCountsLettersNotChars() {
+        assertEquals(List.of("три", "четыре"), words("а, из три четыре", 3));
+        // Две буквы вне BMP занимают четыре char, но короче трёх букв
+        String twoLetters = new String(Character.toChars(0x10428)) + new String(Character.toChars(0x10429));
+        assertEquals(List.of(), words(twoLetters, 3));
+        assertEquals(List.of(twoLetters), words(twoLetters, 2));
+        // Цифры длину слова не увеличивают
+        assertEquals(List.of(), words("аб12", 3));
+    }
+
+    @Test
+    void zeroMinLengthDoesNotProduceEmptyWords() {
+        assertEquals(List.of("слово"), words("  слово,  ", 0));
+        assertEquals(List.of(), words("", 0));
+    }
+
+    @Test
+    void consumerReceivesSharedBufferValidOnlyDuringCall() {
+        List<CharSequence> received = new ArrayList<>();
+        List<String> copied = new ArrayList<>();
+        WordTokenizer.forEachWord("первое второе третье", 1, word -> {
+            received.add(word);
+            copied.add(word.toString());
+        });
+
+        assertEquals(List.of("первое", "второе", "третье"), copied);
+        // Один и тот же буфер на все слова: после возврата его содержимое уже не то
+        assertEquals(3, received.size());
+        for (CharSequence word : received) {
+            assertSame(received.get(0), word);
+        }
+    }
+
+    @Test
+    void countWordsCountsRepeatsAcrossTableGrowth() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            // Буквенные имена: цифры внутри слова отбрасывались бы
+            text.append(name(i)).append(' ').append(name(i)).append(' ');
+        }
+        text.append("слово Слово СЛОВО");
+
+        Map<String, Integer> counts = WordTokenizer.countWords(text, 1);
+
+        assertEquals(1001, counts.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(2, counts.get(name(i)));
+        }
+        assertEquals(3, counts.get("слово"));
+    }
+
+    private static List<String> words(String text, int minLength) {
+        List<String> words = new ArrayList<>();
+        WordTokenizer.forEachWord(text, minLength, word -> words.add(word.toString()));
+        return words;
+    }
+
+    private static String name(int i) {
+        StringBuilder name = new StringBuilder();
+        do {
+            name.append((char) ('a' + i % 26));
+            i /= 26;
+        } while (i > 0);
+        return name.toString();
+    }
+}